@@ -2,8 +2,10 @@ package com.poly;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication // Enables Spring Boot auto-configuration and component scanning
+@EnableScheduling // Background sweeps (e.g. expired battle sessions)
 public class EchoMmoApplication {
 
     // Main method - entry point for the application
@@ -0,0 +1,59 @@
+package com.poly.config;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Thread pools for background game work. Each pool is bounded in threads, the task
+ * executors also in queued tasks, and all are shut down with the application context.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    // Runs the serialized purchase queues of hot marketplace listings
+    @Bean
+    public ThreadPoolTaskExecutor hotListingExecutor(
+            @Value("${game.marketplace.hot-listing.threads:4}") int threads) {
+        return pool("hot-listing-", threads, 1_000);
+    }
+
+    // Recounts sellers' active listings behind the cached counts
+    @Bean
+    public ThreadPoolTaskExecutor listingCountExecutor() {
+        return pool("listing-count-", 1, 100);
+    }
+
+    // Writes queued server-sent events to marketplace subscribers
+    @Bean
+    public ThreadPoolTaskExecutor marketStreamSendExecutor(
+            @Value("${game.marketplace.stream.threads:4}") int threads) {
+        return pool("market-sse-", threads, 2_000);
+    }
+
+    // Loads the listing payloads of marketplace stream events, off the send threads
+    @Bean
+    public ThreadPoolTaskExecutor marketStreamLoadExecutor() {
+        return pool("market-sse-load-", 1, 500);
+    }
+
+    // Runs the cells of admin balance simulations, away from the common fork-join pool
+    @Bean(destroyMethod = "shutdownNow")
+    public ForkJoinPool balanceSimulationPool(
+            @Value("${game.balance.simulation-threads:2}") int threads) {
+        return new ForkJoinPool(threads);
+    }
+
+    private static ThreadPoolTaskExecutor pool(String prefix, int threads, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(prefix);
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setDaemon(true);
+        return executor;
+    }
+}
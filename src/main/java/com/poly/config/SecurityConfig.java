@@ -19,6 +19,7 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers(
                     "/admin/**",
+                    "/api/v1/admin/**",
                     "/user/**"
                 ).hasRole("ADMIN")
                 .requestMatchers(
@@ -29,6 +30,7 @@ public class SecurityConfig {
                     "/send-otp",
                     "/verify-otp",
                     "/reset-password",
+                    "/api/progression",
                     "/css/**", 
                     "/js/**", 
                     "/images/**"
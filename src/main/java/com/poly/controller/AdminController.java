@@ -1,14 +1,59 @@
 package com.poly.controller;
 
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.poly.dto.BalanceReportDTO;
+import com.poly.service.BalanceSimulator;
+import com.poly.service.EffectiveStatsCache;
+import com.poly.service.EncounterTables;
+import com.poly.service.EnemyCatalog;
+import com.poly.service.GameRandom;
+import com.poly.service.GameReplayService;
+import com.poly.service.GatheringService;
+import com.poly.service.GatheringSkillStore;
+import com.poly.service.HotListingLanes;
+import com.poly.service.ListingQueryCache;
+import com.poly.service.ListingSearchIndex;
+import com.poly.service.MarketplaceStream;
+import com.poly.service.MinigameService;
+import com.poly.service.OrderBook;
+import com.poly.service.ProgressionTables;
+import com.poly.service.ResourceRegistry;
+import com.poly.service.SellerListingCounts;
+
 @RestController
 @RequestMapping("/api/v1/admin")
 public class AdminController {
 
+    @Autowired private EnemyCatalog enemyCatalog;
+    @Autowired private EffectiveStatsCache effectiveStatsCache;
+    @Autowired private GameReplayService replayService;
+    @Autowired private BalanceSimulator balanceSimulator;
+    @Autowired private ResourceRegistry resourceRegistry;
+    @Autowired private GatheringSkillStore gatheringSkillStore;
+    @Autowired private EncounterTables encounterTables;
+    @Autowired private OrderBook orderBook;
+    @Autowired private ListingSearchIndex listingSearchIndex;
+    @Autowired private ListingQueryCache listingQueryCache;
+    @Autowired private SellerListingCounts sellerListingCounts;
+    @Autowired private MarketplaceStream marketplaceStream;
+    @Autowired private HotListingLanes hotListingLanes;
+    @Autowired private ProgressionTables progressionTables;
+
+    // Upper bound of simulated hours per request: (enemies per level + 1) * maxLevel * trials
+    private static final long MAX_SIMULATED_HOURS = 500_000;
+    // Below this an hour of play is millions of simulated actions per trial
+    private static final double MIN_SECONDS_PER_ACTION = 0.1;
+
     @GetMapping("/dashboard")
     public ResponseEntity<String> getAdminDashboard() {
         return ResponseEntity.ok("Welcome to the Admin Dashboard!");
@@ -19,4 +64,139 @@ public class AdminController {
         // Logic để lấy danh sách tất cả người dùng
         return ResponseEntity.ok("This is the list of all users for admins.");
     }
-}
\ No newline at end of file
+
+    // Hit/miss counters of the in-memory caches
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(Map.of("effectiveStats", effectiveStatsCache.metrics(),
+                "marketplaceQueries", listingQueryCache.metrics(),
+                "sellerListingCounts", sellerListingCounts.metrics()));
+    }
+
+    // Connected marketplace stream subscribers and dropped deltas
+    @GetMapping("/marketplace-stream")
+    public ResponseEntity<Map<String, Object>> getMarketplaceStreamStats() {
+        return ResponseEntity.ok(marketplaceStream.metrics());
+    }
+
+    // Per-listing purchase lanes: hot listings, queued and rejected purchases
+    @GetMapping("/hot-listings")
+    public ResponseEntity<Map<String, Object>> getHotListingStats() {
+        return ResponseEntity.ok(hotListingLanes.metrics());
+    }
+
+    // Reload the in-memory enemy catalog after editing the enemy table
+    @PostMapping("/enemies/reload")
+    public ResponseEntity<Map<String, Object>> reloadEnemies() {
+        int count = enemyCatalog.reload();
+        return ResponseEntity.ok(Map.of("enemies", count));
+    }
+
+    // Reload the gathering resource registry after editing the gathering_resource table
+    @PostMapping("/resources/reload")
+    public ResponseEntity<Map<String, Object>> reloadResources() {
+        int count = resourceRegistry.reload();
+        return ResponseEntity.ok(Map.of("resources", count));
+    }
+
+    // Reload encounter tables after editing the file pointed to by game.encounters.location
+    @PostMapping("/encounters/reload")
+    public ResponseEntity<Map<String, Object>> reloadEncounters() {
+        try {
+            return ResponseEntity.ok(Map.of("tables", encounterTables.reload()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Rebuild the marketplace order book from market_listing after out-of-band changes
+    @PostMapping("/order-book/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildOrderBook() {
+        return ResponseEntity.ok(Map.of("listings", orderBook.rebuild()));
+    }
+
+    // Re-index active listings for marketplace search after out-of-band changes
+    @PostMapping("/search-index/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildSearchIndex() {
+        return ResponseEntity.ok(Map.of("listings", listingSearchIndex.rebuild()));
+    }
+
+    // Fold legacy character_gathering rows into the packed per-character row
+    @PostMapping("/gathering-skills/migrate")
+    public ResponseEntity<Map<String, Object>> migrateGatheringSkills() {
+        int count = gatheringSkillStore.migrateAll();
+        return ResponseEntity.ok(Map.of("charactersMigrated", count));
+    }
+
+    // Re-derive outcomes from the seeds in the audit log / client responses
+    @GetMapping("/replay/battle")
+    public ResponseEntity<?> replayBattle(@RequestParam Integer enemyId, @RequestParam String seed) {
+        if (!isSeed(seed)) {
+            return ResponseEntity.badRequest().body("Invalid seed");
+        }
+        return ResponseEntity.ok(replayService.replayBattle(enemyId, seed));
+    }
+
+    // Bounded like the live auto-explore
+    @GetMapping("/replay/adventure")
+    public ResponseEntity<?> replayAdventure(@RequestParam int level, @RequestParam String seed,
+                                            @RequestParam(defaultValue = "1") int steps) {
+        if (!isSeed(seed)) {
+            return ResponseEntity.badRequest().body("Invalid seed");
+        }
+        if (steps < 1 || steps > MinigameService.MAX_AUTO_EXPLORE_STEPS) {
+            return ResponseEntity.badRequest().body("steps must be between 1 and " + MinigameService.MAX_AUTO_EXPLORE_STEPS);
+        }
+        return ResponseEntity.ok(replayService.replayAdventure(level, seed, steps));
+    }
+
+    // Bounded like the live gather batch
+    @GetMapping("/replay/gather")
+    public ResponseEntity<?> replayGather(@RequestParam int skillLevel,
+                                         @RequestParam(defaultValue = "1") int times,
+                                         @RequestParam String seed) {
+        if (!isSeed(seed)) {
+            return ResponseEntity.badRequest().body("Invalid seed");
+        }
+        if (times < 1 || times > GatheringService.MAX_GATHER_BATCH) {
+            return ResponseEntity.badRequest().body("times must be between 1 and " + GatheringService.MAX_GATHER_BATCH);
+        }
+        return ResponseEntity.ok(replayService.replayGather(skillLevel, times, seed));
+    }
+
+    // Monte Carlo balance report per level band; reads the enemy catalog only
+    @PostMapping("/balance/simulate")
+    public ResponseEntity<?> simulateBalance(
+            @RequestParam(defaultValue = "50") int maxLevel,
+            @RequestParam(defaultValue = "5") int bandSize,
+            @RequestParam(defaultValue = "100") int trials,
+            @RequestParam(defaultValue = "2.0") double secondsPerAction,
+            @RequestParam(required = false) String seed) {
+        long cells = (long) (enemyCatalog.findAll().size() + 1) * maxLevel;
+        if (maxLevel < 1 || bandSize < 1 || trials < 1 || !(secondsPerAction >= MIN_SECONDS_PER_ACTION)) {
+            return ResponseEntity.badRequest().body("Invalid simulation parameters");
+        }
+        if (maxLevel > progressionTables.getMaxLevel()) {
+            return ResponseEntity.badRequest().body("maxLevel must be at most " + progressionTables.getMaxLevel());
+        }
+        if (cells * trials > MAX_SIMULATED_HOURS) {
+            return ResponseEntity.badRequest().body("Simulation too large: at most " + MAX_SIMULATED_HOURS + " simulated hours");
+        }
+        if (seed != null && !isSeed(seed)) {
+            return ResponseEntity.badRequest().body("Invalid seed");
+        }
+        long rootSeed = seed != null ? GameRandom.parse(seed) : ThreadLocalRandom.current().nextLong();
+        BalanceReportDTO report = balanceSimulator.simulate(maxLevel, bandSize, trials, secondsPerAction, rootSeed);
+        return ResponseEntity.ok(report);
+    }
+
+    // Seeds are printed by GameRandom.format as unsigned hex
+    private static boolean isSeed(String seed) {
+        try {
+            GameRandom.parse(seed);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package com.poly.controller;
 
 import java.time.LocalDateTime;
-import java.util.HashSet;
-import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,7 +15,6 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import com.poly.model.CharacterGame;
-import com.poly.model.CharacterGathering;
 import com.poly.model.Role;
 import com.poly.model.User;
 import com.poly.model.Wallet;
@@ -131,30 +128,7 @@ public class AuthController {
             character.setUser(savedUser);
             character.setName(savedUser.getUsername());
 
-            // Initialize gathering levels
-            Set<CharacterGathering> gatheringLevels = new HashSet<>();
-            
-            CharacterGathering stone = new CharacterGathering();
-            stone.setCharacter(character);
-            stone.setResourceType("stone");
-            gatheringLevels.add(stone);
-
-            CharacterGathering wood = new CharacterGathering();
-            wood.setCharacter(character);
-            wood.setResourceType("wood");
-            gatheringLevels.add(wood);
-
-            CharacterGathering fish = new CharacterGathering();
-            fish.setCharacter(character);
-            fish.setResourceType("fish");
-            gatheringLevels.add(fish);
-
-            CharacterGathering ore = new CharacterGathering();
-            ore.setCharacter(character);
-            ore.setResourceType("ore");
-            gatheringLevels.add(ore);
-
-            character.setGatheringLevels(gatheringLevels);
+            // Gathering skills start at level 1 and are stored on first gather
             characterGameRepository.save(character);
             logger.info("Character created for user: {}", username);
 
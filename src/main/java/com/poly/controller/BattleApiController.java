@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.poly.dto.ApiResponse;
+import com.poly.dto.AutoBattleResultDTO;
 import com.poly.dto.BattleActionResponseDTO;
 import com.poly.service.BattleService;
 
@@ -18,11 +19,10 @@ public class BattleApiController {
     private BattleService battleService;
 
     @PostMapping("/attack")
-    public ApiResponse<BattleActionResponseDTO> attack(
-            @RequestParam Integer enemyId,
-            @RequestParam Integer enemyHp) { // Current enemy HP from frontend
+    public ApiResponse<BattleActionResponseDTO> attack(@RequestParam Integer enemyId) {
+        // Enemy HP is tracked by the server-side battle session
         try {
-            return battleService.doAttack(enemyId, enemyHp);
+            return battleService.doAttack(enemyId);
         } catch (Exception e) {
             // Log the exception e.g., using SLF4J logger
             return ApiResponse.error("Lỗi khi tấn công: " + e.getMessage());
@@ -32,10 +32,9 @@ public class BattleApiController {
     @PostMapping("/use-item")
     public ApiResponse<BattleActionResponseDTO> useItem(
             @RequestParam Integer userItemId,
-            @RequestParam Integer enemyId,
-            @RequestParam Integer enemyHp) { // Current enemy HP from frontend
+            @RequestParam Integer enemyId) {
          try {
-             return battleService.doUseItem(userItemId, enemyId, enemyHp);
+             return battleService.doUseItem(userItemId, enemyId);
          } catch (Exception e) {
              // Log the exception
              return ApiResponse.error("Lỗi khi dùng vật phẩm: " + e.getMessage());
@@ -44,10 +43,25 @@ public class BattleApiController {
 
     @PostMapping("/flee")
     public ApiResponse<BattleActionResponseDTO> flee() {
-        // Simple flee response, no state change needed on server for this basic version
-        BattleActionResponseDTO response = new BattleActionResponseDTO();
-        response.setBattleStatus(3); // 3 = Fled
-        response.addLog("Bạn đã bỏ chạy!");
-        return ApiResponse.success("Bỏ chạy thành công", response);
+        try {
+            return battleService.doFlee();
+        } catch (Exception e) {
+            return ApiResponse.error("Lỗi khi bỏ chạy: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Resolves the whole fight in one request.
+     * potionThreshold: drink a potion when HP falls below this percent of max HP (0 = never).
+     */
+    @PostMapping("/auto")
+    public ApiResponse<AutoBattleResultDTO> autoBattle(
+            @RequestParam Integer enemyId,
+            @RequestParam(defaultValue = "0") int potionThreshold) {
+        try {
+            return battleService.doAutoBattle(enemyId, Math.max(0, Math.min(100, potionThreshold)));
+        } catch (Exception e) {
+            return ApiResponse.error("Lỗi khi tự động chiến đấu: " + e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package com.poly.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -8,6 +9,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.poly.dto.ApiResponse;
 import com.poly.dto.GatheringResponseDTO;
+import com.poly.dto.IdleGatheringDTO;
 import com.poly.service.GatheringService;
 
 @RestController
@@ -26,4 +28,49 @@ public class GatheringApiController {
             return ApiResponse.error("Lỗi khi thu thập: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @PostMapping("/gather-batch")
+    public ApiResponse<GatheringResponseDTO> gatherBatch(@RequestParam String resourceType, @RequestParam int times) {
+        try {
+            return gatheringService.doGatherBatch(resourceType, times);
+        } catch (Exception e) {
+            return ApiResponse.error("Lỗi khi thu thập: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/idle/start")
+    public ApiResponse<IdleGatheringDTO> startIdle(@RequestParam String resourceType) {
+        try {
+            return gatheringService.startIdleGathering(resourceType);
+        } catch (Exception e) {
+            return ApiResponse.error("Lỗi khi bắt đầu thu thập tự động: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/idle/status")
+    public ApiResponse<IdleGatheringDTO> idleStatus() {
+        try {
+            return gatheringService.getIdleGatheringStatus();
+        } catch (Exception e) {
+            return ApiResponse.error("Lỗi khi xem thu thập tự động: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/idle/claim")
+    public ApiResponse<IdleGatheringDTO> claimIdle() {
+        try {
+            return gatheringService.claimIdleGathering(false);
+        } catch (Exception e) {
+            return ApiResponse.error("Lỗi khi nhận thành quả: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/idle/stop")
+    public ApiResponse<IdleGatheringDTO> stopIdle() {
+        try {
+            return gatheringService.claimIdleGathering(true);
+        } catch (Exception e) {
+            return ApiResponse.error("Lỗi khi dừng thu thập tự động: " + e.getMessage());
+        }
+    }
+}
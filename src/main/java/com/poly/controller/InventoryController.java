@@ -1,5 +1,6 @@
 package com.poly.controller;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +30,8 @@ import com.poly.model.UserItem;
 import com.poly.repository.UserItemRepository;
 import com.poly.repository.UserRepository;
 import com.poly.service.CharacterService; // Inject CharacterService
+import com.poly.service.EffectiveStatsCache;
+import com.poly.service.InventoryWriter;
 
 @Controller
 @RequestMapping("/inventory")
@@ -39,6 +42,8 @@ public class InventoryController {
     @Autowired private UserItemRepository userItemRepository;
     @Autowired private UserRepository userRepository;
     @Autowired private CharacterService characterService; // Inject CharacterService
+    @Autowired private EffectiveStatsCache statsCache;
+    @Autowired private InventoryWriter inventoryWriter;
 
     private User getCurrentUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -110,8 +115,7 @@ public class InventoryController {
             if(currentlyEquippedOpt.isPresent()){
                 UserItem currentlyEquipped = currentlyEquippedOpt.get();
                 if(!currentlyEquipped.getUserItemId().equals(userItemId)){ // Make sure we don't unequip the item we are trying to equip if it somehow gets here
-                     currentlyEquipped.setIsEquipped(false);
-                     userItemRepository.save(currentlyEquipped);
+                     userItemRepository.setEquipped(currentlyEquipped.getUserItemId(), false);
                      // Cast needed here too if accessing name or slot
                      logger.info("Unequipped item {} from slot {}", ((Item) currentlyEquipped.getItem()).getName(), slot);
                 }
@@ -119,12 +123,12 @@ public class InventoryController {
 
 
             // Equip the new item
-            itemToEquip.setIsEquipped(true);
-            userItemRepository.save(itemToEquip);
+            userItemRepository.setEquipped(itemToEquip.getUserItemId(), true);
             // Cast needed here
             logger.info("Equipped item {} to slot {}", ((Item) itemToEquip.getItem()).getName(), slot);
 
-            // TODO: Recalculate character stats if needed immediately after equip
+            // Equipment changed, cached effective stats are stale
+            statsCache.invalidateUser(user.getUserId());
 
             return ApiResponse.success("Trang bị '" + itemData.getName() + "' thành công!", null);
         } catch (Exception e) {
@@ -151,12 +155,11 @@ public class InventoryController {
                 return ApiResponse.error("Vật phẩm chưa được trang bị!");
             }
 
-            userItem.setIsEquipped(false);
-            userItemRepository.save(userItem);
+            userItemRepository.setEquipped(userItem.getUserItemId(), false);
             // Cast needed here
             logger.info("Unequipped item {}", ((Item) userItem.getItem()).getName());
 
-            // TODO: Recalculate character stats if needed immediately
+            statsCache.invalidateUser(user.getUserId());
 
             // Cast needed here
             return ApiResponse.success("Gỡ trang bị '" + ((Item) userItem.getItem()).getName() + "' thành công!", null);
@@ -194,22 +197,21 @@ public class InventoryController {
              }
              CharacterGame character = characterOpt.get();
 
-             if (character.getHealth() >= character.getMaxHealth()) {
+             LocalDateTime now = LocalDateTime.now();
+             if (character.currentHealth(now) >= character.getMaxHealth()) {
                  return ApiResponse.error("Máu đã đầy!");
              }
 
+             // Decrease item quantity (or delete the stack) atomically; fails if another tab used the last one
+             if (!inventoryWriter.remove(user.getUserId(), item.getItemId(), 1)) {
+                 return ApiResponse.error("Vật phẩm đã hết!");
+             }
+
              // *** FIX: Use the 'item' variable which is already casted ***
              int healAmount = item.getGameHeal() != null ? item.getGameHeal() : 0;
+             character.applyRegen(now);
              character.setHealth(Math.min(character.getMaxHealth(), character.getHealth() + healAmount));
              // No need to save character here if it's managed by JPA and part of the transaction
-
-             // Decrease item quantity or delete
-             userItem.setQuantity(userItem.getQuantity() - 1);
-             if (userItem.getQuantity() <= 0) {
-                 userItemRepository.delete(userItem);
-             } else {
-                 userItemRepository.save(userItem);
-             }
              // *** FIX: Use the 'item' variable ***
              logger.info("Used potion {}, healed {} HP", item.getName(), healAmount);
 
@@ -1,13 +1,15 @@
 package com.poly.controller;
 
 import java.math.BigDecimal;
-import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication; // Import Authentication
 import org.springframework.security.core.context.SecurityContextHolder; // Import SecurityContextHolder
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -21,21 +23,31 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.poly.dto.ApiResponse;
 import com.poly.dto.BuyItemRequest;
+import com.poly.dto.BuyOrderRequest;
+import com.poly.dto.BuyOrderResultDTO;
+import com.poly.dto.CartCheckoutRequest;
+import com.poly.dto.CartCheckoutResultDTO;
 import com.poly.dto.CreateListingRequest;
+import com.poly.dto.CursorPageDTO;
 import com.poly.dto.MarketListingDTO;
+import com.poly.dto.OrderBookDTO;
 import com.poly.dto.SellToSystemRequest;
 import com.poly.model.User; // Import User
 import com.poly.repository.UserRepository; // Import UserRepository
+import com.poly.service.ListingCursor;
 import com.poly.service.MarketplaceService;
+import com.poly.service.MarketplaceStream;
 
 @Controller
 @RequestMapping("/marketplace")
 public class MarketplaceController {
 
     @Autowired private MarketplaceService marketplaceService;
+    @Autowired private MarketplaceStream marketplaceStream;
     @Autowired private UserRepository userRepository; // Inject UserRepository
 
     private User getCurrentUser() {
@@ -46,26 +58,37 @@ public class MarketplaceController {
     }
 
 
-    // Display marketplace page
+    // Display marketplace page. Pages are keyset-paginated (?cursor=); ?page=N keeps the old offset paging.
     @GetMapping
     public String showMarketplace(
             @RequestParam(defaultValue = "") String search,
             @RequestParam(defaultValue = "ALL") String category, // Use "ALL" or empty string for no category filter
             @RequestParam(required = false) BigDecimal maxPrice, // Allow null maxPrice
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(defaultValue = "newest") String sort, // newest | price
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "12") int size,
             Model model) {
 
         // Provide a very large default maxPrice if none is given
         BigDecimal effectiveMaxPrice = (maxPrice == null) ? new BigDecimal("999999999999.99") : maxPrice;
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        Page<MarketListingDTO> listings = marketplaceService.getActiveListings(
-                search, category, effectiveMaxPrice, pageable);
-
-        model.addAttribute("listings", listings);
-        model.addAttribute("currentPage", page);
-        model.addAttribute("totalPages", listings.getTotalPages());
+        if (page != null) {
+            Pageable pageable = PageRequest.of(Math.max(page, 0), Math.max(size, 1), Sort.by("createdAt").descending());
+            Page<MarketListingDTO> listings = marketplaceService.getActiveListings(
+                    search, category, effectiveMaxPrice, pageable);
+            model.addAttribute("listings", listings);
+            model.addAttribute("currentPage", page);
+            model.addAttribute("totalPages", listings.getTotalPages());
+        } else {
+            CursorPageDTO<MarketListingDTO> listings = marketplaceService.getActiveListingsPage(
+                    search, category, effectiveMaxPrice, sortKey(sort), cursor, size);
+            model.addAttribute("listings", listings.getItems());
+            model.addAttribute("nextCursor", listings.getNextCursor());
+            model.addAttribute("total", listings.getTotal());
+            model.addAttribute("cursor", cursor);
+        }
+        model.addAttribute("sort", sort);
         model.addAttribute("search", search);
         model.addAttribute("category", category);
         model.addAttribute("maxPrice", maxPrice); // Pass original maxPrice (or null) back to view
@@ -74,11 +97,44 @@ public class MarketplaceController {
         return "marketplace/index";
     }
 
+    // API: Keyset page of active listings; pass nextCursor back as ?cursor= for the following page
+    @GetMapping("/listings")
+    @ResponseBody
+    public ApiResponse<CursorPageDTO<MarketListingDTO>> listingsPage(
+            @RequestParam(defaultValue = "") String search,
+            @RequestParam(defaultValue = "ALL") String category,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(defaultValue = "newest") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "12") int size) {
+        return ApiResponse.success("OK", marketplaceService.getActiveListingsPage(
+                search, category, maxPrice, sortKey(sort), cursor, size));
+    }
+
+    // Stream: listing-created / -updated / -sold / -cancelled events, so the page can update without reloading
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream() {
+        SseEmitter emitter = marketplaceStream.subscribe();
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    private static ListingCursor.Key sortKey(String sort) {
+        return "price".equalsIgnoreCase(sort) ? ListingCursor.Key.PRICE : ListingCursor.Key.NEWEST;
+    }
+
     // Display user's own listings page
     @GetMapping("/my-listings")
-    public String myListings(Model model) {
-        List<MarketListingDTO> listings = marketplaceService.getMyListings();
-        model.addAttribute("listings", listings);
+    public String myListings(@RequestParam(required = false) String cursor,
+                             @RequestParam(defaultValue = "20") int size,
+                             Model model) {
+        CursorPageDTO<MarketListingDTO> listings = marketplaceService.getMyListings(cursor, size);
+        model.addAttribute("listings", listings.getItems());
+        model.addAttribute("nextCursor", listings.getNextCursor());
+        model.addAttribute("total", listings.getTotal());
+        model.addAttribute("cursor", cursor);
         model.addAttribute("user", getCurrentUser()); // Pass user for wallet display
         return "marketplace/my-listings";
     }
@@ -106,13 +162,35 @@ public class MarketplaceController {
         return marketplaceService.cancelListing(listingId);
     }
 
-    // API: Buy an item from a listing
+    // API: Buy a listing, or only "quantity" of its units
     @PostMapping("/buy")
     @ResponseBody
     public ApiResponse<Void> buyItem(@RequestBody BuyItemRequest request) {
         return marketplaceService.buyItem(request);
     }
 
+    // API: Buy several listings in one transaction, with a result per listing
+    @PostMapping("/checkout")
+    @ResponseBody
+    public ApiResponse<CartCheckoutResultDTO> checkout(@RequestBody CartCheckoutRequest request) {
+        return marketplaceService.checkoutCart(request);
+    }
+
+    // API: Buy up to N units of an item at or below a unit price, cheapest listings first
+    @PostMapping("/buy-order")
+    @ResponseBody
+    public ApiResponse<BuyOrderResultDTO> placeBuyOrder(@RequestBody BuyOrderRequest request) {
+        return marketplaceService.placeBuyOrder(request);
+    }
+
+    // API: Best unit price and top of the order book for an item
+    @GetMapping("/book/{itemId}")
+    @ResponseBody
+    public ApiResponse<OrderBookDTO> orderBook(@PathVariable Integer itemId,
+                                               @RequestParam(defaultValue = "10") int depth) {
+        return ApiResponse.success("OK", marketplaceService.getOrderBook(itemId, depth));
+    }
+
     // API: Sell an item directly to the system
     @PostMapping("/sell-to-system")
     @ResponseBody
@@ -3,9 +3,11 @@ package com.poly.controller;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.poly.dto.ApiResponse;
+import com.poly.dto.AutoExploreResponse;
 import com.poly.dto.MinigameAdventureResponse;
 import com.poly.dto.MinigameDataDTO;
 import com.poly.service.MinigameService;
@@ -30,6 +32,18 @@ public class MinigameApiController {
         }
     }
 
+    /**
+     * API for auto-explore: up to {@code steps} adventure steps in one request
+     */
+    @PostMapping("/auto-explore")
+    public ApiResponse<AutoExploreResponse> autoExplore(@RequestParam(defaultValue = "10") int steps) {
+        try {
+            return minigameService.doAutoExplore(steps);
+        } catch (Exception e) {
+            return ApiResponse.error("Lỗi khi phiêu lưu: " + e.getMessage());
+        }
+    }
+
     /**
      * API for the "Rest" action
      */
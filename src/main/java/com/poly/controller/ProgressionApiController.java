@@ -0,0 +1,37 @@
+package com.poly.controller;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import com.poly.service.ProgressionTables;
+
+@RestController
+@RequestMapping("/api/progression")
+public class ProgressionApiController {
+
+    @Autowired
+    private ProgressionTables progressionTables;
+
+    /**
+     * EXP and stat tables for client-side progress bars. The tables only change on
+     * deploy, so the browser may cache them and revalidate with If-None-Match.
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getTables(WebRequest request) {
+        String etag = progressionTables.getEtag();
+        CacheControl cacheControl = CacheControl.maxAge(1, TimeUnit.HOURS).cachePublic();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(progressionTables.getClientView());
+    }
+}
@@ -0,0 +1,37 @@
+package com.poly.dto;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class AutoBattleResultDTO {
+    public static final int ACTION_ATTACK = 0;
+    public static final int ACTION_POTION = 1;
+
+    private List<String> log = new ArrayList<>();
+    // One entry per turn: [action, player damage or heal, enemy damage, player HP, enemy HP]
+    private List<int[]> turnLog = new ArrayList<>();
+    private int turns;
+    private int playerHp;
+    private int enemyHp;
+    private int battleStatus = 0; // 0 = Ongoing, 1 = Won, 2 = Lost
+    private Integer rewardExp;
+    private BigDecimal rewardGold;
+    private int potionsUsed;
+    private Integer newLevel;
+    private String seed; // Reward roll seed (hex), set when the battle is won
+
+    public void addLog(String message) {
+        if (message != null && !message.isBlank()) {
+            this.log.add(message);
+        }
+    }
+
+    public void addTurn(int action, int playerAmount, int enemyDamage, int playerHp, int enemyHp) {
+        this.turnLog.add(new int[] { action, playerAmount, enemyDamage, playerHp, enemyHp });
+        this.turns++;
+    }
+}
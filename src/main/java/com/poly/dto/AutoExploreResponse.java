@@ -0,0 +1,21 @@
+package com.poly.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class AutoExploreResponse {
+    private List<String> steps = new ArrayList<>(); // One entry per step, e.g. "gold=12", "exp=20", "enemy=3"
+    private int stepsTaken;
+    private int energySpent;
+    private int goldGained;           // Total of all gold steps, credited once
+    private int expGained;            // Total of all EXP steps, applied once
+    private boolean levelUp;
+    private String message;           // Summary of the run
+    private String encounterIcon;     // Icon of the stopping encounter, null if none
+    private String encounterRedirect; // Battle/gathering page of the stopping encounter, null if the run did not stop on one
+    private String seed;              // Seed of the whole run (hex); steps are drawn in order from it
+    private MinigameDataDTO updatedStats;
+}
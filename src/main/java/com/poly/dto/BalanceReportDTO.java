@@ -0,0 +1,43 @@
+package com.poly.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Output of the balance simulator, aggregated per level band.
+ */
+@Data
+public class BalanceReportDTO {
+    private String seed;             // Root seed (hex); same seed and parameters give the same report
+    private int maxLevel;
+    private int bandSize;
+    private int trialsPerCell;       // Simulated hours per (enemy, level) or skill level
+    private long simulatedFights;
+    private long simulatedGatherActions;
+    private long elapsedMillis;
+    private List<CombatBand> combat = new ArrayList<>();
+    private List<GatheringBand> gathering = new ArrayList<>();
+
+    @Data
+    public static class CombatBand {
+        private int fromLevel;
+        private int toLevel;
+        private int enemies;              // Distinct enemies eligible in the band
+        private double winRate;           // Spawn-weighted
+        private double avgTurnsToKill;    // Over won fights
+        private double expPerHour;
+        private double goldPerHour;
+        private double hoursPerLevel;     // Character EXP curve / expPerHour
+    }
+
+    @Data
+    public static class GatheringBand {
+        private int fromLevel;
+        private int toLevel;
+        private double itemsPerHour;
+        private double expPerHour;
+        private double hoursPerLevel;     // Gathering EXP curve / expPerHour
+    }
+}
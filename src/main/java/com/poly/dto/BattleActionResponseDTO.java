@@ -16,6 +16,7 @@ public class BattleActionResponseDTO {
     private BigDecimal rewardGold;
     private Integer updatedPotionQty;
     private Integer userItemId;
+    private String seed; // Reward roll seed (hex), set when the battle is won
 
     public void addLog(String message) {
         if (message != null && !message.isBlank()) {
@@ -4,10 +4,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import com.poly.model.CharacterGame;
 import com.poly.model.Enemy;
-import com.poly.model.Item;
-import com.poly.model.UserItem;
+import com.poly.service.BattleSession;
 
 import lombok.Data;
 
@@ -31,35 +29,33 @@ public class BattleStateDTO {
     // Available Potions
     private List<Map<String, Object>> potions;
 
-    public static BattleStateDTO from(CharacterGame c, Enemy e, EffectiveStatsDTO effectiveStats, List<UserItem> availablePotions) {
+    public static BattleStateDTO from(BattleSession session) {
         BattleStateDTO dto = new BattleStateDTO();
+        Enemy e = session.getEnemy();
 
-        // Player Stats
-        dto.setPlayerName(c.getName());
-        dto.setPlayerHp(c.getHealth());
-        dto.setPlayerMaxHp(c.getMaxHealth());
-        dto.setPlayerAtk(effectiveStats.getAtk());
-        dto.setPlayerDef(effectiveStats.getDef());
+        // Player Stats (effective stats snapshot held by the session)
+        dto.setPlayerName(session.getCharacterName());
+        dto.setPlayerHp(session.getPlayerHp());
+        dto.setPlayerMaxHp(session.getPlayerMaxHp());
+        dto.setPlayerAtk(session.getPlayerAtk());
+        dto.setPlayerDef(session.getPlayerDef());
 
         // Enemy Stats
         dto.setEnemyId(e.getEnemyId());
         dto.setEnemyName(e.getName());
-        dto.setEnemyHp(e.getMaxHp());
+        dto.setEnemyHp(session.getEnemyHp());
         dto.setEnemyMaxHp(e.getMaxHp());
         dto.setEnemyIcon(e.getEmojiIcon());
 
         // Map potions
-        dto.setPotions(availablePotions.stream()
-                .filter(ui -> ui.getItem() != null && ui.getQuantity() > 0)
-                .map(ui -> {
-                    Item item = (Item) ui.getItem();
-                    return Map.of(
-                            "userItemId", (Object) ui.getUserItemId(),
-                            "name", (Object) item.getName(),
-                            "heal", (Object) (item.getGameHeal() != null ? item.getGameHeal() : 0),
-                            "quantity", (Object) ui.getQuantity()
-                    );
-                }).collect(Collectors.toList()));
+        dto.setPotions(session.getPotions().stream()
+                .filter(p -> p.getQuantity() > 0)
+                .map(p -> Map.of(
+                        "userItemId", (Object) p.getUserItemId(),
+                        "name", (Object) p.getName(),
+                        "heal", (Object) p.getHeal(),
+                        "quantity", (Object) p.getQuantity()
+                )).collect(Collectors.toList()));
 
         return dto;
     }
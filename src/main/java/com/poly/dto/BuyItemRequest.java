@@ -7,4 +7,5 @@ import lombok.Data;
 public class BuyItemRequest {
     @NotNull // Ensure listingId is provided
     private Integer listingId;
+    private Integer quantity; // Units to buy; null buys the whole listing
 }
\ No newline at end of file
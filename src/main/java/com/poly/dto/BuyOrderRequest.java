@@ -0,0 +1,16 @@
+package com.poly.dto;
+
+import java.math.BigDecimal;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class BuyOrderRequest {
+    @NotNull
+    private Integer itemId;
+    @NotNull
+    private Integer quantity;       // Units wanted
+    @NotNull
+    private BigDecimal maxUnitPrice; // Highest price per unit the buyer accepts
+}
@@ -0,0 +1,16 @@
+package com.poly.dto;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class BuyOrderResultDTO {
+    private Integer itemId;
+    private int quantityRequested;
+    private int quantityFilled;            // May be less than requested if the book ran out at the price limit
+    private BigDecimal totalCost = BigDecimal.ZERO;
+    private List<Integer> listingIds = new ArrayList<>(); // Listings bought from, in match order; the last may be partial
+}
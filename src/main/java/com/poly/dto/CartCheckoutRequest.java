@@ -0,0 +1,12 @@
+package com.poly.dto;
+
+import java.util.List;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+@Data
+public class CartCheckoutRequest {
+    @NotEmpty
+    private List<Integer> listingIds; // Bought in this order while the balance lasts
+}
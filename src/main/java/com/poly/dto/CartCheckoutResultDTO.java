@@ -0,0 +1,28 @@
+package com.poly.dto;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+public class CartCheckoutResultDTO {
+    private int purchased;
+    private BigDecimal totalCost = BigDecimal.ZERO;
+    private BigDecimal newBalance;
+    private List<Line> results = new ArrayList<>(); // One per cart entry, in cart order
+
+    public enum Status { PURCHASED, NOT_AVAILABLE, OWN_LISTING, INSUFFICIENT_FUNDS, DUPLICATE }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Line {
+        private Integer listingId;
+        private Status status;
+        private BigDecimal price; // Null if the listing was not found
+    }
+}
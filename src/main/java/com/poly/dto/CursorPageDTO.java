@@ -0,0 +1,16 @@
+package com.poly.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+    private List<T> items;
+    private String nextCursor; // Pass back as ?cursor= for the next page; null on the last page
+    private long total;        // Matching listings across all pages; -1 when not counted
+}
@@ -1,12 +1,12 @@
 package com.poly.dto;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 import com.poly.model.CharacterGame;
-import com.poly.model.CharacterGathering;
-import com.poly.model.Item;
+import com.poly.model.CharacterGatheringSkills;
 import com.poly.model.Wallet;
-import com.poly.service.CharacterService; // Import CharacterService for EXP calculation
+import com.poly.service.ResourceRegistry;
 
 import lombok.Data;
 
@@ -33,47 +33,34 @@ public class GatheringPageDTO {
 
     /**
      * Factory method to create DTO.
-     * Requires CharacterService to be passed in.
+     * expNeeded is the gathering-skill EXP needed for the next level (see ProgressionTables).
      */
-    public static GatheringPageDTO from(CharacterGathering cg, Item item, CharacterGame character, Wallet wallet, String icon, CharacterService characterService) {
+    public static GatheringPageDTO from(CharacterGatheringSkills.Skill cg, ResourceRegistry.Resource resource, CharacterGame character, Wallet wallet, long expNeeded) {
         GatheringPageDTO dto = new GatheringPageDTO();
 
-        // Calculate EXP needed for the gathering skill using CharacterService (assuming same formula for now)
-        // You might want a separate EXP formula for gathering skills in GatheringService
-        long expNeeded = characterService.calculateExpForNextLevel(cg.getLevel()); // TODO: Consider specific gathering EXP formula
         dto.setExpToNextLevel(expNeeded);
         dto.setExpPercent(Math.min(100.0, (cg.getExp() / (double) expNeeded) * 100.0));
 
         // Resource Info
         dto.setResourceType(cg.getResourceType());
-        dto.setResourceName(item.getName());
-        dto.setResourceIcon(icon);
+        dto.setResourceName(resource.getItemName());
+        dto.setResourceIcon(resource.getIcon());
         dto.setGatherLevel(cg.getLevel());
-        dto.setRequiredLevel(1); // TODO: Make this dynamic based on Item or a separate config
-        dto.setRequirementText("Yêu cầu cấp " + dto.getRequiredLevel() + " " + getSkillName(cg.getResourceType()));
-        dto.setEnergyCost(5); // TODO: Make this dynamic?
+        dto.setRequiredLevel(resource.getRequiredLevel());
+        dto.setRequirementText("Yêu cầu cấp " + dto.getRequiredLevel() + " " + resource.getSkillName());
+        dto.setEnergyCost(resource.getEnergyCost());
 
         // Player Info from Character and Wallet
         dto.setPlayerGold(wallet.getBalance());
-        dto.setPlayerEnergy(character.getEnergy());
+        LocalDateTime now = LocalDateTime.now();
+        dto.setPlayerEnergy(character.currentEnergy(now));
         dto.setPlayerMaxEnergy(character.getMaxEnergy());
-        dto.setPlayerHp(character.getHealth());
+        dto.setPlayerHp(character.currentHealth(now));
         dto.setPlayerMaxHp(character.getMaxHealth());
 
         return dto;
     }
 
-    // Helper to get a user-friendly skill name
-    private static String getSkillName(String resourceType) {
-        return switch (resourceType) {
-            case "stone" -> "Đào đá";
-            case "wood" -> "Chặt gỗ";
-            case "fish" -> "Câu cá";
-            case "ore" -> "Khai khoáng";
-            default -> "Thu thập";
-        };
-    }
-
     // *** FIX: Removed placeholder methods like setPlayerMaxHp, getRequiredLevel, etc. ***
     // Lombok's @Data annotation automatically generates these.
 }
\ No newline at end of file
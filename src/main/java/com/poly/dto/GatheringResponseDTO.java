@@ -12,6 +12,7 @@ public class GatheringResponseDTO {
     private Double expPercent;  // Updated skill EXP percentage
     private Long expToNextLevel; // Updated EXP needed for next level
     private boolean levelUp;    // Flag indicating if the skill leveled up
+    private String seed;        // Seed of the amount roll (hex), for replay
 
     // Updated Player Stats
     private Integer playerEnergy;
@@ -0,0 +1,26 @@
+package com.poly.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.Data;
+
+@Data
+public class IdleGatheringDTO {
+    private boolean active;            // A job is running
+    private String resourceType;
+    private String itemName;
+    private String resourceIcon;
+    private LocalDateTime startedAt;   // Start of the unclaimed period
+    private long elapsedSeconds;       // Counted time, at most the accrual cap
+    private boolean capped;            // Accrual stopped at the cap; claim to restart it
+    private long actions;              // Idle gather actions accrued
+    private long energySpent;          // Energy those actions cost, at the resource's cost per action
+    private boolean energyLimited;     // Fewer actions than the time allows, for lack of energy
+    private long amount;               // Items accrued (or granted, on claim)
+    private double carry;              // Fraction of an item left over, kept for the next claim
+    private long expGained;
+    private Integer level;             // Skill level after the accrued EXP
+    private Integer exp;               // Skill EXP inside that level
+    private boolean levelUp;
+    private long secondsToNextAction;
+}
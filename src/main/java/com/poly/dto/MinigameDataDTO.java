@@ -1,6 +1,7 @@
 package com.poly.dto;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 import com.poly.model.CharacterGame;
 
@@ -18,6 +19,7 @@ public class MinigameDataDTO {
     private Integer def; // Base DEF
     private Integer experience;
     private Long expToNextLevel; // Added for display
+    private Long secondsToNextRegen; // Countdown to the next passive energy/HP tick
 
     // Wallet Balance
     private BigDecimal gold;
@@ -29,15 +31,17 @@ public class MinigameDataDTO {
     public static MinigameDataDTO from(CharacterGame c, BigDecimal gold, long expToNext) {
         MinigameDataDTO dto = new MinigameDataDTO();
         if (c != null) {
-            dto.setHealth(c.getHealth());
+            LocalDateTime now = LocalDateTime.now();
+            dto.setHealth(c.currentHealth(now));
             dto.setMaxHealth(c.getMaxHealth());
-            dto.setEnergy(c.getEnergy());
+            dto.setEnergy(c.currentEnergy(now));
             dto.setMaxEnergy(c.getMaxEnergy());
             dto.setLevel(c.getLevel());
             dto.setAtk(c.getAtk());
             dto.setDef(c.getDef());
             dto.setExperience(c.getExperience());
             dto.setExpToNextLevel(expToNext); // Set calculated value
+            dto.setSecondsToNextRegen(c.secondsToNextRegen(now));
         } else {
             // Default values if character is null (e.g., during registration display)
             dto.setHealth(100); dto.setMaxHealth(100);
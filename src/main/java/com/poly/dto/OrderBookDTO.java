@@ -0,0 +1,17 @@
+package com.poly.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.poly.service.OrderBook;
+
+import lombok.Data;
+
+@Data
+public class OrderBookDTO {
+    private Integer itemId;
+    private BigDecimal bestUnitPrice;     // Null if nothing is listed
+    private Integer bestListingId;
+    private int totalQuantity;            // Units listed across all active listings
+    private List<OrderBook.Entry> listings; // Top of the book in match order
+}
@@ -1,13 +1,11 @@
 // /EchoMMO/src/main/java/com/poly/model/CharacterGame.java
 package com.poly.model;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.HashSet;
-import java.util.Set;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
-import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
@@ -16,7 +14,6 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
-import jakarta.persistence.OneToMany;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
 import lombok.Data;
@@ -28,6 +25,11 @@ import lombok.ToString;
 @Table(name = "character_game")
 public class CharacterGame {
 
+    // Passive regeneration: every tick restores this much energy and HP
+    public static final int REGEN_TICK_SECONDS = 30;
+    public static final int REGEN_ENERGY_PER_TICK = 1;
+    public static final int REGEN_HP_PER_TICK = 2;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "character_id")
@@ -73,9 +75,20 @@ public class CharacterGame {
     @Column(name = "created_at", columnDefinition = "DATETIME2 DEFAULT GETDATE()", updatable = false)
     private LocalDateTime createdAt;
 
-    @OneToMany(mappedBy = "character", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
-    @EqualsAndHashCode.Exclude
-    private Set<CharacterGathering> gatheringLevels = new HashSet<>();
+    // Start of the current regeneration tick; regen is folded in by the next write of energy or HP
+    @Column(name = "last_regen_at", columnDefinition = "DATETIME2 DEFAULT GETDATE()")
+    private LocalDateTime lastRegenAt;
+
+    // Idle gathering job: resource being gathered and start of the unclaimed period (null = no job)
+    @Column(name = "idle_gather_resource", length = 20)
+    private String idleGatherResource;
+
+    @Column(name = "idle_gather_started_at")
+    private LocalDateTime idleGatherStartedAt;
+
+    // Fraction of an item accrued by the job but not yet granted; added to the next claim
+    @Column(name = "idle_gather_carry")
+    private Double idleGatherCarry;
 
     @PrePersist
     protected void onCreate() {
@@ -89,6 +102,90 @@ public class CharacterGame {
         if (maxEnergy == null) maxEnergy = 50;
         if (energy == null) energy = maxEnergy;
         if (upgradePoints == null) upgradePoints = 0;
+        lastRegenAt = createdAt;
+    }
+
+    /**
+     * Adds the energy and HP accrued since lastRegenAt to the columns. Time left over
+     * from a partial tick is kept; while both are full the clock just follows now,
+     * so time spent full does not bank regeneration.
+     * Only call this in a transaction that writes the character anyway, right before
+     * changing its energy or HP; readers use {@link #currentEnergy} and {@link #currentHealth}.
+     */
+    public void applyRegen(LocalDateTime now) {
+        if (health == null || maxHealth == null || energy == null || maxEnergy == null) return;
+        if (lastRegenAt == null || isFull()) {
+            lastRegenAt = now;
+            return;
+        }
+        long ticks = pendingTicks(now);
+        if (ticks <= 0) return;
+
+        int regenEnergy = currentEnergy(now);
+        int regenHealth = currentHealth(now);
+        energy = regenEnergy;
+        health = regenHealth;
+        lastRegenAt = isFull() ? now : lastRegenAt.plusSeconds(ticks * REGEN_TICK_SECONDS);
+    }
+
+    /**
+     * Energy including the regeneration accrued by {@code now}; the character is not changed.
+     */
+    public int currentEnergy(LocalDateTime now) {
+        if (energy == null || maxEnergy == null) return energy == null ? 0 : energy;
+        return (int) Math.min(maxEnergy, energy + pendingTicks(now) * REGEN_ENERGY_PER_TICK);
+    }
+
+    /**
+     * HP including the regeneration accrued by {@code now}; the character is not changed.
+     */
+    public int currentHealth(LocalDateTime now) {
+        if (health == null || maxHealth == null) return health == null ? 0 : health;
+        return (int) Math.min(maxHealth, health + pendingTicks(now) * REGEN_HP_PER_TICK);
+    }
+
+    /**
+     * Energy plus every tick since lastRegenAt, neither capped nor paused while full.
+     * For idle gathering, which spends energy as it regenerates, so the character is
+     * never full while it runs; the character is not changed.
+     */
+    public long energyWithUncappedRegen(LocalDateTime now) {
+        if (energy == null) return 0;
+        if (lastRegenAt == null) return energy;
+        return energy + Math.max(0, Duration.between(lastRegenAt, now).getSeconds() / REGEN_TICK_SECONDS)
+                * REGEN_ENERGY_PER_TICK;
+    }
+
+    // For views: energy and HP as of now
+    @JsonIgnore
+    public int getCurrentEnergy() {
+        return currentEnergy(LocalDateTime.now());
+    }
+
+    @JsonIgnore
+    public int getCurrentHealth() {
+        return currentHealth(LocalDateTime.now());
+    }
+
+    /**
+     * Seconds until the next regeneration tick, or 0 when nothing is missing.
+     */
+    public long secondsToNextRegen(LocalDateTime now) {
+        if (lastRegenAt == null || isFull()) return 0;
+        if (currentEnergy(now) >= maxEnergy && currentHealth(now) >= maxHealth) return 0;
+        long elapsed = Duration.between(lastRegenAt, now).getSeconds();
+        return Math.max(0, REGEN_TICK_SECONDS - elapsed % REGEN_TICK_SECONDS);
+    }
+
+    // Whole ticks since lastRegenAt, none while full
+    private long pendingTicks(LocalDateTime now) {
+        if (lastRegenAt == null || health == null || maxHealth == null || energy == null || maxEnergy == null
+                || isFull()) return 0;
+        return Math.max(0, Duration.between(lastRegenAt, now).getSeconds() / REGEN_TICK_SECONDS);
+    }
+
+    private boolean isFull() {
+        return energy >= maxEnergy && health >= maxHealth;
     }
      // Các phương thức getter/setter thủ công đã bị xóa
 }
\ No newline at end of file
@@ -7,6 +7,10 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
+/**
+ * Legacy one-row-per-skill storage, superseded by {@link CharacterGatheringSkills}.
+ * Only read to fold old rows into the packed form.
+ */
 @Data
 @Entity
 @Table(name = "character_gathering", uniqueConstraints = {
@@ -0,0 +1,134 @@
+package com.poly.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+
+/**
+ * All gathering skills of one character in a single row, packed as
+ * "type=level:exp" pairs separated by commas (e.g. "stone=3:120,wood=1:0").
+ * Replaces one character_gathering row per resource, and is only loaded
+ * on the gathering path. Resources without an entry are level 1 with 0 EXP.
+ */
+@Entity
+@Table(name = "character_gathering_skills")
+public class CharacterGatheringSkills {
+
+    @Id
+    @Column(name = "character_id")
+    private Integer characterId;
+
+    @Column(name = "skills", nullable = false, length = 1000)
+    private String packed = "";
+
+    // Decoded form of packed: type -> {level, exp}
+    @Transient
+    private final Map<String, int[]> skills = new LinkedHashMap<>();
+
+    // Skills as last read from or written to the row, to tell this transaction's gains apart
+    @Transient
+    private final Map<String, int[]> saved = new LinkedHashMap<>();
+
+    protected CharacterGatheringSkills() {
+    }
+
+    public CharacterGatheringSkills(Integer characterId) {
+        this.characterId = characterId;
+    }
+
+    @PostLoad
+    protected void onLoad() {
+        skills.clear();
+        if (packed == null || packed.isBlank()) return;
+        for (String entry : packed.split(",")) {
+            int eq = entry.indexOf('=');
+            int colon = entry.indexOf(':', eq);
+            if (eq <= 0 || colon < 0) continue; // Skip malformed entries
+            skills.put(entry.substring(0, eq), new int[] {
+                    Integer.parseInt(entry.substring(eq + 1, colon)),
+                    Integer.parseInt(entry.substring(colon + 1)) });
+        }
+        markSaved();
+    }
+
+    public Integer getCharacterId() {
+        return characterId;
+    }
+
+    public String getPacked() {
+        return packed;
+    }
+
+    /**
+     * Live view of one skill; setters write through to the packed column.
+     */
+    public Skill get(String resourceType) {
+        return new Skill(resourceType);
+    }
+
+    public void set(String resourceType, int level, int exp) {
+        skills.put(resourceType, new int[] { level, exp });
+        pack();
+    }
+
+    public Set<String> getResourceTypes() {
+        return Collections.unmodifiableSet(skills.keySet());
+    }
+
+    /**
+     * Level and EXP of a skill as last read or stored, as {level, exp}.
+     */
+    public int[] getSaved(String resourceType) {
+        int[] value = saved.get(resourceType);
+        return value != null ? value.clone() : new int[] { 1, 0 };
+    }
+
+    /**
+     * Records the current skills as the stored state.
+     */
+    public void markSaved() {
+        saved.clear();
+        skills.forEach((type, value) -> saved.put(type, value.clone()));
+    }
+
+    private void pack() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, int[]> e : skills.entrySet()) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(e.getKey()).append('=').append(e.getValue()[0]).append(':').append(e.getValue()[1]);
+        }
+        packed = sb.toString();
+    }
+
+    public final class Skill {
+        private final String resourceType;
+
+        private Skill(String resourceType) {
+            this.resourceType = resourceType;
+        }
+
+        public String getResourceType() { return resourceType; }
+        public Integer getCharacterId() { return characterId; }
+
+        public Integer getLevel() {
+            int[] value = skills.get(resourceType);
+            return value != null ? value[0] : 1;
+        }
+
+        public Integer getExp() {
+            int[] value = skills.get(resourceType);
+            return value != null ? value[1] : 0;
+        }
+
+        public void setLevel(Integer level) { set(resourceType, level, getExp()); }
+        public void setExp(Integer exp) { set(resourceType, getLevel(), exp); }
+    }
+}
@@ -47,12 +47,24 @@ public class Enemy {
     @Column(name = "reward_gold_max", columnDefinition = "INT DEFAULT 0")
     private Integer rewardGoldMax = 0;
 
+    // Adventure encounter settings (used by EnemyCatalog)
+    @Column(name = "min_level", columnDefinition = "INT DEFAULT 1")
+    private Integer minLevel = 1;
+
+    @Column(name = "max_level") // Null = no upper bound
+    private Integer maxLevel;
+
+    @Column(name = "spawn_weight", columnDefinition = "INT DEFAULT 1") // 0 = never encountered randomly
+    private Integer spawnWeight = 1;
+
      @PrePersist
      protected void onPrePersist() {
          if (rewardExpMin == null) rewardExpMin = 0;
          if (rewardExpMax == null) rewardExpMax = 0;
          if (rewardGoldMin == null) rewardGoldMin = 0;
          if (rewardGoldMax == null) rewardGoldMax = 0;
+         if (minLevel == null) minLevel = 1;
+         if (spawnWeight == null) spawnWeight = 1;
      }
       // Các phương thức getter thủ công đã bị xóa
 }
\ No newline at end of file
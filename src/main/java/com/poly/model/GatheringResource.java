@@ -0,0 +1,58 @@
+package com.poly.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * A gatherable resource type and the item it yields. Loaded into ResourceRegistry
+ * at startup; rows added later become available after a registry reload.
+ */
+@Data
+@Entity
+@Table(name = "gathering_resource")
+public class GatheringResource {
+
+    @Id
+    @Column(name = "resource_type", length = 50)
+    private String resourceType; // e.g. "stone"; also the key of character_gathering.resource_type
+
+    @ManyToOne(fetch = FetchType.EAGER, optional = false)
+    @JoinColumn(name = "item_id", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Item item;
+
+    @Column(nullable = false, length = 50)
+    private String name; // Display name, e.g. "Đá"
+
+    @Column(name = "skill_name", nullable = false, length = 50)
+    private String skillName; // e.g. "Đào đá"
+
+    @Column(name = "emoji_icon", length = 10)
+    private String emojiIcon;
+
+    @Column(name = "energy_cost", columnDefinition = "INT DEFAULT 5")
+    private Integer energyCost = 5;
+
+    @Column(name = "required_level", columnDefinition = "INT DEFAULT 1")
+    private Integer requiredLevel = 1; // Gathering skill level needed
+
+    @Column(name = "sort_order", columnDefinition = "INT DEFAULT 0")
+    private Integer sortOrder = 0;
+
+    @PrePersist
+    protected void onCreate() {
+        if (energyCost == null) energyCost = 5;
+        if (requiredLevel == null) requiredLevel = 1;
+        if (sortOrder == null) sortOrder = 0;
+    }
+}
@@ -13,6 +13,7 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
@@ -61,6 +62,11 @@ public class MarketListing {
     @Column(name = "sold_at") // Timestamp when the item was sold
     private LocalDateTime soldAt;
 
+    // Optimistic lock for the JPA marketplace engine; native updates bump it as well
+    @Version
+    @Column(nullable = false, columnDefinition = "INT DEFAULT 0")
+    private Integer version;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -16,6 +16,7 @@ import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
 import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
@@ -52,6 +53,11 @@ public class UserItem {
     @Column(name = "is_equipped", columnDefinition = "BIT DEFAULT 0")
     private Boolean isEquipped = false;
 
+    // Optimistic lock for the JPA marketplace engine; native updates bump it as well
+    @Version
+    @Column(nullable = false, columnDefinition = "INT DEFAULT 0")
+    private Integer version;
+
     @PrePersist
     protected void onCreate() {
         acquiredAt = LocalDateTime.now();
@@ -16,6 +16,7 @@ import jakarta.persistence.OneToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
@@ -42,6 +43,11 @@ public class Wallet {
             columnDefinition = "DECIMAL(18,2) DEFAULT 0.00 CHECK (balance >= 0)")
     private BigDecimal balance = BigDecimal.ZERO; // Default value in Java
 
+    // Optimistic lock for the JPA marketplace engine; native updates bump it as well
+    @Version
+    @Column(nullable = false, columnDefinition = "INT DEFAULT 0")
+    private Integer version;
+
     @Column(name = "created_at", columnDefinition = "DATETIME2 DEFAULT GETDATE()", updatable = false)
     private LocalDateTime createdAt;
 
@@ -0,0 +1,21 @@
+package com.poly.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.poly.model.CharacterGatheringSkills;
+
+@Repository
+public interface CharacterGatheringSkillsRepository extends JpaRepository<CharacterGatheringSkills, Integer> {
+
+    // First row of a character; 0 if another transaction inserted it first. The key-range
+    // lock makes a concurrent first insert wait here instead of failing on the primary key.
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO character_gathering_skills (character_id, skills) "
+            + "SELECT :characterId, :skills WHERE NOT EXISTS (SELECT 1 FROM character_gathering_skills "
+            + "WITH (UPDLOCK, HOLDLOCK) WHERE character_id = :characterId)", nativeQuery = true)
+    int insertIfAbsent(@Param("characterId") Integer characterId, @Param("skills") String skills);
+}
@@ -0,0 +1,14 @@
+package com.poly.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.poly.model.GatheringResource;
+
+@Repository
+public interface GatheringResourceRepository extends JpaRepository<GatheringResource, String> {
+
+    List<GatheringResource> findAllByOrderBySortOrderAscResourceTypeAsc();
+}
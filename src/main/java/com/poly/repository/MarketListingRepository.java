@@ -1,45 +1,113 @@
 package com.poly.repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.poly.dto.MarketListingDTO;
 import com.poly.model.MarketListing;
 
+import jakarta.persistence.LockModeType;
+
 @Repository
 public interface MarketListingRepository extends JpaRepository<MarketListing, Integer> {
 
+    // Read path for listing pages: selects MarketListingDTO columns directly, so no
+    // MarketListing/User/Item entities (or their EAGER graphs) are loaded
+    String DTO_SELECT = "SELECT new com.poly.dto.MarketListingDTO(" +
+            "ml.listingId, s.userId, s.username, i.itemId, i.name, i.description, i.rarity, i.itemType, " +
+            "i.itemCategory, ml.quantity, ml.price, ml.listingType, ml.priceType, ml.status, ml.createdAt, " +
+            "i.imageUrl, i.gameAtk, i.gameDef, i.gameHeal, i.gameSlot) " +
+            "FROM MarketListing ml JOIN ml.item i JOIN ml.seller s ";
+
+    @Query(DTO_SELECT + "WHERE ml.listingId IN :ids")
+    List<MarketListingDTO> findDTOsByIds(@Param("ids") Collection<Integer> ids);
+
     /**
      * Finds active market listings based on search term, category, and max price.
      * Searches item name and category.
      * Category filter is exact match (case-insensitive).
      */
-    @Query("SELECT ml FROM MarketListing ml JOIN ml.item i JOIN ml.seller s " + // Explicit joins
+    @Query(value = DTO_SELECT +
+           "WHERE ml.status = 'Active' " +
+           "AND (:searchTerm IS NULL OR :searchTerm = '' OR " +
+           "    LOWER(i.name) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+           "    LOWER(i.itemCategory) LIKE LOWER(CONCAT('%', :searchTerm, '%'))) " +
+           "AND (:category = 'ALL' OR :category IS NULL OR :category = '' OR LOWER(i.itemCategory) = LOWER(:category)) " +
+           "AND ml.price <= :maxPrice",
+           countQuery = "SELECT COUNT(ml) FROM MarketListing ml JOIN ml.item i " +
            "WHERE ml.status = 'Active' " +
-           "AND (:searchTerm IS NULL OR :searchTerm = '' OR " + // Allow empty search term
+           "AND (:searchTerm IS NULL OR :searchTerm = '' OR " +
            "    LOWER(i.name) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
            "    LOWER(i.itemCategory) LIKE LOWER(CONCAT('%', :searchTerm, '%'))) " +
-           "AND (:category = 'ALL' OR :category IS NULL OR :category = '' OR LOWER(i.itemCategory) = LOWER(:category)) " + // Allow 'ALL' or empty category
+           "AND (:category = 'ALL' OR :category IS NULL OR :category = '' OR LOWER(i.itemCategory) = LOWER(:category)) " +
            "AND ml.price <= :maxPrice")
-    Page<MarketListing> findActiveListingsWithFilters(
+    Page<MarketListingDTO> findActiveListingDTOsWithFilters(
             @Param("searchTerm") String searchTerm,
             @Param("category") String category,
             @Param("maxPrice") BigDecimal maxPrice,
             Pageable pageable
     );
 
+    // Keyset pages of a seller's listings, newest first (see ListingCursor)
+    @Query(DTO_SELECT + "WHERE s.userId = :userId AND ml.status = :status " +
+           "ORDER BY ml.createdAt DESC, ml.listingId DESC")
+    List<MarketListingDTO> findSellerPage(
+            @Param("userId") Integer userId,
+            @Param("status") String status,
+            Pageable limit
+    );
+
+    @Query(DTO_SELECT + "WHERE s.userId = :userId AND ml.status = :status " +
+           "AND (ml.createdAt < :createdAt OR (ml.createdAt = :createdAt AND ml.listingId < :listingId)) " +
+           "ORDER BY ml.createdAt DESC, ml.listingId DESC")
+    List<MarketListingDTO> findSellerPageAfter(
+            @Param("userId") Integer userId,
+            @Param("status") String status,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("listingId") Integer listingId,
+            Pageable limit
+    );
+
     // Find all listings by a specific seller's user ID
     List<MarketListing> findBySeller_UserId(Integer userId);
 
     // Find active listings by a specific seller's user ID
     List<MarketListing> findBySeller_UserIdAndStatus(Integer userId, String status);
 
+    // All listings in a status, e.g. every active listing for the order book
+    List<MarketListing> findByStatus(String status);
+
+    long countBySeller_UserIdAndStatus(Integer userId, String status);
+
     // Find listings for a specific item ID
     List<MarketListing> findByItem_ItemIdAndStatus(Integer itemId, String status);
+
+    // Update-locks several listings in one statement; rows are locked in listing id order
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ml FROM MarketListing ml WHERE ml.listingId IN :ids ORDER BY ml.listingId")
+    List<MarketListing> lockAllByIds(@Param("ids") Collection<Integer> ids);
+
+    // Takes units off a listing together with their share of the price; 0 if the listing changed since it was read
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE MarketListing ml SET ml.quantity = ml.quantity - :units, ml.price = ml.price - :cost, " +
+           "ml.version = ml.version + 1 " +
+           "WHERE ml.listingId = :id AND ml.status = 'Active' AND ml.quantity = :quantity AND ml.price = :price")
+    int takeUnits(@Param("id") Integer listingId, @Param("units") int units, @Param("cost") BigDecimal cost,
+                  @Param("quantity") int quantity, @Param("price") BigDecimal price);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE MarketListing ml SET ml.status = 'Sold', ml.soldAt = :soldAt, ml.version = ml.version + 1 " +
+           "WHERE ml.listingId IN :ids AND ml.status = 'Active'")
+    int markSold(@Param("ids") Collection<Integer> ids, @Param("soldAt") LocalDateTime soldAt);
 }
\ No newline at end of file
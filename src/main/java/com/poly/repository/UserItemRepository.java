@@ -4,6 +4,9 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.poly.model.UserItem;
@@ -22,4 +25,43 @@ public interface UserItemRepository extends JpaRepository<UserItem, Integer> {
     Optional<UserItem> findByUser_UserIdAndItem_GameSlotAndIsEquippedTrue(Integer userId, String gameSlot);
     
     List<UserItem> findByUser_UserIdAndItem_ItemCategoryAndQuantityGreaterThan(Integer userId, String category, int quantity);
-}
\ No newline at end of file
+
+    // --- Atomic quantity changes (used through InventoryWriter) ---
+    // Pending entity changes are flushed first so they are not lost or reordered.
+    // Each change bumps the @Version column so optimistic writers see it.
+
+    // Adds to the stack or creates it, in one statement; HOLDLOCK keeps concurrent inserts off UQ_UserItem
+    @Modifying(flushAutomatically = true)
+    @Query(value = "MERGE user_item WITH (HOLDLOCK) AS target "
+            + "USING (SELECT :userId AS user_id, :itemId AS item_id) AS source "
+            + "ON target.user_id = source.user_id AND target.item_id = source.item_id "
+            + "WHEN MATCHED THEN UPDATE SET quantity = target.quantity + :quantity, version = target.version + 1 "
+            + "WHEN NOT MATCHED THEN INSERT (user_id, item_id, quantity, acquired_at, is_equipped) "
+            + "VALUES (:userId, :itemId, :quantity, GETDATE(), 0);", nativeQuery = true)
+    int addQuantity(@Param("userId") Integer userId, @Param("itemId") Integer itemId, @Param("quantity") int quantity);
+
+    // Removes only if the whole amount is available; returns 0 otherwise
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE user_item SET quantity = quantity - :quantity, version = version + 1 "
+            + "WHERE user_id = :userId AND item_id = :itemId AND quantity >= :quantity", nativeQuery = true)
+    int removeQuantity(@Param("userId") Integer userId, @Param("itemId") Integer itemId, @Param("quantity") int quantity);
+
+    // Removes up to the amount, stopping at zero
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE user_item SET quantity = CASE WHEN quantity > :quantity THEN quantity - :quantity ELSE 0 END, "
+            + "version = version + 1 "
+            + "WHERE user_id = :userId AND item_id = :itemId", nativeQuery = true)
+    int removeQuantityUpTo(@Param("userId") Integer userId, @Param("itemId") Integer itemId, @Param("quantity") int quantity);
+
+    // Equip flag changes are single statements too, so they never lose to a quantity update
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE user_item SET is_equipped = :equipped, version = version + 1 "
+            + "WHERE user_item_id = :userItemId", nativeQuery = true)
+    int setEquipped(@Param("userItemId") Integer userItemId, @Param("equipped") boolean equipped);
+
+    // Drops an emptied, unequipped stack
+    @Modifying(flushAutomatically = true)
+    @Query(value = "DELETE FROM user_item WHERE user_id = :userId AND item_id = :itemId "
+            + "AND quantity = 0 AND is_equipped = 0", nativeQuery = true)
+    int deleteIfEmpty(@Param("userId") Integer userId, @Param("itemId") Integer itemId);
+}
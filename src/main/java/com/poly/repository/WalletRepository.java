@@ -1,8 +1,12 @@
 package com.poly.repository;
 
+import java.math.BigDecimal;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.poly.model.User;
@@ -16,4 +20,17 @@ public interface WalletRepository extends JpaRepository<Wallet, Integer> {
 
     // Find a wallet by the user's ID
     Optional<Wallet> findByUser_UserId(Integer userId);
+
+    // --- Atomic balance changes; loaded Wallet entities keep their old balance and version ---
+
+    // Debits only if the whole amount is there; returns 0 otherwise
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE wallet SET balance = balance - :amount, updated_at = GETDATE(), version = version + 1 "
+            + "WHERE user_id = :userId AND balance >= :amount", nativeQuery = true)
+    int debit(@Param("userId") Integer userId, @Param("amount") BigDecimal amount);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE wallet SET balance = balance + :amount, updated_at = GETDATE(), version = version + 1 "
+            + "WHERE user_id = :userId", nativeQuery = true)
+    int credit(@Param("userId") Integer userId, @Param("amount") BigDecimal amount);
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.poly.service;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Immutable weighted sampler built with Vose's alias method: O(n) to build,
+ * O(1) per sample regardless of how many outcomes the table has.
+ * Each sample draws a single double from the stream.
+ */
+public final class AliasTable<T> {
+
+    private final Object[] outcomes;
+    private final double[] probability;
+    private final int[] alias;
+
+    private AliasTable(Object[] outcomes, double[] probability, int[] alias) {
+        this.outcomes = outcomes;
+        this.probability = probability;
+        this.alias = alias;
+    }
+
+    /**
+     * @param weights one non-negative weight per outcome, at least one of them positive
+     */
+    public static <T> AliasTable<T> of(List<T> outcomes, double[] weights) {
+        int n = outcomes.size();
+        if (n == 0 || weights.length != n) {
+            throw new IllegalArgumentException("Need one weight per outcome, got " + weights.length + " for " + n);
+        }
+        double total = 0;
+        for (double w : weights) {
+            if (w < 0 || Double.isNaN(w) || Double.isInfinite(w)) {
+                throw new IllegalArgumentException("Invalid weight: " + w);
+            }
+            total += w;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Total weight must be positive");
+        }
+
+        // Scale so the average column is exactly 1, then pair each short column with a tall one
+        double[] scaled = new double[n];
+        ArrayDeque<Integer> small = new ArrayDeque<>();
+        ArrayDeque<Integer> large = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            (scaled[i] < 1.0 ? small : large).push(i);
+        }
+        double[] probability = new double[n];
+        int[] alias = new int[n];
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int less = small.pop();
+            int more = large.pop();
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            (scaled[more] < 1.0 ? small : large).push(more);
+        }
+        // Whatever is left is 1 up to rounding error
+        while (!large.isEmpty()) {
+            probability[large.pop()] = 1.0;
+        }
+        while (!small.isEmpty()) {
+            probability[small.pop()] = 1.0;
+        }
+        return new AliasTable<>(outcomes.toArray(), probability, alias);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T sample(RandomGenerator rng) {
+        // Integer part picks the column, fractional part decides column vs alias
+        double u = rng.nextDouble() * probability.length;
+        int column = Math.min((int) u, probability.length - 1);
+        int index = (u - column) < probability[column] ? column : alias[column];
+        return (T) outcomes[index];
+    }
+
+    public int size() {
+        return outcomes.length;
+    }
+}
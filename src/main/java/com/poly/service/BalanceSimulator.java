@@ -0,0 +1,299 @@
+package com.poly.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import com.poly.dto.BalanceReportDTO;
+import com.poly.dto.EffectiveStatsDTO;
+import com.poly.model.CharacterGame;
+import com.poly.model.Enemy;
+
+/**
+ * Offline Monte Carlo simulation of grinding, for tuning enemies and curves
+ * without touching player data. It reuses the live game rules:
+ * {@link BattleService#calculateDamage}, {@link BattleService#rollRewards},
+ * {@link GatheringService#rollGatherAmount} and both EXP curves.
+ * <p>
+ * Every (enemy, level) pair and every gathering level is a cell. A trial simulates one hour
+ * of play in that cell. In combat the player fights, respawns at 1 HP after
+ * a loss and rests back to full HP between fights. In gathering the player gathers
+ * and rests whenever energy runs out. Cells run in parallel on the {@code balanceSimulationPool}
+ * fork-join pool, so a large report never occupies the common pool the rest of the app
+ * shares. Each cell has a seed taken from the root seed, so a report can be reproduced exactly.
+ * Reads only the enemy catalog; nothing is written.
+ */
+@Service
+public class BalanceSimulator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceSimulator.class);
+
+    private static final int SECONDS_PER_HOUR = 3600;
+    // Cells cheaper than this are not split further
+    private static final int SEQUENTIAL_THRESHOLD = 4;
+
+    @Autowired private EnemyCatalog enemyCatalog;
+    @Autowired private CharacterService characterService;
+    @Autowired private GatheringService gatheringService;
+
+    @Autowired
+    @Qualifier("balanceSimulationPool")
+    private ForkJoinPool pool;
+
+    /**
+     * @param maxLevel highest character / gathering level simulated
+     * @param bandSize levels per report row
+     * @param trials simulated hours per cell
+     * @param secondsPerAction wall-clock time of one request (attack turn, rest or gather)
+     * @param seed root seed
+     */
+    public BalanceReportDTO simulate(int maxLevel, int bandSize, int trials, double secondsPerAction, long seed) {
+        long started = System.currentTimeMillis();
+        SplittableRandom root = new SplittableRandom(seed);
+
+        List<Enemy> spawnable = enemyCatalog.findAll().stream()
+                .filter(e -> e.getSpawnWeight() == null || e.getSpawnWeight() > 0)
+                .toList();
+
+        List<CombatCell> combatCells = new ArrayList<>();
+        for (int level = 1; level <= maxLevel; level++) {
+            EffectiveStatsDTO stats = characterService.typicalStatsForLevel(level);
+            List<Enemy> eligible = eligibleFor(spawnable, level);
+            for (Enemy enemy : eligible) {
+                combatCells.add(new CombatCell(level, stats, enemy, root.nextLong()));
+            }
+        }
+        int maxEnergy = new CharacterGame().getMaxEnergy(); // Starting max energy
+        List<GatherCell> gatherCells = new ArrayList<>();
+        for (int level = 1; level <= maxLevel; level++) {
+            gatherCells.add(new GatherCell(level, maxEnergy, root.nextLong()));
+        }
+
+        List<Cell> cells = new ArrayList<>(combatCells);
+        cells.addAll(gatherCells);
+        pool.invoke(new SimulateTask(cells, 0, cells.size(), trials, secondsPerAction));
+
+        BalanceReportDTO report = new BalanceReportDTO();
+        report.setSeed(GameRandom.format(seed));
+        report.setMaxLevel(maxLevel);
+        report.setBandSize(bandSize);
+        report.setTrialsPerCell(trials);
+        for (int from = 1; from <= maxLevel; from += bandSize) {
+            int to = Math.min(maxLevel, from + bandSize - 1);
+            report.getCombat().add(combatBand(combatCells, from, to));
+            report.getGathering().add(gatherBand(gatherCells, from, to));
+        }
+        report.setSimulatedFights(combatCells.stream().mapToLong(c -> c.fights).sum());
+        report.setSimulatedGatherActions(gatherCells.stream().mapToLong(c -> c.actions).sum());
+        report.setElapsedMillis(System.currentTimeMillis() - started);
+        logger.info("Balance simulation: {} cells, {} fights, {} gather actions in {} ms",
+                cells.size(), report.getSimulatedFights(), report.getSimulatedGatherActions(), report.getElapsedMillis());
+        return report;
+    }
+
+    /**
+     * Same eligibility as {@link EnemyCatalog#randomEnemyForLevel}: level range, else every spawnable enemy.
+     */
+    private static List<Enemy> eligibleFor(List<Enemy> spawnable, int level) {
+        List<Enemy> eligible = spawnable.stream()
+                .filter(e -> (e.getMinLevel() == null || e.getMinLevel() <= level)
+                        && (e.getMaxLevel() == null || e.getMaxLevel() >= level))
+                .toList();
+        return eligible.isEmpty() ? spawnable : eligible;
+    }
+
+    private BalanceReportDTO.CombatBand combatBand(List<CombatCell> cells, int from, int to) {
+        BalanceReportDTO.CombatBand band = new BalanceReportDTO.CombatBand();
+        band.setFromLevel(from);
+        band.setToLevel(to);
+        double weightSum = 0, winRate = 0, expPerHour = 0, goldPerHour = 0, hoursPerLevel = 0;
+        long wins = 0, winTurns = 0;
+        Set<Integer> enemies = new HashSet<>();
+        for (CombatCell c : cells) {
+            if (c.level < from || c.level > to || c.fights == 0) continue;
+            double w = c.enemy.getSpawnWeight() != null ? c.enemy.getSpawnWeight() : 1;
+            double cellExpPerHour = (double) c.exp / c.hours;
+            weightSum += w;
+            winRate += w * c.wins / c.fights;
+            expPerHour += w * cellExpPerHour;
+            goldPerHour += w * c.gold / c.hours;
+            hoursPerLevel += w * (cellExpPerHour > 0
+                    ? characterService.calculateExpForNextLevel(c.level) / cellExpPerHour
+                    : Double.POSITIVE_INFINITY);
+            wins += c.wins;
+            winTurns += c.winTurns;
+            enemies.add(c.enemy.getEnemyId());
+        }
+        if (weightSum > 0) {
+            band.setWinRate(winRate / weightSum);
+            band.setExpPerHour(expPerHour / weightSum);
+            band.setGoldPerHour(goldPerHour / weightSum);
+            band.setHoursPerLevel(hoursPerLevel / weightSum);
+        }
+        band.setAvgTurnsToKill(wins > 0 ? (double) winTurns / wins : 0);
+        band.setEnemies(enemies.size());
+        return band;
+    }
+
+    private BalanceReportDTO.GatheringBand gatherBand(List<GatherCell> cells, int from, int to) {
+        BalanceReportDTO.GatheringBand band = new BalanceReportDTO.GatheringBand();
+        band.setFromLevel(from);
+        band.setToLevel(to);
+        int count = 0;
+        double items = 0, exp = 0, hoursPerLevel = 0;
+        for (GatherCell c : cells) {
+            if (c.level < from || c.level > to) continue;
+            double cellExpPerHour = (double) c.exp / c.hours;
+            items += (double) c.items / c.hours;
+            exp += cellExpPerHour;
+            hoursPerLevel += gatheringService.calculateExpForGatheringNextLevel(c.level) / cellExpPerHour;
+            count++;
+        }
+        if (count > 0) {
+            band.setItemsPerHour(items / count);
+            band.setExpPerHour(exp / count);
+            band.setHoursPerLevel(hoursPerLevel / count);
+        }
+        return band;
+    }
+
+    /**
+     * Splits the cell range in halves until it is small enough to run directly.
+     */
+    private static final class SimulateTask extends RecursiveAction {
+        private final List<Cell> cells;
+        private final int from;
+        private final int to;
+        private final int trials;
+        private final double secondsPerAction;
+
+        SimulateTask(List<Cell> cells, int from, int to, int trials, double secondsPerAction) {
+            this.cells = cells;
+            this.from = from;
+            this.to = to;
+            this.trials = trials;
+            this.secondsPerAction = secondsPerAction;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    cells.get(i).run(trials, secondsPerAction);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SimulateTask(cells, from, mid, trials, secondsPerAction),
+                      new SimulateTask(cells, mid, to, trials, secondsPerAction));
+        }
+    }
+
+    /**
+     * One independent unit of simulation; results are kept on the cell itself.
+     */
+    private abstract static class Cell {
+        final int level;
+        final long seed;
+        double hours;
+
+        Cell(int level, long seed) {
+            this.level = level;
+            this.seed = seed;
+        }
+
+        abstract void run(int trials, double secondsPerAction);
+    }
+
+    private static final class CombatCell extends Cell {
+        final EffectiveStatsDTO stats;
+        final Enemy enemy;
+        long fights, wins, winTurns, exp, gold;
+
+        CombatCell(int level, EffectiveStatsDTO stats, Enemy enemy, long seed) {
+            super(level, seed);
+            this.stats = stats;
+            this.enemy = enemy;
+        }
+
+        @Override
+        void run(int trials, double secondsPerAction) {
+            SplittableRandom rng = new SplittableRandom(seed);
+            int playerDmg = BattleService.calculateDamage(stats.getAtk(), enemy.getDef());
+            int enemyDmg = BattleService.calculateDamage(enemy.getAtk(), stats.getDef());
+            for (int t = 0; t < trials; t++) {
+                double seconds = 0;
+                int hp = stats.getMaxHp();
+                while (seconds < SECONDS_PER_HOUR) {
+                    int enemyHp = enemy.getMaxHp();
+                    int turns = 0;
+                    boolean won;
+                    while (true) {
+                        turns++;
+                        enemyHp -= playerDmg;
+                        if (enemyHp <= 0) { won = true; break; }
+                        hp -= enemyDmg;
+                        if (hp <= 0) { won = false; break; }
+                    }
+                    seconds += turns * secondsPerAction;
+                    fights++;
+                    if (won) {
+                        int[] rewards = BattleService.rollRewards(enemy, rng);
+                        wins++;
+                        winTurns += turns;
+                        exp += rewards[0];
+                        gold += rewards[1];
+                    } else {
+                        hp = 1; // Respawn with 1 HP
+                    }
+                    while (hp < stats.getMaxHp()) {
+                        hp = Math.min(stats.getMaxHp(), hp + MinigameService.REST_HP_GAIN);
+                        seconds += secondsPerAction;
+                    }
+                }
+                hours += seconds / SECONDS_PER_HOUR;
+            }
+        }
+    }
+
+    private static final class GatherCell extends Cell {
+        final int maxEnergy;
+        long actions, items, exp;
+
+        GatherCell(int level, int maxEnergy, long seed) {
+            super(level, seed);
+            this.maxEnergy = maxEnergy;
+        }
+
+        @Override
+        void run(int trials, double secondsPerAction) {
+            SplittableRandom rng = new SplittableRandom(seed);
+            for (int t = 0; t < trials; t++) {
+                double seconds = 0;
+                int energy = maxEnergy;
+                while (seconds < SECONDS_PER_HOUR) {
+                    if (energy < GatheringService.BASE_GATHERING_ENERGY_COST) {
+                        energy = Math.min(maxEnergy, energy + MinigameService.REST_ENERGY_GAIN);
+                    } else {
+                        energy -= GatheringService.BASE_GATHERING_ENERGY_COST;
+                        items += GatheringService.rollGatherAmount(level, rng);
+                        exp += (long) GatheringService.BASE_GATHERING_EXP_GAIN * level;
+                        actions++;
+                    }
+                    seconds += secondsPerAction;
+                }
+                hours += seconds / SECONDS_PER_HOUR;
+            }
+        }
+    }
+}
@@ -1,19 +1,25 @@
 package com.poly.service;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Random;
+import java.util.Optional;
+import java.util.random.RandomGenerator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.poly.dto.ApiResponse;
+import com.poly.dto.AutoBattleResultDTO;
 import com.poly.dto.BattleActionResponseDTO;
 import com.poly.dto.BattleStateDTO;
 import com.poly.dto.EffectiveStatsDTO;
@@ -22,25 +28,27 @@ import com.poly.model.Enemy;
 import com.poly.model.Item; // Ensure Item is imported
 import com.poly.model.User;
 import com.poly.model.UserItem;
-import com.poly.model.Wallet;
 import com.poly.repository.CharacterGameRepository;
-import com.poly.repository.EnemyRepository;
 import com.poly.repository.UserItemRepository;
 import com.poly.repository.UserRepository;
-import com.poly.repository.WalletRepository;
+import com.poly.security.CustomUserDetails;
 
 @Service
 public class BattleService {
 
     private static final Logger logger = LoggerFactory.getLogger(BattleService.class);
-    private final Random random = new Random();
+
+    // Safety cap for auto battle; every attack deals at least 1 damage so fights end well before this
+    private static final int MAX_AUTO_TURNS = 1000;
 
     @Autowired private UserRepository userRepository;
     @Autowired private CharacterGameRepository characterGameRepo;
-    @Autowired private EnemyRepository enemyRepo;
-    @Autowired private WalletRepository walletRepo;
+    @Autowired private EnemyCatalog enemyCatalog;
     @Autowired private UserItemRepository userItemRepo;
     @Autowired private CharacterService characterService; // For stats and level up
+    @Autowired private BattleSessionManager sessionManager;
+    @Autowired private GameRandom gameRandom;
+    @Autowired private InventoryWriter inventoryWriter;
 
     private User getCurrentUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -49,6 +57,18 @@ public class BattleService {
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
     }
 
+    /**
+     * Resolves the current user's ID from the security principal so battle
+     * turns don't need a user lookup.
+     */
+    private Integer getCurrentUserId() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof CustomUserDetails details) {
+            return details.getUser().getUserId();
+        }
+        return getCurrentUser().getUserId();
+    }
+
     private CharacterGame getCharacter(Integer userId) {
         // Assuming one character per user for now
         return characterGameRepo.findFirstByUserIdOrderByCharacterIdAsc(userId)
@@ -56,198 +76,413 @@ public class BattleService {
     }
 
     /**
-     * Gets the initial state for the battle page.
+     * Finds the current user's active session and checks it is for the given enemy.
+     */
+    private BattleSession getSession(Integer enemyId) {
+        BattleSession session = sessionManager.findByUser(getCurrentUserId())
+                .orElseThrow(() -> new RuntimeException("Trận chiến không tồn tại hoặc đã hết hạn!"));
+        if (!session.getEnemyId().equals(enemyId)) {
+            throw new RuntimeException("Trận chiến không khớp với quái vật này!");
+        }
+        return session;
+    }
+
+    /**
+     * Damage dealt by one hit. Every hit deals at least 1 damage.
+     */
+    public static int calculateDamage(int atk, int def) {
+        return Math.max(1, atk - def);
+    }
+
+    /**
+     * Gets the initial state for the battle page and opens the in-memory battle session.
+     * Re-opening the page for the same enemy resumes the running session.
      */
     @Transactional(readOnly = true)
     public BattleStateDTO getBattleState(Integer enemyId) {
-        User user = getCurrentUser();
+        return BattleStateDTO.from(startSession(getCurrentUser(), enemyId));
+    }
+
+    /**
+     * Returns the user's running session against this enemy, or opens a new one.
+     * A running session against another enemy is persisted as abandoned first.
+     */
+    private BattleSession startSession(User user, Integer enemyId) {
+        Optional<BattleSession> existing = sessionManager.findByUser(user.getUserId());
+        if (existing.isPresent()) {
+            BattleSession session = existing.get();
+            synchronized (session) {
+                if (!session.isFinished() && session.getEnemyId().equals(enemyId)) {
+                    session.touch();
+                    logger.info("Resuming battle for user {} against enemy {}", user.getUsername(), session.getEnemy().getName());
+                    return session;
+                }
+            }
+            abandon(session);
+        }
+
         CharacterGame character = getCharacter(user.getUserId());
-        Enemy enemy = enemyRepo.findById(enemyId)
+        Enemy enemy = enemyCatalog.findById(enemyId)
                 .orElseThrow(() -> new RuntimeException("Enemy not found with ID: " + enemyId));
 
         // Get effective stats including equipment
         EffectiveStatsDTO effectiveStats = characterService.getEffectiveStats(character.getCharacterId());
 
-        // Get available potions
+        BattleSession session = new BattleSession(character.getCharacterId(), user.getUserId(), user.getUsername(),
+                character.getName(), enemy, character.getLevel(), gameRandom.newSeed(), effectiveStats.getAtk(),
+                effectiveStats.getDef(), character.getMaxHealth(), character.currentHealth(LocalDateTime.now()));
+
+        // Bring available potions into the session
         List<UserItem> potions = userItemRepo.findByUser_UserIdAndItem_ItemCategoryAndQuantityGreaterThan(user.getUserId(), "potion", 0);
+        for (UserItem ui : potions) {
+            Item item = ui.getItem();
+            if (item == null) continue;
+            session.addPotion(ui.getUserItemId(), item.getItemId(), item.getName(),
+                    item.getGameHeal() != null ? item.getGameHeal() : 0, ui.getQuantity());
+        }
+
+        sessionManager.open(session).ifPresent(previous -> sessionManager.persistSeparately(previous, 0, 0));
 
         logger.info("Starting battle for user {} against enemy {}", user.getUsername(), enemy.getName());
-        return BattleStateDTO.from(character, enemy, effectiveStats, potions);
+        return session;
     }
 
     /**
-     * Handles the Player's Attack action.
+     * Handles the Player's Attack action against the in-memory session.
+     * The database is only touched when the fight ends.
      */
-    @Transactional
-    public ApiResponse<BattleActionResponseDTO> doAttack(Integer enemyId, Integer currentEnemyHp) {
-        User user = getCurrentUser();
-        CharacterGame character = getCharacter(user.getUserId());
-        Enemy enemy = enemyRepo.findById(enemyId).orElseThrow(() -> new RuntimeException("Enemy not found"));
-        Wallet wallet = walletRepo.findByUser_UserId(user.getUserId()).orElseThrow(() -> new RuntimeException("Wallet not found"));
-
+    public ApiResponse<BattleActionResponseDTO> doAttack(Integer enemyId) {
+        BattleSession session = getSession(enemyId);
         BattleActionResponseDTO response = new BattleActionResponseDTO();
+        int expGained = 0;
+        int goldGained = 0;
 
-        // 1. Get effective player stats
-        EffectiveStatsDTO playerStats = characterService.getEffectiveStats(character.getCharacterId());
-
-        // 2. Player attacks enemy
-        int playerDmg = Math.max(1, playerStats.getAtk() - enemy.getDef());
-        currentEnemyHp = Math.max(0, currentEnemyHp - playerDmg);
-        response.addLog(String.format("⚔️ Bạn tấn công %s, gây %d sát thương!", enemy.getName(), playerDmg));
-        response.setEnemyHp(currentEnemyHp);
+        synchronized (session) {
+            if (session.isFinished()) {
+                return ApiResponse.error("Trận chiến đã kết thúc!");
+            }
+            session.touch();
+            Enemy enemy = session.getEnemy();
+
+            // 1. Player attacks enemy
+            int playerDmg = calculateDamage(session.getPlayerAtk(), enemy.getDef());
+            session.setEnemyHp(Math.max(0, session.getEnemyHp() - playerDmg));
+            response.addLog(String.format("⚔️ Bạn tấn công %s, gây %d sát thương!", enemy.getName(), playerDmg));
+            response.setEnemyHp(session.getEnemyHp());
+
+            if (session.getEnemyHp() <= 0) {
+                // 2a. Enemy defeated
+                response.addLog("🎉 " + enemy.getName() + " đã bị đánh bại!");
+                response.setBattleStatus(1); // Status: Won
+                int[] rewards = rollRewards(enemy, gameRandom.forSeed(session.getSeed()));
+                expGained = rewards[0];
+                goldGained = rewards[1];
+                response.setRewardExp(expGained);
+                response.setSeed(GameRandom.format(session.getSeed()));
+                response.setRewardGold(new BigDecimal(goldGained));
+                response.addLog(String.format("Bạn nhận được %d EXP và %d Vàng!", expGained, goldGained));
+                session.markFinished();
+            } else {
+                // 2b. Enemy attacks player
+                int enemyDmg = calculateDamage(enemy.getAtk(), session.getPlayerDef());
+                session.setPlayerHp(Math.max(0, session.getPlayerHp() - enemyDmg));
+                response.addLog(String.format("👹 %s tấn công, bạn nhận %d sát thương!", enemy.getName(), enemyDmg));
+
+                if (session.getPlayerHp() <= 0) {
+                    response.addLog("💀 Bạn đã bị đánh bại!");
+                    response.setBattleStatus(2); // Status: Lost
+                    session.setPlayerHp(1); // Respawn with 1 HP
+                    session.markFinished();
+                }
+            }
+            response.setPlayerHp(response.getBattleStatus() == 2 ? 0 : session.getPlayerHp());
+        }
 
-        // 3. Check if enemy is defeated
-        if (currentEnemyHp <= 0) {
-            // *** FIX: Pass the correct arguments to handleVictory ***
-            return handleVictory(character, enemy, wallet, response); // Victory handled, returns response
+        if (session.isFinished()) {
+            finish(session, response, expGained, goldGained);
+            return ApiResponse.success(response.getBattleStatus() == 1 ? "Chiến thắng!" : "Lượt đánh thành công", response);
         }
 
-        // 4. Enemy attacks player
-        // Consider adding randomness or special attacks later
-        int enemyDmg = Math.max(1, enemy.getAtk() - playerStats.getDef());
-        character.setHealth(Math.max(0, character.getHealth() - enemyDmg));
-        response.addLog(String.format("👹 %s tấn công, bạn nhận %d sát thương!", enemy.getName(), enemyDmg));
-        response.setPlayerHp(character.getHealth());
+        logger.debug("Attack turn completed. Player HP: {}, Enemy HP: {}", session.getPlayerHp(), session.getEnemyHp());
+        return ApiResponse.success("Lượt đánh thành công", response);
+    }
 
-        // 5. Check if player is defeated
-        if (character.getHealth() <= 0) {
-            response.addLog("💀 Bạn đã bị đánh bại!");
-            response.setBattleStatus(2); // Status: Lost
-            // Optional: Handle defeat consequences (e.g., respawn with 1 HP, lose gold/exp)
-            character.setHealth(1); // Respawn with 1 HP
-            // characterGameRepo.save(character); // Save the 1 HP state (done below)
+    /**
+     * Handles the Player's Use Item (Potion) action against the in-memory session.
+     * The potion is taken out of the inventory first; if it is gone the turn fails.
+     */
+    public ApiResponse<BattleActionResponseDTO> doUseItem(Integer userItemId, Integer enemyId) {
+        BattleSession session = getSession(enemyId);
+        BattleActionResponseDTO response = new BattleActionResponseDTO();
+
+        synchronized (session) {
+            if (session.isFinished()) {
+                return ApiResponse.error("Trận chiến đã kết thúc!");
+            }
+            BattleSession.PotionStack potion = session.getPotion(userItemId);
+
+            // Validation
+            if (potion == null) {
+                return ApiResponse.error("Vật phẩm không tồn tại trong kho đồ!");
+            }
+            if (potion.getQuantity() <= 0) {
+                return ApiResponse.error("Đã hết " + potion.getName() + "!");
+            }
+            if (session.getPlayerHp() >= session.getPlayerMaxHp()) {
+                return ApiResponse.error("Máu đã đầy!");
+            }
+            if (!drink(session, potion)) {
+                return ApiResponse.error("Đã hết " + potion.getName() + "!");
+            }
+            session.touch();
+            Enemy enemy = session.getEnemy();
+
+            // 1. Apply Potion effect
+            int actualHeal = Math.min(potion.getHeal(), session.getPlayerMaxHp() - session.getPlayerHp());
+            session.setPlayerHp(session.getPlayerHp() + actualHeal);
+            response.addLog(String.format("💊 Bạn dùng %s, hồi %d HP!", potion.getName(), actualHeal));
+
+            // 2. Potion already taken out of the inventory
+            response.setUserItemId(userItemId);
+            response.setUpdatedPotionQty(potion.getQuantity());
+
+            // 3. Enemy attacks player (using item takes a turn)
+            int enemyDmg = calculateDamage(enemy.getAtk(), session.getPlayerDef());
+            session.setPlayerHp(Math.max(0, session.getPlayerHp() - enemyDmg));
+            response.addLog(String.format("👹 %s tấn công khi bạn đang dùng item, nhận %d sát thương!", enemy.getName(), enemyDmg));
+
+            // 4. Update response HP and check defeat
+            response.setPlayerHp(session.getPlayerHp());
+            response.setEnemyHp(session.getEnemyHp()); // Enemy HP doesn't change on player's item use
+            if (session.getPlayerHp() <= 0) {
+                response.addLog("💀 Bạn đã bị đánh bại ngay sau khi dùng Potion!");
+                response.setBattleStatus(2); // Lost
+                session.setPlayerHp(1); // Respawn
+                session.markFinished();
+            }
         }
 
-        // Save character state (HP change) if battle is ongoing or player lost but respawned
-        if (response.getBattleStatus() == 0 || response.getBattleStatus() == 2) {
-             characterGameRepo.save(character);
+        if (session.isFinished()) {
+            finish(session, response, 0, 0);
         }
+        logger.debug("Use Item turn completed. Player HP: {}, Enemy HP: {}", session.getPlayerHp(), session.getEnemyHp());
+        return ApiResponse.success("Dùng vật phẩm thành công", response);
+    }
 
-        logger.debug("Attack turn completed. Player HP: {}, Enemy HP: {}", character.getHealth(), currentEnemyHp);
-        return ApiResponse.success("Lượt đánh thành công", response);
+    /**
+     * Handles the Flee action. Ends the current session, keeping HP and potions used so far.
+     */
+    public ApiResponse<BattleActionResponseDTO> doFlee() {
+        BattleActionResponseDTO response = new BattleActionResponseDTO();
+        sessionManager.findByUser(getCurrentUserId()).ifPresent(session -> {
+            synchronized (session) {
+                if (session.isFinished()) return;
+                session.markFinished();
+            }
+            response.setPlayerHp(session.getPlayerHp());
+            response.setEnemyHp(session.getEnemyHp());
+            finish(session, response, 0, 0);
+        });
+        response.setBattleStatus(3); // 3 = Fled
+        response.addLog("Bạn đã bỏ chạy!");
+        return ApiResponse.success("Bỏ chạy thành công", response);
     }
 
     /**
-     * Handles the Player's Use Item (Potion) action.
+     * Resolves the whole fight server-side: attacks every turn and drinks a potion
+     * whenever HP drops below the threshold (percent of max HP, 0 = never).
+     * Continues the running session against this enemy if there is one.
+     * Potions leave the inventory as they are drunk, and {@link BattleSessionManager#persist}
+     * writes HP, rewards and level up in the same transaction, so all of it commits or none.
+     * The session is dropped once that transaction has committed.
      */
     @Transactional
-    public ApiResponse<BattleActionResponseDTO> doUseItem(Integer userItemId, Integer enemyId, Integer currentEnemyHp) {
-        User user = getCurrentUser();
-        CharacterGame character = getCharacter(user.getUserId());
-        Enemy enemy = enemyRepo.findById(enemyId).orElseThrow(() -> new RuntimeException("Enemy not found"));
-        UserItem userItem = userItemRepo.findById(userItemId)
-                .orElseThrow(() -> new RuntimeException("Vật phẩm không tồn tại trong kho đồ!"));
+    public ApiResponse<AutoBattleResultDTO> doAutoBattle(Integer enemyId, int potionThresholdPercent) {
+        BattleSession session = startSession(getCurrentUser(), enemyId);
+        AutoBattleResultDTO result = new AutoBattleResultDTO();
+        int expGained = 0;
+        int goldGained = 0;
 
-        // Validation
-        if (!userItem.getUser().getUserId().equals(user.getUserId())) {
-            return ApiResponse.error("Không có quyền sử dụng vật phẩm này!");
+        synchronized (session) {
+            if (session.isFinished()) {
+                return ApiResponse.error("Trận chiến đã kết thúc!");
+            }
+            session.touch();
+            Enemy enemy = session.getEnemy();
+
+            while (result.getBattleStatus() == 0 && result.getTurns() < MAX_AUTO_TURNS) {
+                int playerHp = session.getPlayerHp();
+                BattleSession.PotionStack potion = null;
+                if (potionThresholdPercent > 0 && playerHp * 100 < potionThresholdPercent * session.getPlayerMaxHp()) {
+                    potion = choosePotion(session, session.getPlayerMaxHp() - playerHp);
+                    while (potion != null && !drink(session, potion)) {
+                        potion = choosePotion(session, session.getPlayerMaxHp() - playerHp);
+                    }
+                }
+
+                int playerAmount;
+                if (potion != null) {
+                    // Drink: heal, then the enemy gets its attack
+                    playerAmount = Math.min(potion.getHeal(), session.getPlayerMaxHp() - playerHp);
+                    session.setPlayerHp(playerHp + playerAmount);
+                    result.setPotionsUsed(result.getPotionsUsed() + 1);
+                } else {
+                    playerAmount = calculateDamage(session.getPlayerAtk(), enemy.getDef());
+                    session.setEnemyHp(Math.max(0, session.getEnemyHp() - playerAmount));
+                }
+
+                int enemyDmg = 0;
+                if (session.getEnemyHp() <= 0) {
+                    result.setBattleStatus(1); // Won
+                } else {
+                    enemyDmg = calculateDamage(enemy.getAtk(), session.getPlayerDef());
+                    session.setPlayerHp(Math.max(0, session.getPlayerHp() - enemyDmg));
+                    if (session.getPlayerHp() <= 0) {
+                        result.setBattleStatus(2); // Lost
+                    }
+                }
+                result.addTurn(potion != null ? AutoBattleResultDTO.ACTION_POTION : AutoBattleResultDTO.ACTION_ATTACK,
+                        playerAmount, enemyDmg, session.getPlayerHp(), session.getEnemyHp());
+            }
+
+            result.setPlayerHp(session.getPlayerHp());
+            result.setEnemyHp(session.getEnemyHp());
+            if (result.getBattleStatus() == 1) {
+                int[] rewards = rollRewards(enemy, gameRandom.forSeed(session.getSeed()));
+                expGained = rewards[0];
+                goldGained = rewards[1];
+                result.setRewardExp(expGained);
+                result.setSeed(GameRandom.format(session.getSeed()));
+                result.setRewardGold(new BigDecimal(goldGained));
+                result.addLog(String.format("🎉 %s đã bị đánh bại sau %d lượt!", enemy.getName(), result.getTurns()));
+                result.addLog(String.format("Bạn nhận được %d EXP và %d Vàng!", expGained, goldGained));
+                session.markFinished();
+            } else if (result.getBattleStatus() == 2) {
+                result.addLog(String.format("💀 Bạn đã bị %s đánh bại sau %d lượt!", enemy.getName(), result.getTurns()));
+                session.setPlayerHp(1); // Respawn with 1 HP
+                session.markFinished();
+            } else {
+                result.addLog("Trận chiến quá dài, hãy tiếp tục đánh tay.");
+            }
         }
 
-        // *** FIX: Cast userItem.getItem() to Item BEFORE using it ***
-        Item item = (Item) userItem.getItem();
-        if (item == null || !"potion".equalsIgnoreCase(item.getItemCategory())) {
-            return ApiResponse.error("Vật phẩm này không phải là Potion!");
+        if (!session.isFinished()) {
+            return ApiResponse.success("Trận chiến chưa kết thúc", result);
         }
-        if (userItem.getQuantity() <= 0) {
-            // *** FIX: Use 'item.getName()' instead of logger ***
-            return ApiResponse.error("Đã hết " + item.getName() + "!");
+        CharacterGame updatedCharacter = sessionManager.persist(session, expGained, goldGained);
+        // Left registered on rollback; the sweep removes it
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                sessionManager.close(session);
+            }
+        });
+        if (updatedCharacter.getLevel() > session.getPlayerLevel()) {
+            result.setNewLevel(updatedCharacter.getLevel());
+            result.addLog(String.format("✨ CHÚC MỪNG BẠN ĐÃ LÊN CẤP %d!", updatedCharacter.getLevel()));
         }
-        if (character.getHealth() >= character.getMaxHealth()) {
-            return ApiResponse.error("Máu đã đầy!");
+        if (result.getBattleStatus() == 1) {
+            gameRandom.record("battle", session.getUserId(), session.getSeed(),
+                    String.format("enemy=%d exp=%d gold=%d", session.getEnemyId(), expGained, goldGained));
         }
-
-        BattleActionResponseDTO response = new BattleActionResponseDTO();
-
-        // 1. Apply Potion effect
-        // *** FIX: Use the 'item' variable which is already casted ***
-        int healAmount = item.getGameHeal() != null ? item.getGameHeal() : 0;
-        int actualHeal = Math.min(healAmount, character.getMaxHealth() - character.getHealth());
-        character.setHealth(character.getHealth() + actualHeal);
-        // *** FIX: Use the 'item' variable ***
-        response.addLog(String.format("💊 Bạn dùng %s, hồi %d HP!", item.getName(), actualHeal));
-
-        // 2. Consume Potion
-        userItem.setQuantity(userItem.getQuantity() - 1);
-        response.setUserItemId(userItemId);
-        response.setUpdatedPotionQty(userItem.getQuantity());
-        if (userItem.getQuantity() <= 0) {
-            userItemRepo.delete(userItem);
-            // *** FIX: Use the 'item' variable ***
-            logger.info("Deleted empty potion stack: {}", item.getName());
-        } else {
-            userItemRepo.save(userItem);
-        }
-
-        // 3. Enemy attacks player (using item takes a turn)
-        EffectiveStatsDTO playerStats = characterService.getEffectiveStats(character.getCharacterId());
-        int enemyDmg = Math.max(1, enemy.getAtk() - playerStats.getDef());
-        character.setHealth(Math.max(0, character.getHealth() - enemyDmg));
-        response.addLog(String.format("👹 %s tấn công khi bạn đang dùng item, nhận %d sát thương!", enemy.getName(), enemyDmg));
-
-        // 4. Update response HP and check defeat
-        response.setPlayerHp(character.getHealth());
-        response.setEnemyHp(currentEnemyHp); // Enemy HP doesn't change on player's item use
-        if (character.getHealth() <= 0) {
-            response.addLog("💀 Bạn đã bị đánh bại ngay sau khi dùng Potion!");
-            response.setBattleStatus(2); // Lost
-            character.setHealth(1); // Respawn
-        }
-
-        // Save character state
-        characterGameRepo.save(character);
-        logger.debug("Use Item turn completed. Player HP: {}, Enemy HP: {}", character.getHealth(), currentEnemyHp);
-        return ApiResponse.success("Dùng vật phẩm thành công", response);
+        logger.info("Auto battle of user {} against {}: status={}, turns={}, potions={}, EXP +{}, Gold +{}",
+                session.getUsername(), session.getEnemy().getName(), result.getBattleStatus(), result.getTurns(),
+                result.getPotionsUsed(), expGained, goldGained);
+        return ApiResponse.success(result.getBattleStatus() == 1 ? "Chiến thắng!" : "Thất bại!", result);
     }
 
     /**
-     * Handles logic when the player wins the battle.
+     * Takes one potion of the stack out of the inventory. A stack that is no longer
+     * there is emptied in the session, so it is not offered again.
+     * @return false if the potion is gone
      */
-    @Transactional // This method modifies state, needs transaction
-    private ApiResponse<BattleActionResponseDTO> handleVictory(CharacterGame character, Enemy enemy, Wallet wallet, BattleActionResponseDTO response) {
-        response.addLog("🎉 " + enemy.getName() + " đã bị đánh bại!");
-        response.setBattleStatus(1); // Status: Won
-
-        // Calculate rewards
-        int expGained = 0;
-        if (enemy.getRewardExpMin() != null && enemy.getRewardExpMax() != null && enemy.getRewardExpMax() >= enemy.getRewardExpMin()) {
-             expGained = random.nextInt(enemy.getRewardExpMax() - enemy.getRewardExpMin() + 1) + enemy.getRewardExpMin();
+    private boolean drink(BattleSession session, BattleSession.PotionStack potion) {
+        if (!inventoryWriter.remove(session.getUserId(), potion.getItemId(), 1)) {
+            potion.markEmpty();
+            return false;
         }
+        potion.consumeOne();
+        return true;
+    }
 
-        int goldGained = 0;
-        if(enemy.getRewardGoldMin() != null && enemy.getRewardGoldMax() != null && enemy.getRewardGoldMax() >= enemy.getRewardGoldMin()){
-             goldGained = random.nextInt(enemy.getRewardGoldMax() - enemy.getRewardGoldMin() + 1) + enemy.getRewardGoldMin();
+    /**
+     * Smallest potion that fills the missing HP, otherwise the strongest one left.
+     */
+    private BattleSession.PotionStack choosePotion(BattleSession session, int missingHp) {
+        BattleSession.PotionStack best = null;
+        for (BattleSession.PotionStack stack : session.getPotions()) {
+            if (stack.getQuantity() <= 0 || stack.getHeal() <= 0) continue;
+            if (best == null) {
+                best = stack;
+            } else if (best.getHeal() >= missingHp) {
+                if (stack.getHeal() >= missingHp && stack.getHeal() < best.getHeal()) best = stack;
+            } else if (stack.getHeal() > best.getHeal()) {
+                best = stack;
+            }
         }
+        return best;
+    }
 
+    /**
+     * Persists sessions that have been idle for longer than the session TTL.
+     */
+    @Scheduled(fixedDelayString = "${game.battle.session-sweep-millis:30000}")
+    public void evictExpiredSessions() {
+        for (BattleSession session : sessionManager.drainExpired()) {
+            try {
+                sessionManager.persist(session, 0, 0);
+                logger.info("Battle session of user {} against {} timed out", session.getUsername(), session.getEnemy().getName());
+            } catch (Exception e) {
+                logger.error("Failed to persist timed out battle session for character {}: {}",
+                        session.getCharacterId(), e.getMessage(), e);
+            }
+        }
+    }
 
-        // Apply rewards
-        character.setExperience(character.getExperience() + expGained);
-        wallet.setBalance(wallet.getBalance().add(new BigDecimal(goldGained)));
-
-        // Check for character level up
-        boolean leveledUp = characterService.checkAndProcessLevelUp(character.getCharacterId());
-        // Note: checkAndProcessLevelUp saves the character if leveled up
-
-        response.setRewardExp(expGained);
-        response.setRewardGold(new BigDecimal(goldGained));
-        response.addLog(String.format("Bạn nhận được %d EXP và %d Vàng!", expGained, goldGained));
+    /**
+     * Writes the final state of a finished session in one transaction, then removes it.
+     */
+    private void finish(BattleSession session, BattleActionResponseDTO response, int expGained, int goldGained) {
+        CharacterGame updatedCharacter = sessionManager.persist(session, expGained, goldGained);
+        sessionManager.close(session);
+        if (updatedCharacter.getLevel() > session.getPlayerLevel()) {
+            response.addLog(String.format("✨ CHÚC MỪNG BẠN ĐÃ LÊN CẤP %d! Bạn nhận được điểm nâng cấp.", updatedCharacter.getLevel()));
+        }
+        if (response.getBattleStatus() == 1) {
+            gameRandom.record("battle", session.getUserId(), session.getSeed(),
+                    String.format("enemy=%d exp=%d gold=%d", session.getEnemyId(), expGained, goldGained));
+            logger.info("User {} defeated enemy {} and gained {} EXP, {} Gold. Leveled up: {}",
+                    session.getUsername(), session.getEnemy().getName(), expGained, goldGained,
+                    updatedCharacter.getLevel() > session.getPlayerLevel());
+        }
+    }
 
-        if (leveledUp) {
-            // Fetch the updated character level after level up
-            // Re-fetch character to get updated stats if CharacterService doesn't return it
-             CharacterGame updatedCharacter = characterGameRepo.findById(character.getCharacterId()).orElse(character);
-             response.addLog(String.format("✨ CHÚC MỪNG BẠN ĐÃ LÊN CẤP %d! Bạn nhận được điểm nâng cấp.", updatedCharacter.getLevel()));
-             // Character state already saved by CharacterService
-        } else {
-             // If no level up, save the character with added experience
-             characterGameRepo.save(character);
+    /**
+     * Persists a session the player left by opening another battle.
+     */
+    private void abandon(BattleSession session) {
+        synchronized (session) {
+            if (session.isFinished()) return;
+            session.markFinished();
         }
+        sessionManager.persistSeparately(session, 0, 0);
+        sessionManager.close(session);
+    }
 
-        // Save wallet changes
-        walletRepo.save(wallet);
+    /**
+     * Reward rolls of a won fight: {exp, gold}. Pure function of the enemy and the
+     * stream, so the same seed always gives the same rewards (used by replay).
+     */
+    public static int[] rollRewards(Enemy enemy, RandomGenerator rng) {
+        int exp = rollBetween(rng, enemy.getRewardExpMin(), enemy.getRewardExpMax());
+        int gold = rollBetween(rng, enemy.getRewardGoldMin(), enemy.getRewardGoldMax());
+        return new int[] { exp, gold };
+    }
 
-        logger.info("User {} defeated enemy {} and gained {} EXP, {} Gold. Leveled up: {}",
-                 character.getUser().getUsername(), enemy.getName(), expGained, goldGained, leveledUp);
-        // *** FIX: Return ApiResponse.success with the updated response DTO ***
-        return ApiResponse.success("Chiến thắng!", response);
-     }
-}
\ No newline at end of file
+    private static int rollBetween(RandomGenerator rng, Integer min, Integer max) {
+        if (min == null || max == null || max < min) {
+            return 0;
+        }
+        return GameRandom.between(rng, min, max);
+    }
+}
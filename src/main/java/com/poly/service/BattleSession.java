@@ -0,0 +1,131 @@
+package com.poly.service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.poly.model.Enemy;
+
+/**
+ * In-memory state of one active fight. Created when the battle page is opened
+ * and mutated by every turn; only drinking a potion touches the database during
+ * the fight. The final state is written back once by {@link BattleSessionManager#persist}.
+ * All mutation happens while holding the session's monitor.
+ */
+public class BattleSession {
+
+    private final Integer characterId;
+    private final Integer userId;
+    private final String username;      // Account login, for logs
+    private final String characterName; // Shown on the battle screen
+    private final Enemy enemy;
+    private final int playerLevel;
+    // Seed of this fight's reward rolls, see GameRandom
+    private final long seed;
+
+    // Effective stats snapshot taken at battle start
+    private final int playerAtk;
+    private final int playerDef;
+    private final int playerMaxHp;
+    // HP at battle start; the fight's net HP change is applied to the character, not its final HP
+    private final int playerStartHp;
+
+    private int playerHp;
+    private int enemyHp;
+    private final Map<Integer, PotionStack> potions = new LinkedHashMap<>();
+
+    private volatile long lastActivityMillis;
+    private boolean finished;
+
+    public BattleSession(Integer characterId, Integer userId, String username, String characterName, Enemy enemy,
+                         int playerLevel, long seed, int playerAtk, int playerDef, int playerMaxHp, int playerHp) {
+        this.characterId = characterId;
+        this.userId = userId;
+        this.username = username;
+        this.characterName = characterName;
+        this.enemy = enemy;
+        this.playerLevel = playerLevel;
+        this.seed = seed;
+        this.playerAtk = playerAtk;
+        this.playerDef = playerDef;
+        this.playerMaxHp = playerMaxHp;
+        this.playerHp = playerHp;
+        this.playerStartHp = playerHp;
+        this.enemyHp = enemy.getMaxHp();
+        touch();
+    }
+
+    public void addPotion(Integer userItemId, Integer itemId, String name, int heal, int quantity) {
+        potions.put(userItemId, new PotionStack(userItemId, itemId, name, heal, quantity));
+    }
+
+    public PotionStack getPotion(Integer userItemId) {
+        return potions.get(userItemId);
+    }
+
+    public Collection<PotionStack> getPotions() {
+        return potions.values();
+    }
+
+    public void touch() {
+        lastActivityMillis = System.currentTimeMillis();
+    }
+
+    public boolean isExpired(long now, long ttlMillis) {
+        return now - lastActivityMillis > ttlMillis;
+    }
+
+    public Integer getCharacterId() { return characterId; }
+    public Integer getUserId() { return userId; }
+    public String getUsername() { return username; }
+    public String getCharacterName() { return characterName; }
+    public Enemy getEnemy() { return enemy; }
+    public Integer getEnemyId() { return enemy.getEnemyId(); }
+    public int getPlayerLevel() { return playerLevel; }
+    public long getSeed() { return seed; }
+    public int getPlayerAtk() { return playerAtk; }
+    public int getPlayerDef() { return playerDef; }
+    public int getPlayerMaxHp() { return playerMaxHp; }
+    public int getPlayerStartHp() { return playerStartHp; }
+    public int getPlayerHp() { return playerHp; }
+    public void setPlayerHp(int playerHp) { this.playerHp = playerHp; }
+    public int getEnemyHp() { return enemyHp; }
+    public void setEnemyHp(int enemyHp) { this.enemyHp = enemyHp; }
+    public boolean isFinished() { return finished; }
+    public void markFinished() { this.finished = true; }
+
+    /**
+     * A potion stack the player brought into the fight. Each potion drunk is taken
+     * out of user_item right away; the quantity here is only what the page shows.
+     */
+    public static class PotionStack {
+        private final Integer userItemId;
+        private final Integer itemId;
+        private final String name;
+        private final int heal;
+        private int quantity;
+
+        PotionStack(Integer userItemId, Integer itemId, String name, int heal, int quantity) {
+            this.userItemId = userItemId;
+            this.itemId = itemId;
+            this.name = name;
+            this.heal = heal;
+            this.quantity = quantity;
+        }
+
+        public void consumeOne() {
+            quantity--;
+        }
+
+        // The stack left the inventory during the fight (sold, listed or used elsewhere)
+        public void markEmpty() {
+            quantity = 0;
+        }
+
+        public Integer getUserItemId() { return userItemId; }
+        public Integer getItemId() { return itemId; }
+        public String getName() { return name; }
+        public int getHeal() { return heal; }
+        public int getQuantity() { return quantity; }
+    }
+}
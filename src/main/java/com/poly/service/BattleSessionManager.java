@@ -0,0 +1,156 @@
+package com.poly.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.poly.model.CharacterGame;
+import com.poly.repository.CharacterGameRepository;
+import com.poly.repository.WalletRepository;
+
+/**
+ * Holds the active {@link BattleSession}s, keyed by character, and writes a
+ * session's final state back to the database when the fight ends.
+ * Sessions idle for longer than the configured TTL are handed back by
+ * {@link #drainExpired()} so the caller can persist them as timed out.
+ */
+@Component
+public class BattleSessionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(BattleSessionManager.class);
+
+    private final Map<Integer, BattleSession> sessionsByCharacter = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> characterByUser = new ConcurrentHashMap<>();
+
+    @Value("${game.battle.session-ttl-seconds:300}")
+    private long sessionTtlSeconds;
+
+    @Autowired private CharacterGameRepository characterGameRepo;
+    @Autowired private WalletRepository walletRepo;
+    @Autowired private CharacterService characterService;
+
+    /**
+     * Registers a new session for its character.
+     * @return the session it replaced, already marked finished, so the caller can persist it.
+     */
+    public Optional<BattleSession> open(BattleSession session) {
+        BattleSession previous = sessionsByCharacter.put(session.getCharacterId(), session);
+        characterByUser.put(session.getUserId(), session.getCharacterId());
+        if (previous == null || previous == session) {
+            return Optional.empty();
+        }
+        synchronized (previous) {
+            if (previous.isFinished()) {
+                return Optional.empty();
+            }
+            previous.markFinished();
+        }
+        return Optional.of(previous);
+    }
+
+    public Optional<BattleSession> findByUser(Integer userId) {
+        Integer characterId = characterByUser.get(userId);
+        return characterId == null ? Optional.empty() : Optional.ofNullable(sessionsByCharacter.get(characterId));
+    }
+
+    /**
+     * Removes a session that the caller has just marked finished.
+     */
+    public void close(BattleSession session) {
+        // Conditional removes: a newer session for the same character must stay reachable
+        if (sessionsByCharacter.remove(session.getCharacterId(), session)) {
+            characterByUser.remove(session.getUserId(), session.getCharacterId());
+        }
+    }
+
+    /**
+     * Removes and returns every session idle for longer than the TTL.
+     * Returned sessions are marked finished and must be persisted by the caller.
+     * Finished sessions still registered because persisting them failed are only removed.
+     */
+    public List<BattleSession> drainExpired() {
+        long now = System.currentTimeMillis();
+        long ttlMillis = sessionTtlSeconds * 1000L;
+        List<BattleSession> expired = new ArrayList<>();
+        for (BattleSession session : sessionsByCharacter.values()) {
+            synchronized (session) {
+                if (!session.isExpired(now, ttlMillis)) {
+                    continue;
+                }
+                if (session.isFinished()) {
+                    close(session);
+                    continue;
+                }
+                session.markFinished();
+            }
+            close(session);
+            expired.add(session);
+        }
+        return expired;
+    }
+
+    public int activeSessionCount() {
+        return sessionsByCharacter.size();
+    }
+
+    /**
+     * Writes the final state of a finished session: the HP won or lost in the fight
+     * and, on victory, the EXP/gold rewards and any resulting level up. Joins the
+     * caller's transaction, so an auto battle commits its potions and its outcome together.
+     * @return the character after the update (level reflects any level up).
+     */
+    @Transactional
+    public CharacterGame persist(BattleSession session, int expGained, int goldGained) {
+        return write(session, expGained, goldGained);
+    }
+
+    /**
+     * {@link #persist} in a transaction of its own, for a session ended from a read-only
+     * page load (a battle left for another one).
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public CharacterGame persistSeparately(BattleSession session, int expGained, int goldGained) {
+        return write(session, expGained, goldGained);
+    }
+
+    private CharacterGame write(BattleSession session, int expGained, int goldGained) {
+        CharacterGame character = characterGameRepo.findById(session.getCharacterId())
+                .orElseThrow(() -> new RuntimeException("Character not found: " + session.getCharacterId()));
+
+        // As a change, so HP regenerated or healed outside the fight is kept
+        character.applyRegen(LocalDateTime.now());
+        int hpChange = session.getPlayerHp() - session.getPlayerStartHp();
+        character.setHealth(Math.max(1, Math.min(character.getHealth() + hpChange, character.getMaxHealth())));
+
+        // One atomic increment; saving a loaded wallet would lose to any concurrent purchase
+        if (goldGained > 0 && walletRepo.credit(session.getUserId(), new BigDecimal(goldGained)) == 0) {
+            throw new RuntimeException("Wallet not found");
+        }
+
+        boolean leveledUp = false;
+        if (expGained > 0) {
+            character.setExperience(character.getExperience() + expGained);
+            // Same persistence context, so the level up sees the HP and EXP set above
+            leveledUp = characterService.checkAndProcessLevelUp(character.getCharacterId());
+        }
+        if (!leveledUp) {
+            characterGameRepo.save(character);
+        }
+
+        logger.debug("Persisted battle session for character {}: HP={}, EXP +{}, Gold +{}",
+                session.getCharacterId(), character.getHealth(), expGained, goldGained);
+        return character;
+    }
+}
@@ -1,5 +1,6 @@
 package com.poly.service;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -21,17 +22,10 @@ public class CharacterService {
 
     @Autowired private CharacterGameRepository characterRepo;
     @Autowired private UserItemRepository userItemRepo;
+    @Autowired private EffectiveStatsCache statsCache;
+    @Autowired private ProgressionTables progressionTables;
 
-    // --- Level Up Configuration ---
-    // EXP needed for level L = BASE * (RATE ^ (L-1))
-    private static final double BASE_EXP_FOR_LEVEL = 100;
-    private static final double EXP_GROWTH_RATE = 1.3;
-    // Points gained per level
-    private static final int POINTS_PER_LEVEL = 3;
-    // Base stat increases per level
-    private static final int HP_GAIN_PER_LEVEL = 10;
-    private static final int ATK_GAIN_PER_LEVEL = 1;
-    private static final int DEF_GAIN_PER_LEVEL = 1;
+    // Level thresholds and per-level gains live in ProgressionTables.
     // Stat increases per allocated point
     private static final int HP_GAIN_PER_POINT = 5;
     private static final int ATK_GAIN_PER_POINT = 1;
@@ -40,9 +34,16 @@ public class CharacterService {
 
     /**
      * Calculates the character's effective stats, including equipped items.
+     * Served from {@link EffectiveStatsCache}; a hit needs no database access.
      */
     @Transactional(readOnly = true)
     public EffectiveStatsDTO getEffectiveStats(Integer characterId) {
+        EffectiveStatsCache.Stats cached = statsCache.get(characterId);
+        if (cached != null) {
+            return new EffectiveStatsDTO(cached.getAtk(), cached.getDef(), cached.getMaxHp());
+        }
+        long loadGeneration = statsCache.currentGeneration();
+
         CharacterGame character = characterRepo.findById(characterId)
                 .orElseThrow(() -> new RuntimeException("Character not found with ID: " + characterId));
 
@@ -64,6 +65,8 @@ public class CharacterService {
             }
         }
         logger.debug("Calculated effective stats for character {}: ATK={}, DEF={}, MaxHP={}", characterId, totalAtk, totalDef, totalMaxHp);
+        statsCache.put(characterId, loadGeneration,
+                new EffectiveStatsCache.Stats(character.getUser().getUserId(), totalAtk, totalDef, totalMaxHp));
         return new EffectiveStatsDTO(totalAtk, totalDef, totalMaxHp);
     }
 
@@ -75,36 +78,28 @@ public class CharacterService {
     @Transactional
     public boolean checkAndProcessLevelUp(Integer characterId) {
         CharacterGame character = characterRepo.findById(characterId).orElseThrow(() -> new RuntimeException("Character not found"));
-        boolean leveledUp = false;
-
-        long expNeeded = calculateExpForNextLevel(character.getLevel());
+        ProgressionTables.LevelGain gain = progressionTables.resolveCharacter(character.getLevel(), character.getExperience());
+        boolean leveledUp = gain.getLevelsGained() > 0;
 
-        // Loop in case of multiple level ups from a large EXP gain
-        while (character.getExperience() >= expNeeded) {
-            character.setExperience(character.getExperience() - (int)expNeeded); // Deduct EXP for current level
-            character.setLevel(character.getLevel() + 1);
+        if (leveledUp) {
+            character.setExperience((int) gain.getRemainingExp()); // EXP left inside the new level
+            character.setLevel(gain.getNewLevel());
 
             // Increase base stats
-            character.setMaxHealth(character.getMaxHealth() + HP_GAIN_PER_LEVEL);
-            character.setAtk(character.getAtk() + ATK_GAIN_PER_LEVEL);
-            character.setDef(character.getDef() + DEF_GAIN_PER_LEVEL);
+            character.setMaxHealth(character.getMaxHealth() + gain.getHp());
+            character.setAtk(character.getAtk() + gain.getAtk());
+            character.setDef(character.getDef() + gain.getDef());
 
             // Refill health and energy on level up
             character.setHealth(character.getMaxHealth());
             character.setEnergy(character.getMaxEnergy());
 
             // Grant upgrade points
-            character.setUpgradePoints(character.getUpgradePoints() + POINTS_PER_LEVEL);
+            character.setUpgradePoints(character.getUpgradePoints() + gain.getPoints());
 
-            leveledUp = true;
             logger.info("Character {} leveled up to {}!", character.getCharacterId(), character.getLevel());
-
-            // Calculate EXP needed for the *new* next level
-            expNeeded = calculateExpForNextLevel(character.getLevel());
-        }
-
-        if (leveledUp) {
             characterRepo.save(character); // Save the updated character state
+            statsCache.invalidate(characterId);
         }
         return leveledUp;
     }
@@ -113,9 +108,24 @@ public class CharacterService {
      * Calculates the total EXP required to reach the next level from the start of the current level.
      */
     public long calculateExpForNextLevel(int currentLevel) {
-        if (currentLevel < 1) return (long) BASE_EXP_FOR_LEVEL; // Should not happen, but safeguard
-        // Formula: base * (rate ^ (level - 1))
-        return (long) Math.floor(BASE_EXP_FOR_LEVEL * Math.pow(EXP_GROWTH_RATE, currentLevel - 1));
+        return progressionTables.expForNextLevel(currentLevel);
+    }
+
+    /**
+     * Base stats of a character that reached the level with the default starting
+     * stats and spread its upgrade points evenly (used by the balance simulator).
+     */
+    public EffectiveStatsDTO typicalStatsForLevel(int level) {
+        CharacterGame fresh = new CharacterGame(); // Column defaults are the starting stats
+        ProgressionTables.LevelGain gain = progressionTables.resolveCharacter(1, progressionTables.cumulativeExp(level));
+        int points = gain.getPoints();
+        int hpPoints = points / 3;
+        int atkPoints = (points - hpPoints) / 2;
+        int defPoints = points - hpPoints - atkPoints;
+        return new EffectiveStatsDTO(
+                fresh.getAtk() + gain.getAtk() + atkPoints * ATK_GAIN_PER_POINT,
+                fresh.getDef() + gain.getDef() + defPoints * DEF_GAIN_PER_POINT,
+                fresh.getMaxHealth() + gain.getHp() + hpPoints * HP_GAIN_PER_POINT);
     }
 
     /**
@@ -134,6 +144,7 @@ public class CharacterService {
         boolean statUpdated = false;
         switch (statType.toLowerCase()) {
             case "maxhp":
+                character.applyRegen(LocalDateTime.now());
                 character.setMaxHealth(character.getMaxHealth() + HP_GAIN_PER_POINT);
                 // Optionally, increase current HP proportionally or fully heal
                 character.setHealth(character.getHealth() + HP_GAIN_PER_POINT); // Simple increase, capped below
@@ -156,7 +167,9 @@ public class CharacterService {
         if(statUpdated){
             character.setUpgradePoints(character.getUpgradePoints() - 1);
             logger.info("Allocated point to {} for character {}. Points remaining: {}", statType, characterId, character.getUpgradePoints());
-            return characterRepo.save(character);
+            CharacterGame saved = characterRepo.save(character);
+            statsCache.invalidate(characterId);
+            return saved;
         } else {
              // Should not happen if switch case covers all valid types
              throw new RuntimeException("Không thể cập nhật chỉ số.");
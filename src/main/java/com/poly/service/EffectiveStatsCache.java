@@ -0,0 +1,118 @@
+package com.poly.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Per-character cache of effective combat stats (base stats plus equipment).
+ * Entries are only dropped when something that feeds the stats changes:
+ * equip/unequip, stat point allocation or level up.
+ */
+@Component
+public class EffectiveStatsCache {
+
+    private final Map<Integer, Stats> entries = new ConcurrentHashMap<>();
+    // Bumped on every invalidation; a load that raced with one is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @return cached stats, or null on a miss
+     */
+    public Stats get(Integer characterId) {
+        Stats stats = entries.get(characterId);
+        if (stats != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return stats;
+    }
+
+    /**
+     * Marks the start of a load after a miss; pass the result to {@link #put}.
+     */
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    public void put(Integer characterId, long loadGeneration, Stats stats) {
+        if (generation.get() == loadGeneration) {
+            entries.put(characterId, stats);
+        }
+    }
+
+    public void invalidate(Integer characterId) {
+        evict(() -> entries.remove(characterId));
+    }
+
+    /**
+     * Invalidates every character of a user (equipment belongs to the user).
+     */
+    public void invalidateUser(Integer userId) {
+        evict(() -> entries.values().removeIf(stats -> stats.userId == userId));
+    }
+
+    private void evict(Runnable removal) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        removal.run();
+        // Evict again once the change is visible, so a concurrent load of the old state can't stick
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    generation.incrementAndGet();
+                    removal.run();
+                }
+            });
+        }
+    }
+
+    public double hitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", entries.size());
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("invalidations", invalidations.sum());
+        metrics.put("hitRatio", hitRatio());
+        return metrics;
+    }
+
+    /**
+     * Immutable effective stats of one character.
+     */
+    public static final class Stats {
+        final int userId;
+        final int atk;
+        final int def;
+        final int maxHp;
+
+        public Stats(int userId, int atk, int def, int maxHp) {
+            this.userId = userId;
+            this.atk = atk;
+            this.def = def;
+            this.maxHp = maxHp;
+        }
+
+        public int getAtk() { return atk; }
+        public int getDef() { return def; }
+        public int getMaxHp() { return maxHp; }
+    }
+}
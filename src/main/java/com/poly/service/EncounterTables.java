@@ -0,0 +1,182 @@
+package com.poly.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.random.RandomGenerator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Named weighted outcome tables (adventure encounters, later loot drops), loaded
+ * from a JSON file and compiled into {@link AliasTable}s, one per level band.
+ * Rolling an outcome is a band lookup plus one O(1) sample; nothing touches the
+ * database. {@link #reload()} swaps in a new set of tables atomically and keeps
+ * the current one if the file does not parse or is invalid: the adventure table
+ * must be there, and its outcome types must be {@link MinigameService.EncounterType}s.
+ *
+ * <pre>
+ * { "tables": { "adventure": [
+ *     { "fromLevel": 1, "outcomes": [ { "type": "GOLD", "weight": 25, "min": 10, "max": 20 }, ... ] }
+ * ] } }
+ * </pre>
+ */
+@Service
+public class EncounterTables {
+
+    private static final Logger logger = LoggerFactory.getLogger(EncounterTables.class);
+
+    public static final String ADVENTURE = "adventure";
+
+    // Outcome types each known table may use; tables not listed here are free-form
+    private static final Map<String, Set<String>> TYPES = Map.of(ADVENTURE,
+            Arrays.stream(MinigameService.EncounterType.values()).map(Enum::name).collect(Collectors.toUnmodifiableSet()));
+
+    @Value("${game.encounters.location:classpath:encounters.json}")
+    private String location;
+
+    @Autowired private ResourceLoader resourceLoader;
+    @Autowired private ObjectMapper objectMapper;
+
+    private volatile Map<String, Band[]> tables = Map.of();
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * Re-reads the table file and atomically replaces the current tables.
+     * @return the number of tables loaded
+     */
+    public int reload() {
+        JsonNode root;
+        try (InputStream in = resourceLoader.getResource(location).getInputStream()) {
+            root = objectMapper.readTree(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read encounter tables from " + location, e);
+        }
+        Map<String, Band[]> loaded = new HashMap<>();
+        root.path("tables").fields().forEachRemaining(entry -> loaded.put(entry.getKey(), parseTable(entry.getKey(), entry.getValue())));
+        if (!loaded.containsKey(ADVENTURE)) {
+            throw new IllegalStateException("Encounter tables in " + location + " have no " + ADVENTURE + " table");
+        }
+        tables = Map.copyOf(loaded);
+        logger.info("Encounter tables loaded from {}: {}", location, loaded.keySet());
+        return loaded.size();
+    }
+
+    /**
+     * Rolls one outcome of a table for a level.
+     */
+    public Outcome roll(String table, int level, RandomGenerator rng) {
+        Band[] bands = tables.get(table);
+        if (bands == null) {
+            throw new IllegalStateException("Unknown encounter table: " + table);
+        }
+        return bandFor(bands, level).outcomes.sample(rng);
+    }
+
+    private static Band bandFor(Band[] bands, int level) {
+        // Bands are sorted by fromLevel and the first one starts at level 1
+        int low = 0;
+        int high = bands.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (bands[mid].fromLevel <= level) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return bands[low];
+    }
+
+    private static Band[] parseTable(String name, JsonNode bandsNode) {
+        List<Band> bands = new ArrayList<>();
+        for (JsonNode bandNode : bandsNode) {
+            int fromLevel = bandNode.path("fromLevel").asInt(1);
+            List<Outcome> outcomes = new ArrayList<>();
+            List<Double> weights = new ArrayList<>();
+            for (JsonNode o : bandNode.path("outcomes")) {
+                String type = o.path("type").asText(null);
+                if (type == null) {
+                    throw new IllegalStateException("Encounter table " + name + ": outcome without type");
+                }
+                Set<String> allowed = TYPES.get(name);
+                if (allowed != null && !allowed.contains(type)) {
+                    throw new IllegalStateException("Encounter table " + name + ": unknown outcome type " + type
+                            + ", expected one of " + allowed);
+                }
+                int min = o.path("min").asInt(0);
+                int max = o.path("max").asInt(min);
+                if (max < min) {
+                    throw new IllegalStateException("Encounter table " + name + ": max < min for " + type);
+                }
+                outcomes.add(new Outcome(type, min, max));
+                weights.add(o.path("weight").asDouble(0));
+            }
+            double[] w = weights.stream().mapToDouble(Double::doubleValue).toArray();
+            try {
+                bands.add(new Band(fromLevel, AliasTable.of(outcomes, w)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Encounter table " + name + " band " + fromLevel + ": " + e.getMessage(), e);
+            }
+        }
+        bands.sort((a, b) -> Integer.compare(a.fromLevel, b.fromLevel));
+        if (bands.isEmpty() || bands.get(0).fromLevel > 1) {
+            throw new IllegalStateException("Encounter table " + name + " must have a band starting at level 1");
+        }
+        return bands.toArray(Band[]::new);
+    }
+
+    private static final class Band {
+        final int fromLevel;
+        final AliasTable<Outcome> outcomes;
+
+        Band(int fromLevel, AliasTable<Outcome> outcomes) {
+            this.fromLevel = fromLevel;
+            this.outcomes = outcomes;
+        }
+    }
+
+    /**
+     * One weighted entry of a table. What the type means is up to the caller;
+     * min/max give an optional amount range.
+     */
+    public static final class Outcome {
+        private final String type;
+        private final int min;
+        private final int max;
+
+        public Outcome(String type, int min, int max) {
+            this.type = type;
+            this.min = min;
+            this.max = max;
+        }
+
+        public String getType() { return type; }
+        public int getMin() { return min; }
+        public int getMax() { return max; }
+
+        public int rollAmount(RandomGenerator rng) {
+            return GameRandom.between(rng, min, max);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.poly.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.random.RandomGenerator;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.poly.model.Enemy;
+import com.poly.repository.EnemyRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Read-only, in-memory copy of the enemy table used on the adventure and battle
+ * hot paths. The whole table is loaded once at startup; {@link #reload()} builds
+ * a new snapshot and swaps it in atomically, so readers never see a half-built catalog.
+ * Enemy instances held here are shared and must not be modified.
+ */
+@Service
+public class EnemyCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(EnemyCatalog.class);
+
+    @Autowired private EnemyRepository enemyRepo;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * Reloads all enemies from the database and atomically replaces the current snapshot.
+     * @return the number of enemies loaded
+     */
+    public int reload() {
+        List<Enemy> enemies = enemyRepo.findAll();
+        snapshot = Snapshot.of(enemies);
+        logger.info("Enemy catalog loaded: {} enemies, {} level bands", enemies.size(), snapshot.bands.length);
+        return enemies.size();
+    }
+
+    public Optional<Enemy> findById(Integer enemyId) {
+        return Optional.ofNullable(snapshot.byId.get(enemyId));
+    }
+
+    public List<Enemy> findAll() {
+        return snapshot.all;
+    }
+
+    /**
+     * Picks a random encounterable enemy, uniformly.
+     */
+    public Optional<Enemy> randomEnemy() {
+        return randomEnemy(ThreadLocalRandom.current());
+    }
+
+    public Optional<Enemy> randomEnemy(RandomGenerator rng) {
+        Enemy[] spawnable = snapshot.spawnable;
+        if (spawnable.length == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(spawnable[rng.nextInt(spawnable.length)]);
+    }
+
+    /**
+     * Picks a random enemy for a character level, weighted by spawn_weight among
+     * enemies whose [min_level, max_level] range contains the level. Falls back to
+     * a uniform pick over all encounterable enemies if none fits the level.
+     */
+    public Optional<Enemy> randomEnemyForLevel(int level, RandomGenerator rng) {
+        Snapshot current = snapshot;
+        LevelBand band = current.bandFor(level);
+        if (band == null || band.totalWeight <= 0) {
+            return randomEnemy(rng);
+        }
+        int roll = rng.nextInt(band.totalWeight);
+        int index = Arrays.binarySearch(band.cumulativeWeights, roll + 1);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return Optional.of(band.enemies[index]);
+    }
+
+    /**
+     * Immutable view of the enemy table.
+     */
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = of(List.of());
+
+        final List<Enemy> all;
+        final Map<Integer, Enemy> byId;
+        final Enemy[] spawnable;
+        final LevelBand[] bands; // Sorted by fromLevel
+
+        private Snapshot(List<Enemy> all, Map<Integer, Enemy> byId, Enemy[] spawnable, LevelBand[] bands) {
+            this.all = all;
+            this.byId = byId;
+            this.spawnable = spawnable;
+            this.bands = bands;
+        }
+
+        static Snapshot of(List<Enemy> enemies) {
+            List<Enemy> all = List.copyOf(enemies);
+            Map<Integer, Enemy> byId = all.stream()
+                    .collect(Collectors.toUnmodifiableMap(Enemy::getEnemyId, Function.identity()));
+            Enemy[] spawnable = all.stream().filter(e -> weightOf(e) > 0).toArray(Enemy[]::new);
+
+            // Level ranges only change eligibility at a min_level or just after a max_level,
+            // so one band per breakpoint covers every level.
+            TreeSet<Integer> breakpoints = new TreeSet<>();
+            breakpoints.add(1);
+            for (Enemy e : spawnable) {
+                breakpoints.add(minLevelOf(e));
+                if (e.getMaxLevel() != null) {
+                    breakpoints.add(e.getMaxLevel() + 1);
+                }
+            }
+            List<LevelBand> bands = new ArrayList<>();
+            for (int fromLevel : breakpoints) {
+                List<Enemy> eligible = new ArrayList<>();
+                for (Enemy e : spawnable) {
+                    if (minLevelOf(e) <= fromLevel && (e.getMaxLevel() == null || e.getMaxLevel() >= fromLevel)) {
+                        eligible.add(e);
+                    }
+                }
+                bands.add(new LevelBand(fromLevel, eligible));
+            }
+            return new Snapshot(all, byId, spawnable, bands.toArray(LevelBand[]::new));
+        }
+
+        LevelBand bandFor(int level) {
+            LevelBand found = null;
+            int low = 0;
+            int high = bands.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (bands[mid].fromLevel <= level) {
+                    found = bands[mid];
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Enemies eligible from a level up to the next band, with cumulative spawn weights.
+     */
+    private static final class LevelBand {
+        final int fromLevel;
+        final Enemy[] enemies;
+        final int[] cumulativeWeights;
+        final int totalWeight;
+
+        LevelBand(int fromLevel, List<Enemy> eligible) {
+            this.fromLevel = fromLevel;
+            this.enemies = eligible.toArray(Enemy[]::new);
+            this.cumulativeWeights = new int[enemies.length];
+            int total = 0;
+            for (int i = 0; i < enemies.length; i++) {
+                total += weightOf(enemies[i]);
+                cumulativeWeights[i] = total;
+            }
+            this.totalWeight = total;
+        }
+    }
+
+    private static int weightOf(Enemy e) {
+        return e.getSpawnWeight() != null ? e.getSpawnWeight() : 1;
+    }
+
+    private static int minLevelOf(Enemy e) {
+        return e.getMinLevel() != null ? e.getMinLevel() : 1;
+    }
+}
@@ -0,0 +1,64 @@
+package com.poly.service;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Source of randomness for all game rolls. Every battle or action gets its own
+ * seed and its own {@link SplittableRandom} stream, so request threads never
+ * share generator state and any outcome can be re-derived from its seed
+ * (see {@link GameReplayService}). Seeds are written to the audit log and
+ * returned to the client as hex strings.
+ */
+@Component
+public class GameRandom {
+
+    // Separate logger so audit lines can be routed to their own appender
+    private static final Logger audit = LoggerFactory.getLogger("com.poly.audit.rng");
+
+    /**
+     * Draws a fresh seed for a new battle or action.
+     */
+    public long newSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Deterministic stream for a seed; the same seed always yields the same rolls.
+     * The generator is not thread-safe and belongs to a single action.
+     */
+    public RandomGenerator forSeed(long seed) {
+        return new SplittableRandom(seed);
+    }
+
+    /**
+     * Records a seeded outcome for reward audits and dispute handling.
+     */
+    public void record(String action, Integer userId, long seed, String outcome) {
+        audit.info("action={} user={} seed={} outcome={}", action, userId, format(seed), outcome);
+    }
+
+    /**
+     * Inclusive range roll; returns min when the range is empty or inverted.
+     */
+    public static int between(RandomGenerator rng, int min, int max) {
+        if (max <= min) {
+            return min;
+        }
+        return min + rng.nextInt(max - min + 1);
+    }
+
+    // Hex keeps the full 64 bits intact in JSON (JavaScript numbers would round them)
+    public static String format(long seed) {
+        return Long.toHexString(seed);
+    }
+
+    public static long parse(String seed) {
+        return Long.parseUnsignedLong(seed, 16);
+    }
+}
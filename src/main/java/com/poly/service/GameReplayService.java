@@ -0,0 +1,81 @@
+package com.poly.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.poly.model.Enemy;
+
+/**
+ * Re-derives game outcomes from the seeds recorded by {@link GameRandom}, for
+ * dispute handling and reward audits. Replays use the current enemy catalog,
+ * so results only match the original if the enemy table has not changed since.
+ */
+@Service
+public class GameReplayService {
+
+    @Autowired private GameRandom gameRandom;
+    @Autowired private EnemyCatalog enemyCatalog;
+    @Autowired private MinigameService minigameService;
+
+    /**
+     * Rewards of a won battle. Damage is deterministic, so the rewards are the only rolled part.
+     */
+    public Map<String, Object> replayBattle(Integer enemyId, String seed) {
+        Enemy enemy = enemyCatalog.findById(enemyId)
+                .orElseThrow(() -> new RuntimeException("Enemy not found with ID: " + enemyId));
+        int[] rewards = BattleService.rollRewards(enemy, gameRandom.forSeed(GameRandom.parse(seed)));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("seed", seed);
+        result.put("enemyId", enemyId);
+        result.put("rewardExp", rewards[0]);
+        result.put("rewardGold", rewards[1]);
+        return result;
+    }
+
+    /**
+     * Encounter of one adventure step for a character level, or of an auto-explore
+     * run of {@code steps} steps.
+     */
+    public Map<String, Object> replayAdventure(int level, String seed, int steps) {
+        RandomGenerator rng = gameRandom.forSeed(GameRandom.parse(seed));
+        // Auto-explore runs draw consecutive steps from one seed and stop at enemies/resources
+        List<String> outcomes = new ArrayList<>();
+        MinigameService.AdventureRoll roll = null;
+        for (int i = 0; i < steps; i++) {
+            roll = minigameService.rollAdventure(level, rng);
+            outcomes.add(roll.describe());
+            if (roll.getType() == MinigameService.EncounterType.ENEMY
+                    || roll.getType() == MinigameService.EncounterType.RESOURCE) {
+                break;
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("seed", seed);
+        result.put("level", level);
+        result.put("encounter", roll != null ? roll.getType() : null);
+        result.put("outcome", String.join(",", outcomes));
+        return result;
+    }
+
+    /**
+     * Amount of a gather request (times > 1 for batch gathers) for a skill level.
+     */
+    public Map<String, Object> replayGather(int skillLevel, int times, String seed) {
+        int amount = GatheringService.rollGatherAmount(skillLevel, times, gameRandom.forSeed(GameRandom.parse(seed)));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("seed", seed);
+        result.put("skillLevel", skillLevel);
+        result.put("times", times);
+        result.put("amount", amount);
+        return result;
+    }
+}
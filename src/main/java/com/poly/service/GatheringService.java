@@ -1,9 +1,9 @@
 package com.poly.service;
 
 import java.math.BigDecimal;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Random;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.random.RandomGenerator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,16 +17,12 @@ import org.springframework.transaction.annotation.Transactional;
 import com.poly.dto.ApiResponse;
 import com.poly.dto.GatheringPageDTO;
 import com.poly.dto.GatheringResponseDTO;
+import com.poly.dto.IdleGatheringDTO;
 import com.poly.model.CharacterGame;
-import com.poly.model.CharacterGathering;
-import com.poly.model.Item;
+import com.poly.model.CharacterGatheringSkills;
 import com.poly.model.User;
-import com.poly.model.UserItem;
 import com.poly.model.Wallet;
 import com.poly.repository.CharacterGameRepository;
-import com.poly.repository.CharacterGatheringRepository;
-import com.poly.repository.ItemRepository;
-import com.poly.repository.UserItemRepository;
 import com.poly.repository.UserRepository;
 import com.poly.repository.WalletRepository;
 
@@ -34,35 +30,26 @@ import com.poly.repository.WalletRepository;
 public class GatheringService {
 
     private static final Logger logger = LoggerFactory.getLogger(GatheringService.class);
-    private final Random random = new Random();
-
-    private static final int BASE_GATHERING_ENERGY_COST = 5;
-    private static final int BASE_GATHERING_EXP_GAIN = 10;
-    // Constants for gathering level EXP calculation
-    private static final double BASE_GATHERING_EXP_FOR_LEVEL = 50.0;
-    private static final double GATHERING_EXP_GROWTH_RATE = 1.2;
-
-    private static final Map<String, String> RESOURCE_TO_ITEM_NAME = Map.of(
-            "stone", "Đá thô",
-            "wood", "Gỗ mục",
-            "fish", "Cá nhỏ",
-            "ore", "Quặng đồng"
-    );
-
-    private static final Map<String, String> RESOURCE_TO_ICON = Map.of(
-            "stone", "🪨",
-            "wood", "🌲",
-            "fish", "🐟",
-            "ore", "⛏️"
-    );
+
+    // Default energy cost; the live cost comes from the resource (ResourceRegistry)
+    static final int BASE_GATHERING_ENERGY_COST = 5; // Package-private: also used by BalanceSimulator
+    static final int BASE_GATHERING_EXP_GAIN = 10;
+    public static final int MAX_GATHER_BATCH = 50; // Also bounds admin replays
+    // Idle gathering: at most one action per interval, paid with energy like an active
+    // gather, accrued for at most the cap
+    private static final int IDLE_SECONDS_PER_ACTION = 60;
+    private static final long IDLE_MAX_ACCRUAL_SECONDS = 8 * 3600;
+    // Gathering level EXP thresholds live in ProgressionTables
 
     @Autowired private UserRepository userRepository;
     @Autowired private CharacterGameRepository characterGameRepo;
-    @Autowired private CharacterGatheringRepository gatheringRepo;
+    @Autowired private GatheringSkillStore skillStore;
     @Autowired private WalletRepository walletRepo;
-    @Autowired private ItemRepository itemRepo;
-    @Autowired private UserItemRepository userItemRepo; // Correct declaration
+    @Autowired private ResourceRegistry resourceRegistry;
+    @Autowired private InventoryWriter inventoryWriter;
     @Autowired private CharacterService characterService; // Keep for potential reuse or consistency
+    @Autowired private GameRandom gameRandom;
+    @Autowired private ProgressionTables progressionTables;
 
     private User getCurrentUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -83,48 +70,64 @@ public class GatheringService {
         Wallet wallet = walletRepo.findByUser_UserId(user.getUserId())
                 .orElseThrow(() -> new RuntimeException("Wallet not found"));
 
-        CharacterGathering cg = gatheringRepo.findByCharacter_CharacterIdAndResourceType(
-                character.getCharacterId(), resourceType)
-                .orElseThrow(() -> new RuntimeException("Kỹ năng thu thập '" + resourceType + "' không tồn tại cho nhân vật."));
-
-        String itemName = RESOURCE_TO_ITEM_NAME.getOrDefault(resourceType, "Unknown Resource Item");
-        Item item = itemRepo.findByNameIgnoreCase(itemName)
-                .orElseThrow(() -> new RuntimeException("Vật phẩm '" + itemName + "' tương ứng với tài nguyên '" + resourceType + "' không tồn tại trong bảng Item."));
-
-        String icon = RESOURCE_TO_ICON.getOrDefault(resourceType, "❓");
+        ResourceRegistry.Resource resource = resourceRegistry.require(resourceType);
+        CharacterGatheringSkills.Skill cg = skillStore.load(character.getCharacterId()).get(resourceType);
 
         logger.debug("Loading gathering page for user {}, resource {}", user.getUsername(), resourceType);
-        // Pass CharacterService if GatheringPageDTO needs it (it does currently)
-        return GatheringPageDTO.from(cg, item, character, wallet, icon, characterService);
+        return GatheringPageDTO.from(cg, resource, character, wallet, calculateExpForGatheringNextLevel(cg.getLevel()));
     }
 
     @Transactional
     public ApiResponse<GatheringResponseDTO> doGather(String resourceType) {
+        return gather(resourceType, 1);
+    }
+
+    /**
+     * Gathers N times in one request. Energy for all N is checked up front, the N
+     * yields are rolled from one seed at the current skill level, and the level up
+     * runs once over the summed EXP. Character, skill and inventory are written once.
+     */
+    @Transactional
+    public ApiResponse<GatheringResponseDTO> doGatherBatch(String resourceType, int times) {
+        if (times < 1 || times > MAX_GATHER_BATCH) {
+            return ApiResponse.error("Số lần thu thập phải từ 1 đến " + MAX_GATHER_BATCH + "!");
+        }
+        return gather(resourceType, times);
+    }
+
+    private ApiResponse<GatheringResponseDTO> gather(String resourceType, int times) {
         User user = getCurrentUser();
         CharacterGame character = getCharacter(user.getUserId());
         Wallet wallet = walletRepo.findByUser_UserId(user.getUserId()).orElseThrow();
-        CharacterGathering cg = gatheringRepo.findByCharacter_CharacterIdAndResourceType(
-                character.getCharacterId(), resourceType)
-                .orElseThrow(() -> new RuntimeException("Kỹ năng thu thập không tồn tại: " + resourceType));
-
-        int energyCost = BASE_GATHERING_ENERGY_COST; // Can be adjusted based on level/tool later
-        if (character.getEnergy() < energyCost) {
-            logger.warn("User {} attempted to gather {} with insufficient energy ({} < {})",
-                    user.getUsername(), resourceType, character.getEnergy(), energyCost);
+        ResourceRegistry.Resource resource = resourceRegistry.require(resourceType);
+        CharacterGatheringSkills skills = skillStore.load(character.getCharacterId());
+        CharacterGatheringSkills.Skill cg = skills.get(resourceType);
+        if (cg.getLevel() < resource.getRequiredLevel()) {
+            return ApiResponse.error("Yêu cầu cấp " + resource.getRequiredLevel() + " " + resource.getSkillName() + "!");
+        }
+
+        int energyCost = resource.getEnergyCost() * times;
+        LocalDateTime now = LocalDateTime.now();
+        if (character.getIdleGatherResource() != null) {
+            // The idle job spends the same energy; settle it first so regen is spent once
+            claimIdle(user, character, skills, now);
+        }
+        if (character.currentEnergy(now) < energyCost) {
+            logger.warn("User {} attempted to gather {} x{} with insufficient energy ({} < {})",
+                    user.getUsername(), resourceType, times, character.currentEnergy(now), energyCost);
             return ApiResponse.error("Không đủ năng lượng!");
         }
+        character.applyRegen(now);
         character.setEnergy(character.getEnergy() - energyCost);
 
-        String itemName = RESOURCE_TO_ITEM_NAME.get(resourceType);
-        Item item = itemRepo.findByNameIgnoreCase(itemName)
-                .orElseThrow(() -> new RuntimeException("Item not found: " + itemName));
+        String itemName = resource.getItemName();
 
-        // Calculate amount based on skill level (example: 1 + random up to level/2 + 1)
-        int amount = 1 + random.nextInt(Math.max(1, cg.getLevel() / 2 + 1));
-        addItemToInventory(user, item, amount);
+        long seed = gameRandom.newSeed();
+        int amount = rollGatherAmount(cg.getLevel(), times, gameRandom.forSeed(seed));
+        inventoryWriter.add(user.getUserId(), resource.getItemId(), amount);
 
         // Calculate EXP gain (example: base * level)
-        int expGained = BASE_GATHERING_EXP_GAIN * cg.getLevel();
+        int expGained = BASE_GATHERING_EXP_GAIN * cg.getLevel() * times;
 
         cg.setExp(cg.getExp() + expGained);
 
@@ -133,11 +136,12 @@ public class GatheringService {
 
         // Save changes
         characterGameRepo.save(character);
-        gatheringRepo.save(cg);
+        skillStore.save(skills);
 
         // Prepare response
         GatheringResponseDTO response = new GatheringResponseDTO();
         response.setMessage(String.format("Bạn nhận được +%d %s, +%d EXP!", amount, itemName, expGained));
+        response.setSeed(GameRandom.format(seed));
         response.setLevel(cg.getLevel());
         response.setExp(cg.getExp()); // Current EXP after gain
         response.setLevelUp(levelUp);
@@ -154,79 +158,236 @@ public class GatheringService {
 
         if (levelUp) {
             response.setMessage(response.getMessage() +
-                    String.format(" Kỹ năng %s đã lên cấp %d!", getSkillName(resourceType), cg.getLevel()));
+                    String.format(" Kỹ năng %s đã lên cấp %d!", resource.getSkillName(), cg.getLevel()));
         }
 
-        logger.info("User {} gathered {}: +{} {}, +{} EXP. Level up: {}",
-                user.getUsername(), resourceType, amount, itemName, expGained, levelUp);
+        gameRandom.record("gather", user.getUserId(), seed, resourceType + "=" + amount + " times=" + times);
+        logger.info("User {} gathered {} x{}: +{} {}, +{} EXP. Level up: {}",
+                user.getUsername(), resourceType, times, amount, itemName, expGained, levelUp);
 
         return ApiResponse.success(response.getMessage(), response);
     }
 
-    // *** FIX: Corrected variable name in this method ***
-    private void addItemToInventory(User user, Item item, int quantity) {
-        if (quantity <= 0) return;
+    /**
+     * Starts an idle gathering job, claiming any job that is already running.
+     */
+    @Transactional
+    public ApiResponse<IdleGatheringDTO> startIdleGathering(String resourceType) {
+        User user = getCurrentUser();
+        CharacterGame character = getCharacter(user.getUserId());
+        ResourceRegistry.Resource resource = resourceRegistry.require(resourceType);
+        CharacterGatheringSkills skills = skillStore.load(character.getCharacterId());
+        CharacterGatheringSkills.Skill cg = skills.get(resourceType);
+        if (cg.getLevel() < resource.getRequiredLevel()) {
+            return ApiResponse.error("Yêu cầu cấp " + resource.getRequiredLevel() + " " + resource.getSkillName() + "!");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (character.getIdleGatherResource() != null) {
+            claimIdle(user, character, skills, now);
+        }
+        if (!resourceType.equals(character.getIdleGatherResource())) {
+            character.setIdleGatherCarry(0.0); // A fraction of another resource's item
+        }
+        character.applyRegen(now); // The job's energy budget counts regen from here
+        character.setIdleGatherResource(resourceType);
+        character.setIdleGatherStartedAt(now);
+        characterGameRepo.save(character);
+
+        logger.info("User {} started idle gathering {}", user.getUsername(), resourceType);
+        IdleGatheringDTO dto = computeIdle(character, cg, now);
+        return ApiResponse.success("Bắt đầu thu thập tự động " + resource.getSkillName() + "!", dto);
+    }
+
+    /**
+     * Accrued yield of the running job, computed on read; nothing is written.
+     */
+    @Transactional(readOnly = true)
+    public ApiResponse<IdleGatheringDTO> getIdleGatheringStatus() {
+        User user = getCurrentUser();
+        CharacterGame character = getCharacter(user.getUserId());
+        if (character.getIdleGatherResource() == null) {
+            return ApiResponse.success("Không có thu thập tự động", new IdleGatheringDTO());
+        }
+        CharacterGatheringSkills.Skill cg = skillStore.load(character.getCharacterId()).get(character.getIdleGatherResource());
+        IdleGatheringDTO dto = computeIdle(character, cg, LocalDateTime.now());
+        return ApiResponse.success("Đang thu thập tự động", dto);
+    }
+
+    /**
+     * Grants everything accrued so far in one transaction. The job keeps running
+     * unless stop is set.
+     */
+    @Transactional
+    public ApiResponse<IdleGatheringDTO> claimIdleGathering(boolean stop) {
+        User user = getCurrentUser();
+        CharacterGame character = getCharacter(user.getUserId());
+        if (character.getIdleGatherResource() == null) {
+            return ApiResponse.error("Không có thu thập tự động nào đang chạy!");
+        }
+        IdleGatheringDTO dto = claimIdle(user, character, skillStore.load(character.getCharacterId()), LocalDateTime.now());
+        if (stop) {
+            character.setIdleGatherResource(null);
+            character.setIdleGatherStartedAt(null);
+            character.setIdleGatherCarry(0.0);
+            dto.setActive(false);
+        }
+        characterGameRepo.save(character);
+
+        String message = String.format("Bạn nhận được +%d %s, +%d EXP!", dto.getAmount(), dto.getItemName(), dto.getExpGained());
+        if (dto.isLevelUp()) {
+            message += String.format(" Kỹ năng %s đã lên cấp %d!", resourceRegistry.require(dto.getResourceType()).getSkillName(), dto.getLevel());
+        }
+        return ApiResponse.success(message, dto);
+    }
 
-        // Use 'userItemRepo' here (Line 169 in error)
-        Optional<UserItem> existingOpt = userItemRepo.findByUser_UserIdAndItem_ItemId(
-                user.getUserId(), item.getItemId());
+    /**
+     * Applies the accrued yield to inventory and skill, pays its energy and restarts the
+     * accrual period. Time from an unfinished action carries over; time past the cap, or
+     * waited for lack of energy, is dropped.
+     */
+    private IdleGatheringDTO claimIdle(User user, CharacterGame character, CharacterGatheringSkills skills, LocalDateTime now) {
+        String resourceType = character.getIdleGatherResource();
+        CharacterGatheringSkills.Skill cg = skills.get(resourceType);
+        IdleGatheringDTO dto = computeIdle(character, cg, now);
+
+        if (dto.getActions() > 0) {
+            Integer itemId = resourceRegistry.require(resourceType).getItemId();
+            inventoryWriter.add(user.getUserId(), itemId, (int) Math.min(Integer.MAX_VALUE, dto.getAmount()));
+            cg.setLevel(dto.getLevel());
+            cg.setExp(dto.getExp());
+            skillStore.save(skills);
+        }
+        long energyLeft = character.energyWithUncappedRegen(now) - dto.getEnergySpent();
+        character.applyRegen(now); // Settles HP; energy is set from the uncapped budget
+        character.setEnergy((int) Math.min(character.getMaxEnergy(), energyLeft));
+        character.setIdleGatherCarry(dto.getCarry());
+        character.setIdleGatherStartedAt(dto.isCapped() || dto.isEnergyLimited()
+                ? now
+                : character.getIdleGatherStartedAt().plusSeconds(dto.getActions() * IDLE_SECONDS_PER_ACTION));
+
+        logger.info("User {} claimed idle gathering {}: {} actions, -{} energy, +{} items, +{} EXP. Level up: {}",
+                user.getUsername(), resourceType, dto.getActions(), dto.getEnergySpent(), dto.getAmount(),
+                dto.getExpGained(), dto.isLevelUp());
+        return dto;
+    }
 
-        if (existingOpt.isPresent()) {
-            UserItem ui = existingOpt.get();
-            ui.setQuantity(ui.getQuantity() + quantity);
-            // Use 'userItemRepo' here (Line 175 in error)
-            userItemRepo.save(ui);
-            logger.debug("Added {} quantity to existing UserItem {} for user {}",
-                    quantity, item.getName(), user.getUsername());
+    /**
+     * Closed-form yield of an idle job. The number of actions follows from the elapsed
+     * time and from the energy: the job pays each action's energy out of the character's
+     * energy plus the regen since the job started, uncapped since it spends as it goes.
+     * So idle gathering never outpaces active gathering, and the two share one energy pool.
+     * Each stretch of actions at one skill level adds the expected roll of
+     * {@link #rollGatherAmount} and level * base EXP. Work is per level gained, not per action.
+     * Whole items are granted; the fraction left over is carried to the next claim.
+     */
+    private IdleGatheringDTO computeIdle(CharacterGame character, CharacterGatheringSkills.Skill cg, LocalDateTime now) {
+        String resourceType = character.getIdleGatherResource();
+        IdleGatheringDTO dto = new IdleGatheringDTO();
+        dto.setActive(true);
+        dto.setResourceType(resourceType);
+        ResourceRegistry.Resource resource = resourceRegistry.require(resourceType);
+        dto.setItemName(resource.getItemName());
+        dto.setResourceIcon(resource.getIcon());
+        dto.setStartedAt(character.getIdleGatherStartedAt());
+
+        long elapsed = Math.max(0, Duration.between(character.getIdleGatherStartedAt(), now).getSeconds());
+        dto.setCapped(elapsed >= IDLE_MAX_ACCRUAL_SECONDS);
+        elapsed = Math.min(elapsed, IDLE_MAX_ACCRUAL_SECONDS);
+        dto.setElapsedSeconds(elapsed);
+
+        long timedActions = elapsed / IDLE_SECONDS_PER_ACTION;
+        int energyCost = Math.max(1, resource.getEnergyCost());
+        long energy = character.energyWithUncappedRegen(now);
+        long actions = Math.min(timedActions, energy / energyCost);
+        dto.setActions(actions);
+        dto.setEnergySpent(actions * energyCost);
+        dto.setEnergyLimited(actions < timedActions);
+        if (dto.isCapped()) {
+            dto.setSecondsToNextAction(0);
+        } else if (dto.isEnergyLimited()) {
+            long ticks = ((actions + 1) * energyCost - energy + CharacterGame.REGEN_ENERGY_PER_TICK - 1)
+                    / CharacterGame.REGEN_ENERGY_PER_TICK;
+            long sinceRegen = character.getLastRegenAt() == null ? 0
+                    : Math.max(0, Duration.between(character.getLastRegenAt(), now).getSeconds());
+            long intoTick = sinceRegen % CharacterGame.REGEN_TICK_SECONDS;
+            dto.setSecondsToNextAction(ticks * CharacterGame.REGEN_TICK_SECONDS - intoTick);
         } else {
-            UserItem ui = new UserItem();
-            ui.setUser(user);
-            ui.setItem(item);
-            ui.setQuantity(quantity);
-            // Use 'userItemRepo' here (Line 183 in error)
-            userItemRepo.save(ui);
-            logger.debug("Created new UserItem {} (x{}) for user {}",
-                    item.getName(), quantity, user.getUsername());
+            dto.setSecondsToNextAction(IDLE_SECONDS_PER_ACTION - elapsed % IDLE_SECONDS_PER_ACTION);
+        }
+
+        int level = cg.getLevel();
+        long exp = cg.getExp();
+        long remaining = actions;
+        // Starts from the fraction the last claim left, so claiming often loses nothing
+        double amount = character.getIdleGatherCarry() != null ? character.getIdleGatherCarry() : 0;
+        long expGained = 0;
+        while (remaining > 0) {
+            long expPerAction = (long) BASE_GATHERING_EXP_GAIN * level;
+            long expNeeded = progressionTables.gatheringExpForNextLevel(level);
+            // Actions left at this level before the next level up
+            long actionsAtLevel = level >= progressionTables.getMaxLevel()
+                    ? remaining
+                    : Math.min(remaining, Math.max(1, (expNeeded - exp + expPerAction - 1) / expPerAction));
+            amount += actionsAtLevel * expectedGatherAmount(level);
+            expGained += actionsAtLevel * expPerAction;
+            exp += actionsAtLevel * expPerAction;
+            remaining -= actionsAtLevel;
+
+            ProgressionTables.LevelGain gain = progressionTables.resolveGathering(level, exp);
+            level = gain.getNewLevel();
+            exp = gain.getRemainingExp();
         }
+
+        dto.setAmount((long) Math.floor(amount));
+        dto.setCarry(amount - dto.getAmount());
+        dto.setExpGained(expGained);
+        dto.setLevel(level);
+        dto.setExp((int) exp);
+        dto.setLevelUp(level > cg.getLevel());
+        return dto;
     }
 
-    private boolean checkGatheringLevelUp(CharacterGathering cg) {
-        boolean leveledUp = false;
-        long expNeeded = calculateExpForGatheringNextLevel(cg.getLevel());
-        int currentExp = cg.getExp(); // Get current Integer EXP
+    /**
+     * Mean of {@link #rollGatherAmount} for a skill level.
+     */
+    private static double expectedGatherAmount(int skillLevel) {
+        int bound = Math.max(1, skillLevel / 2 + 1);
+        return 1 + (bound - 1) / 2.0;
+    }
 
-        // Loop in case of multiple level ups
-        while (currentExp >= expNeeded) {
-            currentExp -= (int)expNeeded; // Deduct EXP for current level
-            cg.setLevel(cg.getLevel() + 1);
-            leveledUp = true;
-            logger.info("Gathering skill {} leveled up to {} for character {}",
-                    cg.getResourceType(), cg.getLevel(), cg.getCharacter().getCharacterId());
+    /**
+     * Amount gathered in one action: 1 + random up to level/2 + 1.
+     * Pure function of the skill level and the stream (used by replay).
+     */
+    public static int rollGatherAmount(int skillLevel, RandomGenerator rng) {
+        return 1 + rng.nextInt(Math.max(1, skillLevel / 2 + 1));
+    }
 
-            // Calculate EXP needed for the *new* next level
-            expNeeded = calculateExpForGatheringNextLevel(cg.getLevel());
+    /**
+     * Total of several gather actions rolled in sequence from one stream.
+     */
+    public static int rollGatherAmount(int skillLevel, int times, RandomGenerator rng) {
+        int total = 0;
+        for (int i = 0; i < times; i++) {
+            total += rollGatherAmount(skillLevel, rng);
         }
+        return total;
+    }
 
-        cg.setExp(currentExp); // Set the remaining EXP
-        return leveledUp;
+    private boolean checkGatheringLevelUp(CharacterGatheringSkills.Skill cg) {
+        ProgressionTables.LevelGain gain = progressionTables.resolveGathering(cg.getLevel(), cg.getExp());
+        if (gain.getLevelsGained() == 0) {
+            return false;
+        }
+        cg.setLevel(gain.getNewLevel());
+        cg.setExp((int) gain.getRemainingExp()); // Set the remaining EXP
+        logger.info("Gathering skill {} leveled up to {} for character {}",
+                cg.getResourceType(), cg.getLevel(), cg.getCharacterId());
+        return true;
     }
 
     public long calculateExpForGatheringNextLevel(int currentLevel) {
-        if (currentLevel < 1) {
-            return (long) BASE_GATHERING_EXP_FOR_LEVEL;
-        }
-        // Formula: base * (rate ^ (level - 1))
-        double expDouble = BASE_GATHERING_EXP_FOR_LEVEL * Math.pow(GATHERING_EXP_GROWTH_RATE, currentLevel - 1);
-        return (long) Math.floor(expDouble); // Return the total EXP needed for the next level threshold
-    }
-
-    private String getSkillName(String resourceType) {
-        return switch (resourceType) {
-            case "stone" -> "Đào đá";
-            case "wood" -> "Chặt gỗ";
-            case "fish" -> "Câu cá";
-            case "ore" -> "Khai khoáng";
-            default -> "Thu thập";
-        };
+        return progressionTables.gatheringExpForNextLevel(currentLevel);
     }
 }
\ No newline at end of file
@@ -0,0 +1,117 @@
+package com.poly.service;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Service;
+
+import com.poly.model.CharacterGathering;
+import com.poly.model.CharacterGatheringSkills;
+import com.poly.repository.CharacterGatheringRepository;
+import com.poly.repository.CharacterGatheringSkillsRepository;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Loads and stores the packed gathering skills of a character.
+ * The schema and data migration from the legacy character_gathering rows is
+ * db/character_gathering_skills.sql, run on startup unless
+ * {@code game.gathering.migrate-on-startup} is false. Until it has run, a character
+ * with only legacy rows is folded when first read and stored on the next save.
+ */
+@Service
+public class GatheringSkillStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(GatheringSkillStore.class);
+
+    private static final ClassPathResource MIGRATION = new ClassPathResource("db/character_gathering_skills.sql");
+
+    @Value("${game.gathering.migrate-on-startup:true}")
+    private boolean migrateOnStartup;
+
+    @Autowired private CharacterGatheringSkillsRepository skillsRepo;
+    @Autowired private CharacterGatheringRepository legacyRepo;
+    @Autowired private EntityManager entityManager;
+    @Autowired private DataSource dataSource;
+    @Autowired private ProgressionTables progressionTables;
+
+    public CharacterGatheringSkills load(Integer characterId) {
+        return skillsRepo.findById(characterId)
+                .orElseGet(() -> fold(characterId, legacyRepo.findByCharacter_CharacterId(characterId)));
+    }
+
+    /**
+     * Stores the skills in the caller's transaction. A loaded row is written by dirty
+     * checking. A character's first row is inserted only if still absent: when two
+     * first gathers race, the one that finds the row already there re-reads it and
+     * adds the EXP it gained since loading on top of the winner's skills.
+     */
+    public void save(CharacterGatheringSkills skills) {
+        if (entityManager.contains(skills)) {
+            return;
+        }
+        if (skillsRepo.insertIfAbsent(skills.getCharacterId(), skills.getPacked()) == 1) {
+            skills.markSaved();
+            return;
+        }
+        logger.debug("Gathering skills of character {} were inserted concurrently, merging", skills.getCharacterId());
+        CharacterGatheringSkills stored = skillsRepo.findById(skills.getCharacterId())
+                .orElseThrow(() -> new IllegalStateException(
+                        "Gathering skills of character " + skills.getCharacterId() + " not found"));
+        for (String type : skills.getResourceTypes()) {
+            long gained = totalExp(skills.get(type).getLevel(), skills.get(type).getExp())
+                    - totalExp(skills.getSaved(type)[0], skills.getSaved(type)[1]);
+            if (gained <= 0) continue;
+            CharacterGatheringSkills.Skill target = stored.get(type);
+            ProgressionTables.LevelGain gain =
+                    progressionTables.resolveGathering(target.getLevel(), target.getExp() + gained);
+            stored.set(type, gain.getNewLevel(), (int) gain.getRemainingExp());
+        }
+        // A later save in this transaction only merges what was gained after this one
+        skills.markSaved();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (migrateOnStartup) {
+            migrateAll();
+        }
+    }
+
+    /**
+     * Runs the migration script: creates the packed table if missing and folds the
+     * legacy rows of every character that has no packed row yet. The legacy rows are
+     * left in place; the table can be dropped once this has run.
+     * @return the number of characters migrated
+     */
+    public int migrateAll() {
+        long before = skillsRepo.count();
+        DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(MIGRATION), dataSource);
+        int migrated = (int) (skillsRepo.count() - before);
+        logger.info("Folded legacy gathering skills of {} characters", migrated);
+        return migrated;
+    }
+
+    private long totalExp(int level, int expIntoLevel) {
+        return progressionTables.gatheringCumulativeExp(level) + expIntoLevel;
+    }
+
+    private static CharacterGatheringSkills fold(Integer characterId, Iterable<CharacterGathering> legacyRows) {
+        CharacterGatheringSkills skills = new CharacterGatheringSkills(characterId);
+        for (CharacterGathering cg : legacyRows) {
+            skills.set(cg.getResourceType(),
+                    cg.getLevel() != null ? cg.getLevel() : 1,
+                    cg.getExp() != null ? cg.getExp() : 0);
+        }
+        skills.markSaved();
+        return skills;
+    }
+}
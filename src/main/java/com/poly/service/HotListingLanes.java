@@ -0,0 +1,301 @@
+package com.poly.service;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Arbitrates single-listing purchases, whole or in part, during flash sales. Purchase
+ * attempts are counted per listing; once a listing gets {@code game.marketplace.hot-listing.threshold}
+ * attempts within a second it turns hot, and its purchases are queued and run one at
+ * a time by a single consumer instead of all blocking on the same row lock. As soon
+ * as the listing is sold or cancelled, the queued and later attempts are rejected
+ * without touching the database.
+ * <p>
+ * Consumers run on the {@code hotListingExecutor} pool. A consumer runs at most
+ * {@code game.marketplace.hot-listing.batch-size} purchases before it hands its thread
+ * back and requeues itself, so more hot lanes than threads still all make progress.
+ * <p>
+ * Cold listings run on the caller's thread as before. A hot lane goes back to cold,
+ * and a closed one is forgotten, once it has been idle for the cool-down.
+ */
+@Service
+public class HotListingLanes {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotListingLanes.class);
+
+    private static final long WINDOW_MILLIS = 1_000;
+
+    @Value("${game.marketplace.hot-listing.threshold:20}")
+    private int threshold;
+
+    @Value("${game.marketplace.hot-listing.queue-size:500}")
+    private int queueSize;
+
+    @Value("${game.marketplace.hot-listing.wait-millis:5000}")
+    private long waitMillis;
+
+    @Value("${game.marketplace.hot-listing.cool-down-millis:30000}")
+    private long coolDownMillis;
+
+    @Value("${game.marketplace.hot-listing.batch-size:16}")
+    private int batchSize;
+
+    @Autowired
+    @Qualifier("hotListingExecutor")
+    private TaskExecutor consumers;
+
+    private final Map<Integer, Lane> lanes = new ConcurrentHashMap<>();
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejectedWithoutDb = new LongAdder();
+    private final LongAdder rejectedQueueFull = new LongAdder();
+
+    /**
+     * Runs a purchase of one listing, directly or through the listing's lane.
+     * @param purchase the purchase; it must publish the listing's sold event before it
+     *        returns, so queued purchases behind it are turned away. A NOT_FOUND or
+     *        ALREADY_CLOSED outcome closes the lane as well.
+     */
+    public <T> MarketOutcome<T> buy(Integer listingId, Supplier<MarketOutcome<T>> purchase) {
+        Lane lane = lanes.computeIfAbsent(listingId, id -> new Lane(listingId));
+        Task<T> task;
+        synchronized (lane) {
+            lane.lastSeen = System.currentTimeMillis();
+            if (lane.closed) {
+                rejectedWithoutDb.increment();
+                return MarketOutcome.fail(MarketOutcome.Code.ALREADY_CLOSED);
+            }
+            if (!lane.hot && lane.countAttempt() < threshold) {
+                task = null;
+            } else {
+                if (!lane.hot) {
+                    lane.hot = true;
+                    logger.info("Listing {} is hot, serializing its purchases", listingId);
+                }
+                if (lane.queue.size() >= queueSize) {
+                    rejectedQueueFull.increment();
+                    return MarketOutcome.fail(MarketOutcome.Code.CONFLICT);
+                }
+                task = new Task<>(purchase);
+                lane.queue.add(task);
+                queued.increment();
+                if (!lane.draining) {
+                    lane.draining = true;
+                    schedule(lane);
+                }
+            }
+        }
+
+        if (task == null) {
+            MarketOutcome<T> outcome = purchase.get();
+            closeIfDone(lane, outcome);
+            return outcome;
+        }
+        try {
+            try {
+                return task.result.get(waitMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                synchronized (lane) {
+                    if (lane.queue.remove(task)) {
+                        // Never started, so the buyer can safely be told to retry
+                        logger.warn("Purchase of hot listing {} still queued after {} ms", listingId, waitMillis);
+                        return MarketOutcome.fail(MarketOutcome.Code.CONFLICT);
+                    }
+                }
+                return task.result.get(); // Already running; its outcome is the answer
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return MarketOutcome.fail(MarketOutcome.Code.CONFLICT);
+        }
+    }
+
+    /**
+     * True if the listing is known to be gone, so a purchase can be refused right away.
+     */
+    public boolean isClosed(Integer listingId) {
+        Lane lane = lanes.get(listingId);
+        if (lane == null) {
+            return false;
+        }
+        synchronized (lane) {
+            return lane.closed;
+        }
+    }
+
+    // Sales through this class, buy orders, carts or cancellations all close the lane
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onListingEvent(MarketListingEvent event) {
+        if (event.getOpened() == null) {
+            Lane lane = lanes.get(event.getListingId());
+            if (lane != null) {
+                lane.close();
+            }
+        }
+    }
+
+    private void closeIfDone(Lane lane, MarketOutcome<?> outcome) {
+        switch (outcome.getCode()) {
+            case NOT_FOUND, ALREADY_CLOSED -> lane.close();
+            default -> { }
+        }
+    }
+
+    // Called with the draining flag set; if the pool is saturated the queued purchases are turned away
+    private void schedule(Lane lane) {
+        try {
+            consumers.execute(lane::drain);
+        } catch (TaskRejectedException e) {
+            logger.warn("No consumer for hot listing {}: {}", lane.listingId, e.getMessage());
+            synchronized (lane) {
+                lane.draining = false;
+            }
+            rejectedQueueFull.add(lane.rejectAll(MarketOutcome.Code.CONFLICT));
+        }
+    }
+
+    @Scheduled(fixedDelay = 10_000)
+    public void sweep() {
+        long idleSince = System.currentTimeMillis() - coolDownMillis;
+        lanes.values().removeIf(lane -> {
+            synchronized (lane) {
+                return lane.lastSeen < idleSince && lane.queue.isEmpty() && !lane.draining;
+            }
+        });
+    }
+
+    public Map<String, Object> metrics() {
+        int hot = 0;
+        int closed = 0;
+        int waiting = 0;
+        for (Lane lane : lanes.values()) {
+            synchronized (lane) {
+                hot += lane.hot ? 1 : 0;
+                closed += lane.closed ? 1 : 0;
+                waiting += lane.queue.size();
+            }
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("tracked", lanes.size());
+        metrics.put("hot", hot);
+        metrics.put("closed", closed);
+        metrics.put("waiting", waiting);
+        metrics.put("queued", queued.sum());
+        metrics.put("rejectedWithoutDb", rejectedWithoutDb.sum());
+        metrics.put("rejectedQueueFull", rejectedQueueFull.sum());
+        metrics.put("threshold", threshold);
+        return metrics;
+    }
+
+    private static final class Task<T> {
+        final Supplier<MarketOutcome<T>> purchase;
+        final CompletableFuture<MarketOutcome<T>> result = new CompletableFuture<>();
+
+        Task(Supplier<MarketOutcome<T>> purchase) {
+            this.purchase = purchase;
+        }
+
+        MarketOutcome<T> run() {
+            try {
+                MarketOutcome<T> outcome = purchase.get();
+                result.complete(outcome);
+                return outcome;
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        void reject(MarketOutcome.Code code) {
+            result.complete(MarketOutcome.fail(code));
+        }
+    }
+
+    // All fields guarded by the lane's monitor
+    private final class Lane {
+        final Integer listingId;
+        final ArrayDeque<Task<?>> queue = new ArrayDeque<>();
+        long windowStart;
+        int windowCount;
+        long lastSeen;
+        boolean hot;
+        boolean closed;
+        boolean draining;
+
+        Lane(Integer listingId) {
+            this.listingId = listingId;
+        }
+
+        // Attempts in the current one-second window, including this one
+        int countAttempt() {
+            if (lastSeen - windowStart >= WINDOW_MILLIS) {
+                windowStart = lastSeen;
+                windowCount = 0;
+            }
+            return ++windowCount;
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+            }
+            rejectedWithoutDb.add(rejectAll(MarketOutcome.Code.ALREADY_CLOSED));
+        }
+
+        int rejectAll(MarketOutcome.Code code) {
+            ArrayDeque<Task<?>> rejected;
+            synchronized (this) {
+                rejected = new ArrayDeque<>(queue);
+                queue.clear();
+            }
+            rejected.forEach(task -> task.reject(code));
+            return rejected.size();
+        }
+
+        // Single consumer: the draining flag keeps a second drain from starting. After
+        // batchSize purchases the consumer requeues itself behind the other lanes.
+        void drain() {
+            for (int done = 0; ; done++) {
+                Task<?> task;
+                synchronized (this) {
+                    if (done == batchSize && !queue.isEmpty()) {
+                        break;
+                    }
+                    task = queue.poll();
+                    if (task == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    closeIfDone(this, task.run());
+                } catch (RuntimeException e) {
+                    // Handed to the waiting caller, which reports it
+                    logger.debug("Queued purchase of listing {} failed: {}", listingId, e.getMessage());
+                }
+            }
+            schedule(this);
+        }
+    }
+}
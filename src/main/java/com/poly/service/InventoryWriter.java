@@ -0,0 +1,116 @@
+package com.poly.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.poly.repository.UserItemRepository;
+
+/**
+ * Single entry point for changing item quantities in user_item. Every change is
+ * one atomic statement (MERGE to add, conditional UPDATE to remove), so there is
+ * no read-then-save race on UQ_UserItem. Stacks that reach zero are deleted,
+ * like before.
+ * <p>
+ * Statements bypass the persistence context: UserItem entities already loaded in
+ * the same transaction keep their old quantity and must not be saved afterwards.
+ */
+@Service
+public class InventoryWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryWriter.class);
+
+    // Deterministic lock order across batches, so two batches can't deadlock on user_item rows
+    private static final Comparator<InventoryDelta> LOCK_ORDER =
+            Comparator.comparing(InventoryDelta::getUserId).thenComparing(InventoryDelta::getItemId);
+
+    @Autowired private UserItemRepository userItemRepo;
+
+    @Transactional
+    public void add(Integer userId, Integer itemId, int quantity) {
+        if (quantity <= 0) return;
+        userItemRepo.addQuantity(userId, itemId, quantity);
+        logger.debug("Added {} of item {} for user {}", quantity, itemId, userId);
+    }
+
+    /**
+     * Removes the full amount or nothing.
+     * @return false if the user has fewer than quantity
+     */
+    @Transactional
+    public boolean remove(Integer userId, Integer itemId, int quantity) {
+        if (quantity <= 0) return true;
+        if (userItemRepo.removeQuantity(userId, itemId, quantity) == 0) {
+            return false;
+        }
+        userItemRepo.deleteIfEmpty(userId, itemId);
+        logger.debug("Removed {} of item {} for user {}", quantity, itemId, userId);
+        return true;
+    }
+
+    /**
+     * Removes as much as is there, up to quantity (for consumption that already happened,
+     * e.g. potions used in a battle while the stack was sold elsewhere).
+     */
+    @Transactional
+    public void removeUpTo(Integer userId, Integer itemId, int quantity) {
+        if (quantity <= 0) return;
+        if (userItemRepo.removeQuantityUpTo(userId, itemId, quantity) > 0) {
+            userItemRepo.deleteIfEmpty(userId, itemId);
+        }
+    }
+
+    /**
+     * Applies a batch of changes in one transaction. Deltas for the same stack are
+     * summed first and stacks are written in (userId, itemId) order.
+     * Removals are strict: if any stack is short the whole batch rolls back.
+     */
+    @Transactional
+    public void applyAll(Collection<InventoryDelta> deltas) {
+        for (InventoryDelta delta : merge(deltas)) {
+            if (delta.getDelta() > 0) {
+                add(delta.getUserId(), delta.getItemId(), delta.getDelta());
+            } else if (delta.getDelta() < 0 && !remove(delta.getUserId(), delta.getItemId(), -delta.getDelta())) {
+                throw new IllegalStateException("Không đủ vật phẩm (item " + delta.getItemId() + ")");
+            }
+        }
+    }
+
+    private static List<InventoryDelta> merge(Collection<InventoryDelta> deltas) {
+        Map<InventoryDelta, Integer> sums = new TreeMap<>(LOCK_ORDER);
+        for (InventoryDelta delta : deltas) {
+            sums.merge(delta, delta.getDelta(), Integer::sum);
+        }
+        List<InventoryDelta> merged = new ArrayList<>(sums.size());
+        sums.forEach((key, sum) -> merged.add(new InventoryDelta(key.getUserId(), key.getItemId(), sum)));
+        return merged;
+    }
+
+    /**
+     * Quantity change of one user's stack of one item; negative removes.
+     */
+    public static final class InventoryDelta {
+        private final Integer userId;
+        private final Integer itemId;
+        private final int delta;
+
+        public InventoryDelta(Integer userId, Integer itemId, int delta) {
+            this.userId = userId;
+            this.itemId = itemId;
+            this.delta = delta;
+        }
+
+        public Integer getUserId() { return userId; }
+        public Integer getItemId() { return itemId; }
+        public int getDelta() { return delta; }
+    }
+}
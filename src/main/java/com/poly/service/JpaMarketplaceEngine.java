@@ -0,0 +1,223 @@
+package com.poly.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.poly.model.Item;
+import com.poly.model.MarketListing;
+import com.poly.model.User;
+import com.poly.model.UserItem;
+import com.poly.model.Wallet;
+import com.poly.repository.UserItemRepository;
+import com.poly.repository.WalletRepository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
+
+/**
+ * {@link MarketplaceEngine} in plain JPA, portable to any database. Each operation
+ * reads what it needs, checks the rules in Java and writes through managed entities;
+ * {@code @Version} on wallets, listings and inventory stacks makes a concurrent change
+ * fail the flush instead of being overwritten. The operation is then retried in a
+ * fresh transaction, up to {@code game.marketplace.max-attempts} times, with a short
+ * jittered backoff, and reported as {@link MarketOutcome.Code#CONFLICT} after that.
+ * <p>
+ * Inside a caller's transaction an operation runs once and a conflict propagates,
+ * since only the caller can restart its transaction.
+ */
+@Service
+@ConditionalOnProperty(name = "game.marketplace.engine", havingValue = "jpa")
+public class JpaMarketplaceEngine implements MarketplaceEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(JpaMarketplaceEngine.class);
+
+    // Same rate as sp_sell_to_system, shown on the sell page
+    private static final BigDecimal SYSTEM_BUYBACK_RATE = new BigDecimal("0.70");
+    private static final long BACKOFF_MILLIS = 5;
+
+    @Value("${game.marketplace.max-attempts:4}")
+    private int maxAttempts;
+
+    @Autowired private EntityManager entityManager;
+    @Autowired private WalletRepository walletRepository;
+    @Autowired private UserItemRepository userItemRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    @Override
+    public MarketOutcome<BigDecimal> sellToSystem(Integer userId, Integer itemId, int quantity) {
+        return withRetries("sellToSystem", () -> {
+            Item item = entityManager.find(Item.class, itemId);
+            if (item == null) {
+                return MarketOutcome.fail(MarketOutcome.Code.ITEM_NOT_FOUND);
+            }
+            if (!take(userId, itemId, quantity)) {
+                return MarketOutcome.fail(MarketOutcome.Code.INSUFFICIENT_ITEMS);
+            }
+            BigDecimal amount = item.getBasePrice().multiply(SYSTEM_BUYBACK_RATE)
+                    .multiply(BigDecimal.valueOf(quantity)).setScale(2, RoundingMode.HALF_UP);
+            Wallet wallet = wallet(userId);
+            wallet.setBalance(wallet.getBalance().add(amount));
+            return MarketOutcome.ok(amount);
+        });
+    }
+
+    @Override
+    public MarketOutcome<Integer> createListing(Integer sellerId, Integer itemId, int quantity, BigDecimal price,
+                                                String priceType) {
+        return withRetries("createListing", () -> {
+            Item item = entityManager.find(Item.class, itemId);
+            if (item == null) {
+                return MarketOutcome.fail(MarketOutcome.Code.ITEM_NOT_FOUND);
+            }
+            if (Boolean.FALSE.equals(item.getIsTradeable())) {
+                return MarketOutcome.fail(MarketOutcome.Code.NOT_TRADEABLE);
+            }
+            if (!take(sellerId, itemId, quantity)) {
+                return MarketOutcome.fail(MarketOutcome.Code.INSUFFICIENT_ITEMS);
+            }
+            boolean admin = "Admin".equalsIgnoreCase(priceType);
+            MarketListing listing = new MarketListing();
+            listing.setSeller(entityManager.getReference(User.class, sellerId));
+            listing.setItem(item);
+            listing.setQuantity(quantity);
+            listing.setPrice(price);
+            listing.setPriceType(admin ? "Admin" : "Player");
+            listing.setListingType(admin ? "Fixed" : "Player");
+            entityManager.persist(listing);
+            entityManager.flush(); // Assigns the id
+            return MarketOutcome.ok(listing.getListingId());
+        });
+    }
+
+    @Override
+    public MarketOutcome<Void> cancelListing(Integer listingId, Integer userId) {
+        return withRetries("cancelListing", () -> {
+            MarketListing listing = entityManager.find(MarketListing.class, listingId);
+            if (listing == null) {
+                return MarketOutcome.fail(MarketOutcome.Code.NOT_FOUND);
+            }
+            if (!"Active".equals(listing.getStatus())) {
+                return MarketOutcome.fail(MarketOutcome.Code.ALREADY_CLOSED);
+            }
+            if (!listing.getSeller().getUserId().equals(userId)) {
+                return MarketOutcome.fail(MarketOutcome.Code.NOT_OWNER);
+            }
+            listing.setStatus("Cancelled");
+            give(userId, listing.getItem(), listing.getQuantity());
+            return MarketOutcome.ok(null);
+        });
+    }
+
+    @Override
+    public MarketOutcome<Void> buy(Integer buyerId, Integer listingId) {
+        return withRetries("buy", () -> {
+            MarketListing listing = entityManager.find(MarketListing.class, listingId);
+            if (listing == null) {
+                return MarketOutcome.fail(MarketOutcome.Code.NOT_FOUND);
+            }
+            if (!"Active".equals(listing.getStatus())) {
+                return MarketOutcome.fail(MarketOutcome.Code.ALREADY_CLOSED);
+            }
+            Integer sellerId = listing.getSeller().getUserId();
+            if (sellerId.equals(buyerId)) {
+                return MarketOutcome.fail(MarketOutcome.Code.OWN_LISTING);
+            }
+            Wallet buyerWallet = wallet(buyerId);
+            if (buyerWallet.getBalance().compareTo(listing.getPrice()) < 0) {
+                return MarketOutcome.fail(MarketOutcome.Code.INSUFFICIENT_FUNDS);
+            }
+            Wallet sellerWallet = wallet(sellerId);
+            buyerWallet.setBalance(buyerWallet.getBalance().subtract(listing.getPrice()));
+            sellerWallet.setBalance(sellerWallet.getBalance().add(listing.getPrice()));
+            listing.setStatus("Sold");
+            listing.setSoldAt(LocalDateTime.now());
+            give(buyerId, listing.getItem(), listing.getQuantity());
+            return MarketOutcome.ok(null);
+        });
+    }
+
+    private <T> MarketOutcome<T> withRetries(String operation, Supplier<MarketOutcome<T>> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            MarketOutcome<T> outcome = work.get();
+            entityManager.flush(); // Surfaces a version conflict here rather than at the caller's commit
+            return outcome;
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    MarketOutcome<T> outcome = work.get();
+                    if (!outcome.isOk()) {
+                        status.setRollbackOnly();
+                    }
+                    return outcome;
+                });
+            } catch (OptimisticLockingFailureException | OptimisticLockException | DataIntegrityViolationException e) {
+                // A concurrent writer changed a row we read, or created the same inventory stack
+                if (attempt >= maxAttempts) {
+                    logger.warn("Marketplace {} gave up after {} attempts: {}", operation, attempt, e.getMessage());
+                    return MarketOutcome.fail(MarketOutcome.Code.CONFLICT);
+                }
+                logger.debug("Marketplace {} conflict on attempt {}, retrying", operation, attempt);
+                backoff(attempt);
+            }
+        }
+    }
+
+    private static void backoff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(BACKOFF_MILLIS * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying a marketplace operation", e);
+        }
+    }
+
+    private Wallet wallet(Integer userId) {
+        return walletRepository.findByUser_UserId(userId).orElseGet(() -> {
+            Wallet wallet = new Wallet();
+            wallet.setUser(entityManager.getReference(User.class, userId));
+            entityManager.persist(wallet);
+            return wallet;
+        });
+    }
+
+    // Removes the whole quantity from the stack, or nothing; emptied unequipped stacks are deleted
+    private boolean take(Integer userId, Integer itemId, int quantity) {
+        UserItem stack = userItemRepository.findByUser_UserIdAndItem_ItemId(userId, itemId).orElse(null);
+        if (stack == null || stack.getQuantity() < quantity) {
+            return false;
+        }
+        stack.setQuantity(stack.getQuantity() - quantity);
+        if (stack.getQuantity() == 0 && !Boolean.TRUE.equals(stack.getIsEquipped())) {
+            entityManager.remove(stack);
+        }
+        return true;
+    }
+
+    private void give(Integer userId, Item item, int quantity) {
+        UserItem stack = userItemRepository.findByUser_UserIdAndItem_ItemId(userId, item.getItemId()).orElse(null);
+        if (stack != null) {
+            stack.setQuantity(stack.getQuantity() + quantity);
+            return;
+        }
+        stack = new UserItem();
+        stack.setUser(entityManager.getReference(User.class, userId));
+        stack.setItem(item);
+        stack.setQuantity(quantity);
+        entityManager.persist(stack);
+    }
+}
@@ -0,0 +1,68 @@
+package com.poly.service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Continuation token for keyset pagination of market listings: the sort key plus
+ * the (created_at, listing_id) or (unit price, listing_id) of the last listing returned.
+ * Clients treat the encoded form as opaque.
+ */
+public final class ListingCursor {
+
+    public enum Key {
+        NEWEST, // created_at DESC, listing_id DESC
+        PRICE   // price per unit ASC, listing_id ASC
+    }
+
+    private final Key key;
+    private final LocalDateTime createdAt;
+    private final BigDecimal price;
+    private final Integer listingId;
+
+    private ListingCursor(Key key, LocalDateTime createdAt, BigDecimal price, Integer listingId) {
+        this.key = key;
+        this.createdAt = createdAt;
+        this.price = price;
+        this.listingId = listingId;
+    }
+
+    public static ListingCursor after(Key key, LocalDateTime createdAt, BigDecimal price, Integer listingId) {
+        return new ListingCursor(key, createdAt, price, listingId);
+    }
+
+    public String encode() {
+        String value = key == Key.NEWEST ? createdAt.toString() : price.toPlainString();
+        String raw = key.name() + "|" + value + "|" + listingId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the cursor, or null if the token is empty or malformed (callers start from the first page)
+     */
+    public static ListingCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 3) {
+                return null;
+            }
+            Key key = Key.valueOf(parts[0]);
+            Integer listingId = Integer.valueOf(parts[2]);
+            return key == Key.NEWEST
+                    ? new ListingCursor(key, LocalDateTime.parse(parts[1]), null, listingId)
+                    : new ListingCursor(key, null, new BigDecimal(parts[1]), listingId);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    public Key getKey() { return key; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public BigDecimal getPrice() { return price; }
+    public Integer getListingId() { return listingId; }
+}
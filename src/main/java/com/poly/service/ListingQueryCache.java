@@ -0,0 +1,182 @@
+package com.poly.service;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.poly.dto.CursorPageDTO;
+import com.poly.dto.MarketListingDTO;
+
+/**
+ * Bounded LRU cache of marketplace browse pages, keyed by the normalized filters,
+ * sort, cursor and page size. Concurrent requests for a cold key share one load.
+ * <p>
+ * Entries are dropped precisely: {@link ListingSearchIndex} reports every listing it
+ * adds or removes, and only pages whose filters match that listing are evicted.
+ * A load still in flight is evicted the same way, so one that overlaps a matching
+ * change is returned but not kept, while loads of unrelated pages are kept.
+ */
+@Component
+public class ListingQueryCache {
+
+    private final int maxEntries;
+    // Holds loads in flight too; an invalidated load no longer finds its own future here
+    private final Map<Key, CompletableFuture<CursorPageDTO<MarketListingDTO>>> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ListingQueryCache(@Value("${game.marketplace.query-cache-size:500}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<CursorPageDTO<MarketListingDTO>>> eldest) {
+                if (size() > ListingQueryCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached page for the key, loading it once if absent.
+     */
+    public CursorPageDTO<MarketListingDTO> get(Key key, Supplier<CursorPageDTO<MarketListingDTO>> loader) {
+        CompletableFuture<CursorPageDTO<MarketListingDTO>> future;
+        boolean owner = false;
+        synchronized (entries) {
+            future = entries.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                entries.put(key, future);
+                owner = true;
+                misses.increment();
+            } else if (future.isDone()) {
+                hits.increment();
+            } else {
+                coalesced.increment();
+            }
+        }
+
+        if (!owner) {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        try {
+            CursorPageDTO<MarketListingDTO> page = loader.get();
+            future.complete(page);
+            return page;
+        } catch (RuntimeException e) {
+            remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Drops every page whose filters match a listing that was added or removed.
+     */
+    public void invalidateMatching(String name, String category, BigDecimal price) {
+        synchronized (entries) {
+            Iterator<Key> it = entries.keySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().matches(name, category, price)) {
+                    it.remove();
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            invalidations.add(entries.size());
+            entries.clear();
+        }
+    }
+
+    private void remove(Key key, CompletableFuture<CursorPageDTO<MarketListingDTO>> future) {
+        synchronized (entries) {
+            entries.remove(key, future);
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        long h = hits.sum();
+        long total = h + misses.sum() + coalesced.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (entries) {
+            metrics.put("size", entries.size());
+        }
+        metrics.put("maxSize", maxEntries);
+        metrics.put("hits", h);
+        metrics.put("misses", misses.sum());
+        metrics.put("coalesced", coalesced.sum());
+        metrics.put("evictions", evictions.sum());
+        metrics.put("invalidations", invalidations.sum());
+        metrics.put("hitRatio", total == 0 ? 0.0 : (double) h / total);
+        return metrics;
+    }
+
+    /**
+     * Normalized browse query. Term and category are lower-cased like the index,
+     * and a missing max price means no limit.
+     */
+    public static final class Key {
+        private final String term;
+        private final String category;
+        private final BigDecimal maxPrice;
+        private final ListingCursor.Key sort;
+        private final String cursor;
+        private final int size;
+
+        public Key(String term, String category, BigDecimal maxPrice, ListingCursor.Key sort, String cursor, int size) {
+            this.term = term == null ? "" : term.trim().toLowerCase(Locale.ROOT);
+            this.category = category == null ? "" : category.trim().toLowerCase(Locale.ROOT);
+            this.maxPrice = maxPrice == null ? null : maxPrice.stripTrailingZeros();
+            this.sort = sort;
+            this.cursor = cursor == null ? "" : cursor;
+            this.size = size;
+        }
+
+        boolean matches(String name, String itemCategory, BigDecimal price) {
+            String n = name == null ? "" : name.toLowerCase(Locale.ROOT);
+            String c = itemCategory == null ? "" : itemCategory.toLowerCase(Locale.ROOT);
+            return (category.isEmpty() || category.equals(c))
+                    && (term.isEmpty() || n.contains(term) || c.contains(term))
+                    && (maxPrice == null || price == null || price.compareTo(maxPrice) <= 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key other)) return false;
+            return size == other.size && term.equals(other.term) && category.equals(other.category)
+                    && Objects.equals(maxPrice, other.maxPrice) && sort == other.sort && cursor.equals(other.cursor);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(term, category, maxPrice, sort, cursor, size);
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.poly.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.poly.model.MarketListing;
+import com.poly.repository.MarketListingRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * In-memory search index over active market listings, answering the browse
+ * filters (name/category substring, exact category, max price) without touching
+ * the database. Each listing occupies a slot; postings are bitmaps over slots:
+ * one per trigram of the lower-cased item name and category, one per category.
+ * Two sorted sets give the created-at and unit-price orders for paging.
+ * <p>
+ * A page walks its order and tests each listing against the filters, stopping as
+ * soon as the page is full, so its cost follows the page size rather than the
+ * index size. The term is checked as a substring, so results match the
+ * LIKE '%term%' query exactly; a trigram with no postings ends the search early.
+ * Postings also narrow the counting of totals.
+ * Kept current by {@link MarketListingEvent}s, like the {@link OrderBook}; every
+ * listing added or removed is passed on to the {@link ListingQueryCache}.
+ */
+@Service
+public class ListingSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListingSearchIndex.class);
+
+    private static final Comparator<Doc> BY_CREATED = Comparator
+            .comparing((Doc d) -> d.createdAt).thenComparing(d -> d.listingId);
+    private static final Comparator<Doc> BY_PRICE = Comparator
+            .comparing((Doc d) -> d.unitPrice).thenComparing(d -> d.listingId);
+
+    // Unit prices are rounded to this scale; ties are broken by listing id
+    private static final int UNIT_PRICE_SCALE = 6;
+
+    /** {@link KeysetPage#getTotal()} of a page whose total was not counted. */
+    public static final int UNCOUNTED = -1;
+
+    @Autowired private MarketListingRepository listingRepo;
+    @Autowired private ListingQueryCache queryCache;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Doc> slots = new ArrayList<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<Integer, Doc> byListing = new HashMap<>();
+    private final Map<String, BitSet> trigrams = new HashMap<>();
+    private final Map<String, BitSet> categories = new HashMap<>();
+    private final TreeSet<Doc> byCreated = new TreeSet<>(BY_CREATED);
+    private final TreeSet<Doc> byPrice = new TreeSet<>(BY_PRICE);
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * Re-indexes every active listing. For startup and recovery after out-of-band changes.
+     * @return the number of listings indexed
+     */
+    @Transactional(readOnly = true)
+    public int rebuild() {
+        List<MarketListing> listings = listingRepo.findByStatus("Active");
+        lock.writeLock().lock();
+        try {
+            slots.clear();
+            freeSlots.clear();
+            byListing.clear();
+            trigrams.clear();
+            categories.clear();
+            byCreated.clear();
+            byPrice.clear();
+            queryCache.invalidateAll(); // Keeps the per-listing invalidations below cheap
+            for (MarketListing listing : listings) {
+                add(listing.getListingId(), listing.getItem().getName(), listing.getItem().getItemCategory(),
+                        listing.getPrice(), listing.getQuantity(), listing.getCreatedAt());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        queryCache.invalidateAll();
+        logger.info("Listing search index built: {} listings, {} trigrams", listings.size(), trigrams.size());
+        return listings.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onListingEvent(MarketListingEvent event) {
+        lock.writeLock().lock();
+        try {
+            remove(event.getListingId());
+            if (event.getOpened() != null) {
+                add(event.getListingId(), event.getItemName(), event.getItemCategory(),
+                        event.getOpened().getPrice(), event.getOpened().getQuantity(),
+                        event.getOpened().getCreatedAt());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Listing ids of one page of active listings matching the filters.
+     * @param searchTerm substring of the item name or category; null/empty for none
+     * @param category exact category (case-insensitive); null/empty for all
+     * @return the page, or null if the requested sort is not indexed (callers fall back to the database)
+     */
+    public Page<Integer> search(String searchTerm, String category, BigDecimal maxPrice, Pageable pageable) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Doc> order = orderFor(pageable.getSort());
+            if (order == null) {
+                return null;
+            }
+            Filter filter = new Filter(searchTerm, category, maxPrice);
+            List<Integer> ids = new ArrayList<>(pageable.getPageSize());
+            long skip = pageable.getOffset();
+            Iterator<Doc> it = filter.empty ? Collections.emptyIterator() : order.iterator();
+            while (it.hasNext() && ids.size() < pageable.getPageSize()) {
+                Doc doc = it.next();
+                if (!filter.accepts(doc)) {
+                    continue;
+                }
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    ids.add(doc.listingId);
+                }
+            }
+            return new PageImpl<>(ids, pageable, filter.count());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Keyset variant of {@link #search}: seeks straight past the cursor instead of
+     * skipping an offset, so every page costs the same however deep it is.
+     * The total is counted on the first page, and on every page when only the category
+     * filters (a bitmap cardinality); deeper filtered pages return {@link #UNCOUNTED}.
+     * @param after the last listing of the previous page, null for the first page
+     */
+    public KeysetPage searchAfter(String searchTerm, String category, BigDecimal maxPrice,
+                                  ListingCursor.Key key, ListingCursor after, int size) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Doc> order = key == ListingCursor.Key.NEWEST ? byCreated.descendingSet() : byPrice;
+            if (after != null && after.getKey() == key) {
+                Doc bound = new Doc(-1, after.getListingId(), null, null, null, after.getPrice(),
+                        after.getCreatedAt() != null ? after.getCreatedAt() : LocalDateTime.MIN);
+                order = order.tailSet(bound, false);
+            }
+            Filter filter = new Filter(searchTerm, category, maxPrice);
+            List<Integer> ids = new ArrayList<>(size);
+            Doc last = null;
+            boolean more = false;
+            for (Doc doc : filter.empty ? Collections.<Doc>emptySet() : order) {
+                if (!filter.accepts(doc)) {
+                    continue;
+                }
+                if (ids.size() == size) {
+                    more = true;
+                    break;
+                }
+                ids.add(doc.listingId);
+                last = doc;
+            }
+            ListingCursor next = more ? ListingCursor.after(key, last.createdAt, last.unitPrice, last.listingId) : null;
+            int total = after == null || filter.categoryOnly() ? filter.count() : UNCOUNTED;
+            return new KeysetPage(ids, next, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byListing.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private NavigableSet<Doc> orderFor(Sort sort) {
+        if (sort.isUnsorted()) {
+            return byCreated.descendingSet();
+        }
+        List<Sort.Order> orders = sort.toList();
+        if (orders.size() != 1) {
+            return null;
+        }
+        Sort.Order order = orders.get(0);
+        NavigableSet<Doc> set = switch (order.getProperty()) {
+            case "createdAt" -> byCreated;
+            case "price" -> byPrice;
+            default -> null;
+        };
+        if (set == null) {
+            return null;
+        }
+        return order.isAscending() ? set : set.descendingSet();
+    }
+
+    // Callers hold the write lock
+    private void add(Integer listingId, String name, String category, BigDecimal price, Integer quantity,
+                     LocalDateTime createdAt) {
+        int slot = freeSlots.isEmpty() ? slots.size() : freeSlots.pop();
+        int units = quantity != null && quantity > 0 ? quantity : 1;
+        Doc doc = new Doc(slot, listingId, lower(name), lower(category), price,
+                price.divide(BigDecimal.valueOf(units), UNIT_PRICE_SCALE, RoundingMode.HALF_UP),
+                createdAt != null ? createdAt : LocalDateTime.MIN);
+        if (slot == slots.size()) {
+            slots.add(doc);
+        } else {
+            slots.set(slot, doc);
+        }
+        byListing.put(listingId, doc);
+        for (String gram : doc.trigrams()) {
+            trigrams.computeIfAbsent(gram, g -> new BitSet()).set(slot);
+        }
+        categories.computeIfAbsent(doc.category, c -> new BitSet()).set(slot);
+        byCreated.add(doc);
+        byPrice.add(doc);
+        queryCache.invalidateMatching(doc.name, doc.category, doc.price);
+    }
+
+    private void remove(Integer listingId) {
+        Doc doc = byListing.remove(listingId);
+        if (doc == null) {
+            return;
+        }
+        for (String gram : doc.trigrams()) {
+            BitSet postings = trigrams.get(gram);
+            postings.clear(doc.slot);
+            if (postings.isEmpty()) {
+                trigrams.remove(gram);
+            }
+        }
+        BitSet inCategory = categories.get(doc.category);
+        inCategory.clear(doc.slot);
+        if (inCategory.isEmpty()) {
+            categories.remove(doc.category);
+        }
+        byCreated.remove(doc);
+        byPrice.remove(doc);
+        slots.set(doc.slot, null);
+        freeSlots.push(doc.slot);
+        queryCache.invalidateMatching(doc.name, doc.category, doc.price);
+    }
+
+    private static String lower(String s) {
+        return s == null ? "" : s.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> trigramsOf(String s) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= s.length(); i++) {
+            grams.add(s.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    // The browse filters, tested one listing at a time. Callers hold the read lock.
+    private final class Filter {
+        final String term;        // Lower-cased, empty for none
+        final String category;    // Lower-cased, empty for all
+        final BigDecimal maxPrice;
+        final boolean empty;      // No listing can match
+        final BitSet narrowest;   // Smallest posting every match is in, null if none applies
+
+        Filter(String searchTerm, String category, BigDecimal maxPrice) {
+            this.term = lower(searchTerm);
+            this.category = lower(category);
+            this.maxPrice = maxPrice;
+            List<BitSet> postings = new ArrayList<>();
+            if (!this.category.isEmpty()) {
+                postings.add(categories.get(this.category));
+            }
+            for (String gram : trigramsOf(term)) {
+                postings.add(trigrams.get(gram));
+            }
+            this.empty = postings.contains(null);
+            this.narrowest = empty ? null : postings.stream()
+                    .min(Comparator.comparingInt(BitSet::cardinality)).orElse(null);
+        }
+
+        boolean accepts(Doc doc) {
+            return (category.isEmpty() || category.equals(doc.category))
+                    && (term.isEmpty() || doc.matches(term))
+                    && (maxPrice == null || doc.price.compareTo(maxPrice) <= 0);
+        }
+
+        boolean categoryOnly() {
+            return term.isEmpty() && maxPrice == null;
+        }
+
+        int count() {
+            if (empty) {
+                return 0;
+            }
+            if (categoryOnly()) {
+                return category.isEmpty() ? byListing.size() : categories.get(category).cardinality();
+            }
+            int count = 0;
+            if (narrowest == null) {
+                for (Doc doc : byListing.values()) {
+                    count += accepts(doc) ? 1 : 0;
+                }
+                return count;
+            }
+            for (int slot = narrowest.nextSetBit(0); slot >= 0; slot = narrowest.nextSetBit(slot + 1)) {
+                count += accepts(slots.get(slot)) ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * One keyset page of listing ids.
+     */
+    public static final class KeysetPage {
+        private final List<Integer> listingIds;
+        private final ListingCursor next; // Null on the last page
+        private final int total; // UNCOUNTED on deeper filtered pages
+
+        KeysetPage(List<Integer> listingIds, ListingCursor next, int total) {
+            this.listingIds = listingIds;
+            this.next = next;
+            this.total = total;
+        }
+
+        public List<Integer> getListingIds() { return listingIds; }
+        public ListingCursor getNext() { return next; }
+        public int getTotal() { return total; }
+    }
+
+    private static final class Doc {
+        final int slot;
+        final Integer listingId;
+        final String name;     // Lower-cased
+        final String category; // Lower-cased
+        final BigDecimal price;     // Whole listing
+        final BigDecimal unitPrice; // Price per unit, the price order's key
+        final LocalDateTime createdAt;
+
+        Doc(int slot, Integer listingId, String name, String category, BigDecimal price, BigDecimal unitPrice,
+            LocalDateTime createdAt) {
+            this.slot = slot;
+            this.listingId = listingId;
+            this.name = name;
+            this.category = category;
+            this.price = price;
+            this.unitPrice = unitPrice;
+            this.createdAt = createdAt;
+        }
+
+        boolean matches(String term) {
+            return name.contains(term) || category.contains(term);
+        }
+
+        Set<String> trigrams() {
+            Set<String> grams = trigramsOf(name);
+            grams.addAll(trigramsOf(category));
+            return grams;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.poly.service;
+
+import com.poly.model.MarketListing;
+
+/**
+ * A listing entered or left the market, or had part of its quantity bought.
+ * Published by {@link MarketplaceService} inside the transaction that made the
+ * change and applied to the {@link OrderBook} and {@link ListingSearchIndex} once
+ * that transaction commits, then streamed to browsers by {@link MarketplaceStream}.
+ */
+public final class MarketListingEvent {
+
+    public enum Kind { CREATED, UPDATED, SOLD, CANCELLED }
+
+    private final Kind kind;
+    private final Integer listingId;
+    private final OrderBook.Entry opened; // Current state; null when the listing was sold or cancelled
+    private final String itemName;        // Searchable fields, set with opened
+    private final String itemCategory;
+
+    private MarketListingEvent(Kind kind, Integer listingId, OrderBook.Entry opened, String itemName, String itemCategory) {
+        this.kind = kind;
+        this.listingId = listingId;
+        this.opened = opened;
+        this.itemName = itemName;
+        this.itemCategory = itemCategory;
+    }
+
+    public static MarketListingEvent opened(MarketListing listing) {
+        return new MarketListingEvent(Kind.CREATED, listing.getListingId(), OrderBook.Entry.of(listing),
+                listing.getItem().getName(), listing.getItem().getItemCategory());
+    }
+
+    // Still active with less left after a partial purchase; replaces the previous state
+    public static MarketListingEvent updated(MarketListing listing) {
+        return new MarketListingEvent(Kind.UPDATED, listing.getListingId(), OrderBook.Entry.of(listing),
+                listing.getItem().getName(), listing.getItem().getItemCategory());
+    }
+
+    public static MarketListingEvent sold(Integer listingId) {
+        return new MarketListingEvent(Kind.SOLD, listingId, null, null, null);
+    }
+
+    public static MarketListingEvent cancelled(Integer listingId) {
+        return new MarketListingEvent(Kind.CANCELLED, listingId, null, null, null);
+    }
+
+    public Kind getKind() { return kind; }
+    public Integer getListingId() { return listingId; }
+    public OrderBook.Entry getOpened() { return opened; }
+    public String getItemName() { return itemName; }
+    public String getItemCategory() { return itemCategory; }
+}
@@ -0,0 +1,50 @@
+package com.poly.service;
+
+/**
+ * Result of one {@link MarketplaceEngine} operation: a typed code, the value on
+ * success, and a detail message for unexpected failures. Callers turn codes into
+ * user messages; engines never throw for expected business failures.
+ */
+public final class MarketOutcome<T> {
+
+    public enum Code {
+        OK,
+        NOT_FOUND,          // Listing does not exist
+        ALREADY_CLOSED,     // Listing is sold or cancelled
+        NOT_OWNER,          // Only the seller may cancel
+        OWN_LISTING,        // Buyer is the seller
+        INSUFFICIENT_FUNDS,
+        INSUFFICIENT_ITEMS,
+        ITEM_NOT_FOUND,
+        NOT_TRADEABLE,
+        CONFLICT,           // Still losing to concurrent writers after the last retry
+        ERROR               // Unexpected database error, see detail
+    }
+
+    private final Code code;
+    private final T value;
+    private final String detail;
+
+    private MarketOutcome(Code code, T value, String detail) {
+        this.code = code;
+        this.value = value;
+        this.detail = detail;
+    }
+
+    public static <T> MarketOutcome<T> ok(T value) {
+        return new MarketOutcome<>(Code.OK, value, null);
+    }
+
+    public static <T> MarketOutcome<T> fail(Code code) {
+        return new MarketOutcome<>(code, null, null);
+    }
+
+    public static <T> MarketOutcome<T> error(String detail) {
+        return new MarketOutcome<>(Code.ERROR, null, detail);
+    }
+
+    public boolean isOk() { return code == Code.OK; }
+    public Code getCode() { return code; }
+    public T getValue() { return value; }
+    public String getDetail() { return detail; }
+}
@@ -0,0 +1,39 @@
+package com.poly.service;
+
+import java.math.BigDecimal;
+
+/**
+ * The four writes behind the marketplace: selling to the system, listing, cancelling
+ * and buying a whole listing. {@link MarketplaceService} does the checks that need the
+ * current user and publishes {@link MarketListingEvent}s; the engine only moves gold,
+ * items and listing state, atomically, and reports the result as a {@link MarketOutcome}.
+ * <p>
+ * Selected by {@code game.marketplace.engine}: {@code procedure} (default) calls the
+ * SQL Server stored procedures, {@code jpa} runs the same rules as short optimistic
+ * transactions that work on any database. Called inside a transaction, an engine joins it.
+ */
+public interface MarketplaceEngine {
+
+    /**
+     * @return the gold received
+     */
+    MarketOutcome<BigDecimal> sellToSystem(Integer userId, Integer itemId, int quantity);
+
+    /**
+     * Moves the items from the seller's inventory into a new active listing.
+     * @param priceType Player or Admin
+     * @return the new listing id
+     */
+    MarketOutcome<Integer> createListing(Integer sellerId, Integer itemId, int quantity, BigDecimal price,
+                                         String priceType);
+
+    /**
+     * Returns the listed items to the seller.
+     */
+    MarketOutcome<Void> cancelListing(Integer listingId, Integer userId);
+
+    /**
+     * Buys the whole listing at its price.
+     */
+    MarketOutcome<Void> buy(Integer buyerId, Integer listingId);
+}
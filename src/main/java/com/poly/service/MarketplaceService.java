@@ -3,27 +3,36 @@ package com.poly.service;
 import com.poly.dto.*;
 import com.poly.model.*;
 import com.poly.repository.*;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.ParameterMode;
-import jakarta.persistence.StoredProcedureQuery;
 import jakarta.persistence.PersistenceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.util.Collections;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,12 +40,24 @@ public class MarketplaceService {
 
     private static final Logger logger = LoggerFactory.getLogger(MarketplaceService.class);
 
+    private static final int MAX_ORDER_BOOK_DEPTH = 50;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_CART_SIZE = 50;
+
     @Autowired private MarketListingRepository marketListingRepository;
     @Autowired private UserRepository userRepository;
     @Autowired private ItemRepository itemRepository;
     @Autowired private UserItemRepository userItemRepository;
     @Autowired private WalletRepository walletRepository;
-    @Autowired private EntityManager entityManager;
+    @Autowired private InventoryWriter inventoryWriter;
+    @Autowired private MarketplaceEngine engine;
+    @Autowired private HotListingLanes hotListings;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private OrderBook orderBook;
+    @Autowired private ListingSearchIndex searchIndex;
+    @Autowired private ListingQueryCache queryCache;
+    @Autowired private SellerListingCounts sellerCounts;
+    @Autowired private ApplicationEventPublisher eventPublisher;
 
     private User getCurrentUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -54,24 +75,61 @@ public class MarketplaceService {
         String effectiveCategory = (category == null || category.equalsIgnoreCase("ALL")) ? "" : category.trim();
         BigDecimal effectiveMaxPrice = (maxPrice == null || maxPrice.compareTo(BigDecimal.ZERO) < 0)
                                        ? new BigDecimal("999999999999.99") : maxPrice;
+        if (pageable.getPageSize() > MAX_PAGE_SIZE) {
+            // Not cached, so an oversized page would hydrate that many rows on every request
+            pageable = PageRequest.of(pageable.getPageNumber(), MAX_PAGE_SIZE, pageable.getSort());
+        }
 
         logger.debug("Fetching active listings with filters: search='{}', category='{}', maxPrice={}, pageable={}",
                      effectiveSearchTerm, effectiveCategory, effectiveMaxPrice, pageable);
 
-        Page<MarketListing> listingsPage = marketListingRepository.findActiveListingsWithFilters(
-                effectiveSearchTerm, effectiveCategory, effectiveMaxPrice, pageable);
+        Page<Integer> idPage = searchIndex.search(effectiveSearchTerm, effectiveCategory, effectiveMaxPrice, pageable);
+        if (idPage == null) {
+            // Sort the index does not keep, let the database do it
+            return marketListingRepository.findActiveListingDTOsWithFilters(
+                    effectiveSearchTerm, effectiveCategory, effectiveMaxPrice, pageable);
+        }
 
-        List<MarketListingDTO> dtos = listingsPage.getContent().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return new PageImpl<>(hydrate(idPage.getContent()), pageable, idPage.getTotalElements());
+    }
+
+    /**
+     * Keyset-paginated browse: the page after {@code cursor} (null for the first page)
+     * in newest-first or cheapest-first order. No OFFSET, no separate count query.
+     * Pages are served from {@link ListingQueryCache} until a matching listing changes.
+     */
+    public CursorPageDTO<MarketListingDTO> getActiveListingsPage(String searchTerm, String category, BigDecimal maxPrice,
+                                                                  ListingCursor.Key key, String cursor, int size) {
+        String effectiveSearchTerm = (searchTerm == null) ? "" : searchTerm.trim();
+        String effectiveCategory = (category == null || category.equalsIgnoreCase("ALL")) ? "" : category.trim();
+        int effectiveSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        ListingQueryCache.Key cacheKey = new ListingQueryCache.Key(effectiveSearchTerm, effectiveCategory,
+                maxPrice, key, cursor, effectiveSize);
+        return queryCache.get(cacheKey, () -> {
+            ListingSearchIndex.KeysetPage page = searchIndex.searchAfter(effectiveSearchTerm, effectiveCategory,
+                    maxPrice, key, ListingCursor.decode(cursor), effectiveSize);
+            String next = page.getNext() != null ? page.getNext().encode() : null;
+            return new CursorPageDTO<>(hydrate(page.getListingIds()), next, page.getTotal());
+        });
+    }
 
-        return new PageImpl<>(dtos, pageable, listingsPage.getTotalElements());
+    // Loads only the listings of one page, keeping the given order
+    private List<MarketListingDTO> hydrate(List<Integer> listingIds) {
+        if (listingIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, MarketListingDTO> byId = marketListingRepository.findDTOsByIds(listingIds).stream()
+                .collect(Collectors.toMap(MarketListingDTO::getListingId, Function.identity()));
+        return listingIds.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     /**
-     * Sells an item directly to the system using a stored procedure.
+     * Sells an item directly to the system through the {@link MarketplaceEngine}.
      */
-    @Transactional
     public ApiResponse<BigDecimal> sellToSystem(SellToSystemRequest request) {
         User user = getCurrentUser();
         logger.info("User {} attempting to sell item {} (qty: {}) to system", 
@@ -81,58 +139,25 @@ public class MarketplaceService {
             return ApiResponse.error("Thông tin không hợp lệ.");
         }
 
-        try {
-            StoredProcedureQuery query = entityManager
-                    .createStoredProcedureQuery("sp_sell_to_system")
-                    .registerStoredProcedureParameter("user_id", Integer.class, ParameterMode.IN)
-                    .registerStoredProcedureParameter("item_id", Integer.class, ParameterMode.IN)
-                    .registerStoredProcedureParameter("quantity", Integer.class, ParameterMode.IN)
-                    .setParameter("user_id", user.getUserId())
-                    .setParameter("item_id", request.getItemId())
-                    .setParameter("quantity", request.getQuantity());
-
-            query.execute();
-
-            @SuppressWarnings("unchecked")
-            List<Object[]> resultList = query.getResultList();
-            if (resultList.isEmpty() || resultList.get(0) == null || !(resultList.get(0)[0] instanceof BigDecimal)) {
-                 logger.error("Stored procedure sp_sell_to_system did not return expected BigDecimal for user {}", 
-                              user.getUsername());
-                 return ApiResponse.error("Lỗi: Không nhận được phản hồi giá trị từ hệ thống.");
-            }
-
-            BigDecimal amountReceived = (BigDecimal) resultList.get(0)[0];
-
-            logger.info("User {} successfully sold item {} (qty: {}) for {} gold", 
-                        user.getUsername(), request.getItemId(), request.getQuantity(), amountReceived);
-            return ApiResponse.success("Bán thành công! Nhận được: " + amountReceived + " vàng", amountReceived);
-
-        } catch (PersistenceException | DataAccessException e) {
-            String rootErrorMessage = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
-            if (rootErrorMessage != null && rootErrorMessage.contains("Không đủ vật phẩm")) {
-                logger.warn("User {} failed to sell item {}: Not enough items", 
-                            user.getUsername(), request.getItemId());
-                return ApiResponse.error("Không đủ vật phẩm để bán!");
-            } else if (rootErrorMessage != null && rootErrorMessage.contains("Vật phẩm không tồn tại")) {
-                logger.warn("User {} failed to sell item {}: Item does not exist", 
-                            user.getUsername(), request.getItemId());
-                return ApiResponse.error("Vật phẩm không tồn tại!");
-            }
-
-            logger.error("Database error during sellToSystem for user {}: {}", 
-                         user.getUsername(), rootErrorMessage, e);
-            return ApiResponse.error("Lỗi CSDL khi bán vật phẩm: " + rootErrorMessage);
-        } catch (Exception e) {
-            logger.error("Unexpected error during sellToSystem for user {}: {}", 
-                         user.getUsername(), e.getMessage(), e);
-            return ApiResponse.error("Lỗi không xác định khi bán vật phẩm: " + e.getMessage());
+        MarketOutcome<BigDecimal> outcome = engine.sellToSystem(user.getUserId(), request.getItemId(), request.getQuantity());
+        if (!outcome.isOk()) {
+            logger.warn("User {} failed to sell item {}: {}", user.getUsername(), request.getItemId(), outcome.getCode());
+            return ApiResponse.error(switch (outcome.getCode()) {
+                case INSUFFICIENT_ITEMS -> "Không đủ vật phẩm để bán!";
+                case ITEM_NOT_FOUND -> "Vật phẩm không tồn tại!";
+                default -> failureMessage(outcome, "bán vật phẩm");
+            });
         }
+
+        BigDecimal amountReceived = outcome.getValue();
+        logger.info("User {} successfully sold item {} (qty: {}) for {} gold", 
+                    user.getUsername(), request.getItemId(), request.getQuantity(), amountReceived);
+        return ApiResponse.success("Bán thành công! Nhận được: " + amountReceived + " vàng", amountReceived);
     }
 
     /**
-     * Creates a new market listing (Player or Admin) using a stored procedure.
+     * Creates a new market listing (Player or Admin) through the {@link MarketplaceEngine}.
      */
-    @Transactional
     public ApiResponse<Integer> createPlayerListing(CreateListingRequest request) {
         User user = getCurrentUser();
         logger.info("User {} attempting to create listing for item {} (qty: {}, price: {}, type: {})",
@@ -154,67 +179,30 @@ public class MarketplaceService {
             }
         }
 
-        try {
-            StoredProcedureQuery query = entityManager
-                    .createStoredProcedureQuery("sp_create_player_listing")
-                    .registerStoredProcedureParameter("seller_id", Integer.class, ParameterMode.IN)
-                    .registerStoredProcedureParameter("item_id", Integer.class, ParameterMode.IN)
-                    .registerStoredProcedureParameter("quantity", Integer.class, ParameterMode.IN)
-                    .registerStoredProcedureParameter("price", BigDecimal.class, ParameterMode.IN)
-                    .setParameter("seller_id", user.getUserId())
-                    .setParameter("item_id", request.getItemId())
-                    .setParameter("quantity", request.getQuantity())
-                    .setParameter("price", request.getPrice());
-
-            query.execute();
-
-            @SuppressWarnings("unchecked")
-            List<Object[]> resultList = query.getResultList();
-            if (resultList.isEmpty() || resultList.get(0) == null || !(resultList.get(0)[0] instanceof Integer)) {
-                logger.error("Stored procedure sp_create_player_listing did not return expected Integer listing ID for user {}", 
-                             user.getUsername());
-                return ApiResponse.error("Lỗi: Không nhận được ID listing từ hệ thống.");
-            }
-            Integer listingId = (Integer) resultList.get(0)[0];
-
-            if (isAdminListing) {
-                Optional<MarketListing> listingOpt = marketListingRepository.findById(listingId);
-                if (listingOpt.isPresent()) {
-                    MarketListing listing = listingOpt.get();
-                    listing.setPriceType("Admin");
-                    listing.setListingType("Fixed");
-                    marketListingRepository.save(listing);
-                    logger.info("Admin listing {} created and updated by user {}", listingId, user.getUsername());
-                } else {
-                    logger.error("Could not find newly created Admin listing {} to update price_type", listingId);
-                }
-            } else {
-                logger.info("Player listing {} created by user {}", listingId, user.getUsername());
-            }
-
-            return ApiResponse.success("Đăng bán thành công!", listingId);
-
-        } catch (PersistenceException | DataAccessException e) {
-            String rootErrorMessage = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
-            if (rootErrorMessage != null && rootErrorMessage.contains("Không đủ vật phẩm")) {
-                logger.warn("User {} failed to create listing for item {}: Not enough items", 
-                            user.getUsername(), request.getItemId());
-                return ApiResponse.error("Không đủ vật phẩm để đăng bán!");
-            }
-            logger.error("Database error during createPlayerListing for user {}: {}", 
-                         user.getUsername(), rootErrorMessage, e);
-            return ApiResponse.error("Lỗi CSDL khi đăng bán: " + rootErrorMessage);
-        } catch (Exception e) {
-            logger.error("Unexpected error during createPlayerListing for user {}: {}", 
-                         user.getUsername(), e.getMessage(), e);
-            return ApiResponse.error("Lỗi không xác định khi đăng bán: " + e.getMessage());
+        MarketOutcome<Integer> outcome = engine.createListing(user.getUserId(), request.getItemId(),
+                request.getQuantity(), request.getPrice(), isAdminListing ? "Admin" : "Player");
+        if (!outcome.isOk()) {
+            logger.warn("User {} failed to create listing for item {}: {}",
+                        user.getUsername(), request.getItemId(), outcome.getCode());
+            return ApiResponse.error(switch (outcome.getCode()) {
+                case INSUFFICIENT_ITEMS -> "Không đủ vật phẩm để đăng bán!";
+                case ITEM_NOT_FOUND -> "Vật phẩm không tồn tại!";
+                case NOT_TRADEABLE -> "Vật phẩm này không thể giao dịch!";
+                default -> failureMessage(outcome, "đăng bán");
+            });
         }
+
+        Integer listingId = outcome.getValue();
+        logger.info("{} listing {} created by user {}", isAdminListing ? "Admin" : "Player", listingId, user.getUsername());
+        sellerCounts.invalidate(user.getUserId());
+        marketListingRepository.findById(listingId)
+                .ifPresent(listing -> eventPublisher.publishEvent(MarketListingEvent.opened(listing)));
+        return ApiResponse.success("Đăng bán thành công!", listingId);
     }
 
     /**
-     * Cancels an active market listing using a stored procedure.
+     * Cancels an active market listing through the {@link MarketplaceEngine}.
      */
-    @Transactional
     public ApiResponse<Void> cancelListing(Integer listingId) {
         User user = getCurrentUser();
         logger.info("User {} attempting to cancel listing {}", user.getUsername(), listingId);
@@ -223,146 +211,395 @@ public class MarketplaceService {
             return ApiResponse.error("ID Listing không hợp lệ.");
         }
 
-        try {
-            StoredProcedureQuery query = entityManager
-                    .createStoredProcedureQuery("sp_cancel_listing")
-                    .registerStoredProcedureParameter("listing_id", Integer.class, ParameterMode.IN)
-                    .registerStoredProcedureParameter("user_id", Integer.class, ParameterMode.IN)
-                    .setParameter("listing_id", listingId)
-                    .setParameter("user_id", user.getUserId());
-
-            query.execute();
-
-            logger.info("User {} successfully cancelled listing {}", user.getUsername(), listingId);
-            return ApiResponse.success("Hủy đăng bán thành công!", null);
-
-        } catch (PersistenceException | DataAccessException e) {
-            String rootErrorMessage = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
-            if (rootErrorMessage != null && (rootErrorMessage.contains("không tồn tại") || 
-                                             rootErrorMessage.contains("đã xử lý"))) {
-                logger.warn("User {} failed to cancel listing {}: Listing not found or already processed", 
-                            user.getUsername(), listingId);
-                return ApiResponse.error("Listing không tồn tại hoặc đã được xử lý!");
-            } else if (rootErrorMessage != null && rootErrorMessage.contains("không có quyền hủy")) {
-                logger.warn("User {} failed to cancel listing {}: Permission denied", 
-                            user.getUsername(), listingId);
-                return ApiResponse.error("Bạn không có quyền hủy đăng bán này!");
-            }
-            logger.error("Database error during cancelListing for user {}: {}", 
-                         user.getUsername(), rootErrorMessage, e);
-            return ApiResponse.error("Lỗi CSDL khi hủy đăng bán: " + rootErrorMessage);
-        } catch (Exception e) {
-            logger.error("Unexpected error during cancelListing for user {}: {}", 
-                         user.getUsername(), e.getMessage(), e);
-            return ApiResponse.error("Lỗi không xác định khi hủy đăng bán: " + e.getMessage());
+        MarketOutcome<Void> outcome = engine.cancelListing(listingId, user.getUserId());
+        if (!outcome.isOk()) {
+            logger.warn("User {} failed to cancel listing {}: {}", user.getUsername(), listingId, outcome.getCode());
+            return ApiResponse.error(switch (outcome.getCode()) {
+                case NOT_FOUND, ALREADY_CLOSED -> "Listing không tồn tại hoặc đã được xử lý!";
+                case NOT_OWNER -> "Bạn không có quyền hủy đăng bán này!";
+                default -> failureMessage(outcome, "hủy đăng bán");
+            });
         }
+        eventPublisher.publishEvent(MarketListingEvent.cancelled(listingId));
+        sellerCounts.invalidate(user.getUserId());
+
+        logger.info("User {} successfully cancelled listing {}", user.getUsername(), listingId);
+        return ApiResponse.success("Hủy đăng bán thành công!", null);
     }
 
     /**
-     * Buys an item from a market listing using a stored procedure.
+     * Buys a whole market listing through the {@link MarketplaceEngine}, or only some
+     * of its units if the request gives a quantity (see {@link #buyUnits}). Both pass
+     * through {@link HotListingLanes}, and no transaction is held while they wait there.
      */
-    @Transactional
     public ApiResponse<Void> buyItem(BuyItemRequest request) {
         User user = getCurrentUser();
         Integer listingId = request.getListingId();
-        logger.info("User {} attempting to buy listing {}", user.getUsername(), listingId);
+        logger.info("User {} attempting to buy listing {} (qty: {})", user.getUsername(), listingId,
+                    request.getQuantity() != null ? request.getQuantity() : "all");
 
         if (listingId == null) {
             return ApiResponse.error("ID Listing không hợp lệ.");
         }
 
-        try {
-            StoredProcedureQuery query = entityManager
-                    .createStoredProcedureQuery("sp_buy_from_market")
-                    .registerStoredProcedureParameter("buyer_id", Integer.class, ParameterMode.IN)
-                    .registerStoredProcedureParameter("listing_id", Integer.class, ParameterMode.IN)
-                    .setParameter("buyer_id", user.getUserId())
-                    .setParameter("listing_id", listingId);
-
-            query.execute();
-
+        if (hotListings.isClosed(listingId)) {
+            return ApiResponse.error("Listing không tồn tại hoặc đã bán!");
+        }
+        if (request.getQuantity() == null) {
+            // Flash sales on one listing are serialized here instead of on its row lock
+            MarketOutcome<Void> outcome = hotListings.buy(listingId, () -> {
+                MarketOutcome<Void> bought = engine.buy(user.getUserId(), listingId);
+                if (bought.isOk()) {
+                    // Closes the lane before the next queued purchase runs
+                    eventPublisher.publishEvent(MarketListingEvent.sold(listingId));
+                }
+                return bought;
+            });
+            if (!outcome.isOk()) {
+                logger.warn("User {} failed to buy listing {}: {}", user.getUsername(), listingId, outcome.getCode());
+                return ApiResponse.error(buyFailureMessage(outcome));
+            }
             logger.info("User {} successfully bought listing {}", user.getUsername(), listingId);
             return ApiResponse.success("Mua vật phẩm thành công!", null);
+        }
 
+        try {
+            MarketOutcome<BigDecimal> outcome = hotListings.buy(listingId, () -> MarketOutcome.ok(
+                    transactionTemplate.execute(status -> buyUnits(user.getUserId(), listingId, request.getQuantity()))));
+            if (!outcome.isOk()) {
+                logger.warn("User {} failed to buy listing {}: {}", user.getUsername(), listingId, outcome.getCode());
+                return ApiResponse.error(buyFailureMessage(outcome));
+            }
+            logger.info("User {} bought {} units of listing {} for {} gold", user.getUsername(),
+                        request.getQuantity(), listingId, outcome.getValue());
+            return ApiResponse.success("Mua " + request.getQuantity() + " vật phẩm thành công! Giá: "
+                    + outcome.getValue() + " vàng", null);
+        } catch (IllegalStateException e) {
+            logger.warn("User {} failed to buy listing {}: {}", user.getUsername(), listingId, e.getMessage());
+            return ApiResponse.error(e.getMessage());
         } catch (PersistenceException | DataAccessException e) {
             String rootErrorMessage = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
-            if (rootErrorMessage != null && (rootErrorMessage.contains("không tồn tại") || 
-                                             rootErrorMessage.contains("đã bán"))) {
-                logger.warn("User {} failed to buy listing {}: Listing not found or already sold", 
-                            user.getUsername(), listingId);
-                return ApiResponse.error("Listing không tồn tại hoặc đã bán!");
-            } else if (rootErrorMessage != null && 
-                       rootErrorMessage.contains("Không thể mua vật phẩm của chính mình")) {
-                logger.warn("User {} failed to buy listing {}: Attempted self-purchase", 
-                            user.getUsername(), listingId);
-                return ApiResponse.error("Không thể mua vật phẩm của chính mình!");
-            } else if (rootErrorMessage != null && rootErrorMessage.contains("Số dư không đủ")) {
-                logger.warn("User {} failed to buy listing {}: Insufficient balance", 
-                            user.getUsername(), listingId);
-                return ApiResponse.error("Số dư không đủ để mua vật phẩm này!");
-            }
-            logger.error("Database error during buyItem for user {}: {}", 
+            logger.error("Database error during buyItem for user {}: {}",
                          user.getUsername(), rootErrorMessage, e);
             return ApiResponse.error("Lỗi CSDL khi mua vật phẩm: " + rootErrorMessage);
-        } catch (Exception e) {
-            logger.error("Unexpected error during buyItem for user {}: {}", 
-                         user.getUsername(), e.getMessage(), e);
-            return ApiResponse.error("Lỗi không xác định khi mua vật phẩm: " + e.getMessage());
         }
     }
 
+    private static String buyFailureMessage(MarketOutcome<?> outcome) {
+        return switch (outcome.getCode()) {
+            case NOT_FOUND, ALREADY_CLOSED -> "Listing không tồn tại hoặc đã bán!";
+            case OWN_LISTING -> "Không thể mua vật phẩm của chính mình!";
+            case INSUFFICIENT_FUNDS -> "Số dư không đủ để mua vật phẩm này!";
+            default -> failureMessage(outcome, "mua vật phẩm");
+        };
+    }
+
+    private static String failureMessage(MarketOutcome<?> outcome, String action) {
+        if (outcome.getCode() == MarketOutcome.Code.CONFLICT) {
+            return "Giao dịch đang bận, vui lòng thử lại!";
+        }
+        return "Lỗi CSDL khi " + action + ": " + outcome.getDetail();
+    }
+
     /**
-     * Retrieves all active listings created by the current user.
+     * Places a buy order ("buy N of an item at no more than X per unit") against the
+     * order book. Matching listings are reserved in memory, then bought together the
+     * way {@link #checkoutCart} buys a cart: the listings are update-locked in listing
+     * id order, every wallet gets one statement in user id order, whole listings are
+     * marked sold in one statement and the items are added in one inventory batch.
+     * Only the last listing may be bought in part. If anything fails the whole order
+     * rolls back; either way the reservations end when the transaction does.
      */
-    public List<MarketListingDTO> getMyListings() {
+    @Transactional
+    public ApiResponse<BuyOrderResultDTO> placeBuyOrder(BuyOrderRequest request) {
         User user = getCurrentUser();
-        logger.debug("Fetching active listings for user {}", user.getUsername());
+        if (request.getItemId() == null || request.getQuantity() == null || request.getQuantity() <= 0 ||
+            request.getMaxUnitPrice() == null || request.getMaxUnitPrice().compareTo(BigDecimal.ZERO) < 0) {
+            return ApiResponse.error("Thông tin không hợp lệ.");
+        }
+        logger.info("User {} placing buy order for item {} (qty: {}, max unit price: {})",
+                    user.getUsername(), request.getItemId(), request.getQuantity(), request.getMaxUnitPrice());
+
+        List<OrderBook.Fill> fills = orderBook.reserve(request.getItemId(), request.getQuantity(),
+                                                       request.getMaxUnitPrice(), user.getUserId());
+        if (fills.isEmpty()) {
+            return ApiResponse.error("Không có listing nào phù hợp với giá này!");
+        }
+        // Sold listings are dropped and the rest go back into the book, committed or not
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                orderBook.release(fills);
+            }
+        });
+
+        BuyOrderResultDTO result = new BuyOrderResultDTO();
+        result.setItemId(request.getItemId());
+        result.setQuantityRequested(request.getQuantity());
+        for (OrderBook.Fill fill : fills) {
+            result.setQuantityFilled(result.getQuantityFilled() + fill.getQuantity());
+            result.setTotalCost(result.getTotalCost().add(fill.getCost()));
+            result.getListingIds().add(fill.getEntry().getListingId());
+        }
+
+        BigDecimal balance = walletRepository.findByUser_UserId(user.getUserId())
+                .map(Wallet::getBalance).orElse(BigDecimal.ZERO);
+        if (balance.compareTo(result.getTotalCost()) < 0) {
+            return ApiResponse.error("Số dư không đủ để mua " + result.getQuantityFilled() + " vật phẩm!");
+        }
+
+        Map<Integer, MarketListing> locked = marketListingRepository.lockAllByIds(result.getListingIds()).stream()
+                .collect(Collectors.toMap(MarketListing::getListingId, Function.identity()));
+        Map<Integer, BigDecimal> walletDeltas = new TreeMap<>();
+        List<Integer> soldIds = new ArrayList<>(fills.size());
+        MarketListing partial = null;
+        int partialUnits = 0;
+        BigDecimal partialCost = null;
+        BigDecimal totalCost = BigDecimal.ZERO;
+        for (OrderBook.Fill fill : fills) {
+            MarketListing listing = locked.get(fill.getEntry().getListingId());
+            if (listing == null || !"Active".equals(listing.getStatus()) ||
+                listing.getQuantity() < fill.getQuantity() ||
+                listing.getSeller().getUserId().equals(user.getUserId())) {
+                // Changed by a plain purchase since it was reserved
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                return ApiResponse.error("Lệnh mua thất bại, vui lòng thử lại: Listing vừa thay đổi!");
+            }
+            BigDecimal cost = OrderBook.Entry.costOf(listing.getPrice(), listing.getQuantity(), fill.getQuantity());
+            if (fill.getQuantity() == listing.getQuantity()) {
+                soldIds.add(listing.getListingId());
+            } else {
+                partial = listing;
+                partialUnits = fill.getQuantity();
+                partialCost = cost;
+            }
+            walletDeltas.merge(listing.getSeller().getUserId(), cost, BigDecimal::add);
+            totalCost = totalCost.add(cost);
+        }
+        walletDeltas.merge(user.getUserId(), totalCost.negate(), BigDecimal::add);
+        result.setTotalCost(totalCost);
+
         try {
-            List<MarketListing> listings = marketListingRepository.findBySeller_UserIdAndStatus(
-                    user.getUserId(), "Active");
-            return listings.stream().map(this::convertToDTO).collect(Collectors.toList());
-        } catch (Exception e) {
-            logger.error("Error fetching listings for user {}: {}", user.getUsername(), e.getMessage(), e);
-            return Collections.emptyList();
+            for (Map.Entry<Integer, BigDecimal> delta : walletDeltas.entrySet()) {
+                int sign = delta.getValue().signum();
+                if (sign < 0 && walletRepository.debit(delta.getKey(), delta.getValue().negate()) == 0) {
+                    TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                    return ApiResponse.error("Số dư không đủ để mua " + result.getQuantityFilled() + " vật phẩm!");
+                } else if (sign > 0) {
+                    walletRepository.credit(delta.getKey(), delta.getValue());
+                }
+            }
+            if (partial != null) {
+                if (marketListingRepository.takeUnits(partial.getListingId(), partialUnits, partialCost,
+                        partial.getQuantity(), partial.getPrice()) == 0) {
+                    TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                    return ApiResponse.error("Lệnh mua thất bại, vui lòng thử lại: Listing vừa thay đổi!");
+                }
+            }
+            if (!soldIds.isEmpty()) {
+                marketListingRepository.markSold(soldIds, LocalDateTime.now());
+            }
+            inventoryWriter.add(user.getUserId(), request.getItemId(), result.getQuantityFilled());
+        } catch (PersistenceException | DataAccessException e) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            String rootErrorMessage = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            logger.warn("Buy order of user {} for item {} rolled back: {}",
+                        user.getUsername(), request.getItemId(), rootErrorMessage);
+            return ApiResponse.error("Lệnh mua thất bại, vui lòng thử lại: " + rootErrorMessage);
         }
+        soldIds.forEach(id -> eventPublisher.publishEvent(MarketListingEvent.sold(id)));
+        if (partial != null) {
+            marketListingRepository.findById(partial.getListingId())
+                    .ifPresent(updated -> eventPublisher.publishEvent(MarketListingEvent.updated(updated)));
+        }
+
+        logger.info("User {} bought {} x item {} from {} listings for {} gold", user.getUsername(),
+                    result.getQuantityFilled(), request.getItemId(), fills.size(), result.getTotalCost());
+        return ApiResponse.success(String.format("Đã mua %d/%d vật phẩm với tổng giá %s vàng!",
+                result.getQuantityFilled(), result.getQuantityRequested(), result.getTotalCost()), result);
     }
 
     /**
-     * Converts a MarketListing entity to its DTO representation.
+     * Buys every listing of a cart in one transaction. The listings are update-locked
+     * together in listing id order, the buyer's wallet is debited once for the total,
+     * sellers are credited in user id order and the items are added in one inventory
+     * batch, so concurrent checkouts always take their locks in the same order.
+     * <p>
+     * Listings are taken in cart order while the balance lasts; the others are reported
+     * per listing and left alone.
      */
-    private MarketListingDTO convertToDTO(MarketListing listing) {
-        if (listing == null) {
-            return null;
-        }
-        MarketListingDTO dto = new MarketListingDTO();
-        dto.setListingId(listing.getListingId());
-        dto.setQuantity(listing.getQuantity());
-        dto.setPrice(listing.getPrice());
-        dto.setListingType(listing.getListingType());
-        dto.setPriceType(listing.getPriceType());
-        dto.setStatus(listing.getStatus());
-        dto.setCreatedAt(listing.getCreatedAt());
-
-        if (listing.getSeller() != null) {
-            dto.setSellerId(listing.getSeller().getUserId());
-            dto.setSellerName(listing.getSeller().getUsername());
-        }
-
-        if (listing.getItem() != null) {
-            Item item = listing.getItem();
-            dto.setItemId(item.getItemId());
-            dto.setItemName(item.getName());
-            dto.setItemDescription(item.getDescription());
-            dto.setItemRarity(item.getRarity());
-            dto.setItemType(item.getItemType());
-            dto.setItemCategory(item.getItemCategory());
-            dto.setImageUrl(item.getImageUrl());
-            dto.setGameAtk(item.getGameAtk());
-            dto.setGameDef(item.getGameDef());
-            dto.setGameHeal(item.getGameHeal());
-            dto.setGameSlot(item.getGameSlot());
+    @Transactional
+    public ApiResponse<CartCheckoutResultDTO> checkoutCart(CartCheckoutRequest request) {
+        User user = getCurrentUser();
+        List<Integer> cart = request.getListingIds();
+        if (cart == null || cart.isEmpty() || cart.size() > MAX_CART_SIZE || cart.contains(null)) {
+            return ApiResponse.error("Giỏ hàng không hợp lệ (tối đa " + MAX_CART_SIZE + " vật phẩm).");
+        }
+        logger.info("User {} checking out cart of {} listings", user.getUsername(), cart.size());
+
+        // Listings a hot lane already saw sold are reported unavailable without locking them
+        Set<Integer> toLock = cart.stream().filter(id -> !hotListings.isClosed(id)).collect(Collectors.toSet());
+        Map<Integer, MarketListing> locked = toLock.isEmpty() ? Map.of()
+                : marketListingRepository.lockAllByIds(toLock).stream()
+                        .collect(Collectors.toMap(MarketListing::getListingId, Function.identity()));
+        BigDecimal balance = walletRepository.findByUser_UserId(user.getUserId())
+                .map(Wallet::getBalance).orElse(BigDecimal.ZERO);
+
+        CartCheckoutResultDTO result = new CartCheckoutResultDTO();
+        List<MarketListing> bought = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        for (Integer listingId : cart) {
+            MarketListing listing = locked.get(listingId);
+            CartCheckoutResultDTO.Status status;
+            if (!seen.add(listingId)) {
+                status = CartCheckoutResultDTO.Status.DUPLICATE;
+            } else if (listing == null || !"Active".equals(listing.getStatus())) {
+                status = CartCheckoutResultDTO.Status.NOT_AVAILABLE;
+            } else if (listing.getSeller().getUserId().equals(user.getUserId())) {
+                status = CartCheckoutResultDTO.Status.OWN_LISTING;
+            } else if (result.getTotalCost().add(listing.getPrice()).compareTo(balance) > 0) {
+                status = CartCheckoutResultDTO.Status.INSUFFICIENT_FUNDS;
+            } else {
+                status = CartCheckoutResultDTO.Status.PURCHASED;
+                result.setTotalCost(result.getTotalCost().add(listing.getPrice()));
+                bought.add(listing);
+            }
+            result.getResults().add(new CartCheckoutResultDTO.Line(listingId, status,
+                    listing != null ? listing.getPrice() : null));
+        }
+        result.setPurchased(bought.size());
+        result.setNewBalance(balance.subtract(result.getTotalCost()));
+        if (bought.isEmpty()) {
+            return ApiResponse.error("Không mua được vật phẩm nào trong giỏ hàng!");
         }
 
+        // Buyer debit and seller credits, one statement per wallet, in user id order
+        Map<Integer, BigDecimal> walletDeltas = new TreeMap<>();
+        List<InventoryWriter.InventoryDelta> items = new ArrayList<>(bought.size());
+        for (MarketListing listing : bought) {
+            walletDeltas.merge(listing.getSeller().getUserId(), listing.getPrice(), BigDecimal::add);
+            items.add(new InventoryWriter.InventoryDelta(user.getUserId(), listing.getItem().getItemId(),
+                    listing.getQuantity()));
+        }
+        walletDeltas.merge(user.getUserId(), result.getTotalCost().negate(), BigDecimal::add);
+        List<Integer> boughtIds = bought.stream().map(MarketListing::getListingId).collect(Collectors.toList());
+        try {
+            for (Map.Entry<Integer, BigDecimal> delta : walletDeltas.entrySet()) {
+                int sign = delta.getValue().signum();
+                if (sign < 0 && walletRepository.debit(delta.getKey(), delta.getValue().negate()) == 0) {
+                    // The balance changed since it was read
+                    TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                    return ApiResponse.error("Số dư không đủ để thanh toán giỏ hàng!");
+                } else if (sign > 0) {
+                    walletRepository.credit(delta.getKey(), delta.getValue());
+                }
+            }
+            marketListingRepository.markSold(boughtIds, LocalDateTime.now());
+            inventoryWriter.applyAll(items);
+        } catch (PersistenceException | DataAccessException e) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            String rootErrorMessage = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            logger.error("Database error during cart checkout for user {}: {}",
+                         user.getUsername(), rootErrorMessage, e);
+            return ApiResponse.error("Lỗi CSDL khi thanh toán giỏ hàng: " + rootErrorMessage);
+        }
+        boughtIds.forEach(id -> eventPublisher.publishEvent(MarketListingEvent.sold(id)));
+
+        logger.info("User {} bought {} of {} cart listings for {} gold", user.getUsername(),
+                    bought.size(), cart.size(), result.getTotalCost());
+        return ApiResponse.success(String.format("Đã mua %d/%d vật phẩm với tổng giá %s vàng!",
+                bought.size(), cart.size(), result.getTotalCost()), result);
+    }
+
+    /**
+     * Best unit price and the top of the order book for an item.
+     */
+    public OrderBookDTO getOrderBook(Integer itemId, int depth) {
+        OrderBookDTO dto = new OrderBookDTO();
+        dto.setItemId(itemId);
+        orderBook.best(itemId).ifPresent(best -> {
+            dto.setBestUnitPrice(best.getUnitPrice());
+            dto.setBestListingId(best.getListingId());
+        });
+        dto.setTotalQuantity(orderBook.totalQuantity(itemId));
+        dto.setListings(orderBook.depth(itemId, Math.max(0, Math.min(depth, MAX_ORDER_BOOK_DEPTH))));
         return dto;
     }
+
+    /**
+     * Buys some units of a listing. Taking the whole listing goes through the engine;
+     * a part is taken off the listing with one guarded UPDATE, so two buyers can never take
+     * the same units, and the listing keeps the rest of its price for the rest of its units.
+     * @return what the buyer paid
+     * @throws IllegalStateException with a message for the user if the purchase is not possible
+     */
+    private BigDecimal buyUnits(Integer buyerId, Integer listingId, int units) {
+        MarketListing listing = marketListingRepository.findById(listingId)
+                .filter(l -> "Active".equals(l.getStatus()))
+                .orElseThrow(() -> new IllegalStateException("Listing không tồn tại hoặc đã bán!"));
+        int available = listing.getQuantity();
+        if (units <= 0 || units > available) {
+            throw new IllegalStateException("Số lượng không hợp lệ (listing còn " + available + " vật phẩm)!");
+        }
+        if (units == available) {
+            MarketOutcome<Void> outcome = engine.buy(buyerId, listingId);
+            if (!outcome.isOk()) {
+                throw new IllegalStateException(buyFailureMessage(outcome));
+            }
+            eventPublisher.publishEvent(MarketListingEvent.sold(listingId));
+            return listing.getPrice();
+        }
+        Integer sellerId = listing.getSeller().getUserId();
+        if (sellerId.equals(buyerId)) {
+            throw new IllegalStateException("Không thể mua vật phẩm của chính mình!");
+        }
+
+        BigDecimal cost = OrderBook.Entry.costOf(listing.getPrice(), available, units);
+        if (marketListingRepository.takeUnits(listingId, units, cost, available, listing.getPrice()) == 0) {
+            throw new IllegalStateException("Listing vừa thay đổi, vui lòng thử lại!");
+        }
+        // Buyer debit and seller credit in user id order, after the listing, like checkoutCart
+        Map<Integer, BigDecimal> walletDeltas = new TreeMap<>();
+        walletDeltas.put(buyerId, cost.negate());
+        walletDeltas.put(sellerId, cost);
+        for (Map.Entry<Integer, BigDecimal> delta : walletDeltas.entrySet()) {
+            int sign = delta.getValue().signum();
+            if (sign < 0 && walletRepository.debit(delta.getKey(), delta.getValue().negate()) == 0) {
+                throw new IllegalStateException("Số dư không đủ để mua vật phẩm này!");
+            } else if (sign > 0) {
+                walletRepository.credit(delta.getKey(), delta.getValue());
+            }
+        }
+        inventoryWriter.add(buyerId, listing.getItem().getItemId(), units);
+        marketListingRepository.findById(listingId)
+                .ifPresent(updated -> eventPublisher.publishEvent(MarketListingEvent.updated(updated)));
+        return cost;
+    }
+
+    /**
+     * One keyset page of the current user's active listings, newest first.
+     * @param cursor token from the previous page, null for the first page
+     */
+    public CursorPageDTO<MarketListingDTO> getMyListings(String cursor, int size) {
+        User user = getCurrentUser();
+        logger.debug("Fetching active listings for user {}", user.getUsername());
+        int effectiveSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // One extra row tells whether there is a next page
+        Pageable limit = PageRequest.of(0, effectiveSize + 1);
+        ListingCursor after = ListingCursor.decode(cursor);
+        List<MarketListingDTO> listings = after != null && after.getKey() == ListingCursor.Key.NEWEST
+                ? marketListingRepository.findSellerPageAfter(user.getUserId(), "Active",
+                        after.getCreatedAt(), after.getListingId(), limit)
+                : marketListingRepository.findSellerPage(user.getUserId(), "Active", limit);
+
+        String next = null;
+        if (listings.size() > effectiveSize) {
+            listings = listings.subList(0, effectiveSize);
+            MarketListingDTO last = listings.get(effectiveSize - 1);
+            next = ListingCursor.after(ListingCursor.Key.NEWEST, last.getCreatedAt(), last.getPrice(),
+                    last.getListingId()).encode();
+        }
+        // Approximate: cached and recounted in the background, not on every page
+        return new CursorPageDTO<>(listings, next, sellerCounts.activeListings(user.getUserId()));
+    }
 }
\ No newline at end of file
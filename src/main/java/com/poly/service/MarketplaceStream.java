@@ -0,0 +1,266 @@
+package com.poly.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.poly.dto.MarketListingDTO;
+import com.poly.repository.MarketListingRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pushes committed listing changes to browsers on /marketplace as server-sent
+ * events ("listing-created", "listing-updated", "listing-sold", "listing-cancelled"),
+ * so pages can patch their grid instead of reloading.
+ * <p>
+ * Each subscriber has a bounded queue drained on the {@code marketStreamSendExecutor}
+ * pool, so a slow connection never blocks the committing thread. Listing payloads are
+ * read on the separate {@code marketStreamLoadExecutor}, so database reads never wait
+ * behind sends. A subscriber whose queue overflows loses its pending deltas and gets
+ * one "resync" event instead, telling the page to reload; so does every subscriber
+ * when an event cannot be loaded.
+ * <p>
+ * A subscriber whose send has not finished after {@code game.marketplace.stream.send-timeout-millis}
+ * is dropped: it gets no more events, and its connection is completed once the stuck
+ * write returns (the container's write timeout bounds that).
+ */
+@Service
+public class MarketplaceStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarketplaceStream.class);
+
+    private static final long EMITTER_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+
+    @Value("${game.marketplace.stream.max-subscribers:1000}")
+    private int maxSubscribers;
+
+    @Value("${game.marketplace.stream.queue-size:64}")
+    private int queueSize;
+
+    @Value("${game.marketplace.stream.send-timeout-millis:5000}")
+    private long sendTimeoutMillis;
+
+    @Autowired private MarketListingRepository listingRepo;
+
+    @Autowired
+    @Qualifier("marketStreamSendExecutor")
+    private TaskExecutor senders;
+
+    @Autowired
+    @Qualifier("marketStreamLoadExecutor")
+    private TaskExecutor loader;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder stalled = new LongAdder();
+    private final LongAdder unloaded = new LongAdder();
+
+    /**
+     * @return a new emitter, or null if the subscriber limit is reached
+     */
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= maxSubscribers) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MILLIS);
+        Subscriber subscriber = new Subscriber(emitter);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onListingEvent(MarketListingEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        // Built off the committing thread; the created listing is read once for all subscribers
+        try {
+            loader.execute(() -> {
+                Map<String, Object> data = new LinkedHashMap<>();
+                data.put("listingId", event.getListingId());
+                if (event.getOpened() != null) { // Created, or updated after a partial purchase
+                    List<MarketListingDTO> listing = listingRepo.findDTOsByIds(List.of(event.getListingId()));
+                    if (listing.isEmpty()) {
+                        return;
+                    }
+                    data.put("listing", listing.get(0));
+                }
+                String name = "listing-" + event.getKind().name().toLowerCase();
+                published.increment();
+                subscribers.forEach(s -> s.offer(name, data));
+            });
+        } catch (TaskRejectedException e) {
+            // Too many changes to load; pages reload instead of missing one
+            unloaded.increment();
+            subscribers.forEach(Subscriber::resync);
+        }
+    }
+
+    // Keeps idle connections open through proxies
+    @Scheduled(fixedDelay = 25_000)
+    public void heartbeat() {
+        subscribers.forEach(s -> s.offer("ping", ""));
+    }
+
+    // Drops subscribers stuck in a send. Their emitter is not completed here: that
+    // would wait for the stuck write, so the sending thread completes it afterwards.
+    @Scheduled(fixedDelay = 1_000)
+    public void dropStalled() {
+        long startedBefore = System.currentTimeMillis() - sendTimeoutMillis;
+        subscribers.removeIf(s -> {
+            if (!s.stalledSince(startedBefore)) {
+                return false;
+            }
+            stalled.increment();
+            logger.debug("Dropping marketplace stream subscriber stuck in a send for over {} ms", sendTimeoutMillis);
+            return true;
+        });
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("subscribers", subscribers.size());
+        metrics.put("published", published.sum());
+        metrics.put("droppedDeltas", dropped.sum());
+        metrics.put("droppedStalled", stalled.sum());
+        metrics.put("unloadedEvents", unloaded.sum());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(s -> s.emitter.complete());
+    }
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        // Guarded by this
+        final ArrayDeque<Object[]> queue = new ArrayDeque<>();
+        boolean draining;
+        boolean resync;
+        boolean gone;
+        long sendingSince; // 0 when no send is in progress
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(String name, Object data) {
+            synchronized (this) {
+                if (gone) {
+                    return;
+                }
+                if (queue.size() >= queueSize) {
+                    dropped.add(queue.size());
+                    queue.clear();
+                    resync = true;
+                } else if (!resync) {
+                    queue.add(new Object[] {name, data});
+                }
+            }
+            schedule();
+        }
+
+        void resync() {
+            synchronized (this) {
+                dropped.add(queue.size());
+                queue.clear();
+                resync = true;
+            }
+            schedule();
+        }
+
+        synchronized boolean stalledSince(long startedBefore) {
+            if (sendingSince == 0 || sendingSince >= startedBefore) {
+                return false;
+            }
+            gone = true;
+            queue.clear();
+            return true;
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (draining || gone) {
+                    return;
+                }
+                draining = true;
+            }
+            try {
+                senders.execute(this::drain);
+            } catch (TaskRejectedException e) {
+                // Senders saturated; the queue is kept and the next event retries
+                synchronized (this) {
+                    draining = false;
+                }
+            }
+        }
+
+        void drain() {
+            while (true) {
+                Object[] next;
+                synchronized (this) {
+                    if (gone) {
+                        next = null;
+                    } else if (resync) {
+                        resync = false;
+                        next = new Object[] {"resync", ""};
+                    } else {
+                        next = queue.poll();
+                    }
+                    if (next == null) {
+                        draining = false;
+                        return;
+                    }
+                    sendingSince = System.currentTimeMillis();
+                }
+                boolean stop;
+                try {
+                    emitter.send(SseEmitter.event().name((String) next[0]).data(next[1]));
+                } catch (IOException | IllegalStateException e) {
+                    logger.debug("Marketplace stream subscriber gone: {}", e.getMessage());
+                    subscribers.remove(this);
+                    synchronized (this) {
+                        gone = true;
+                        queue.clear();
+                    }
+                } finally {
+                    synchronized (this) {
+                        sendingSince = 0;
+                        stop = gone;
+                    }
+                }
+                if (stop) {
+                    emitter.complete();
+                    synchronized (this) {
+                        draining = false;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package com.poly.service;
 
 import java.math.BigDecimal;
-import java.util.Random;
+import java.time.LocalDateTime;
+import java.util.random.RandomGenerator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,6 +14,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.poly.dto.ApiResponse;
+import com.poly.dto.AutoExploreResponse;
 import com.poly.dto.MinigameAdventureResponse;
 import com.poly.dto.MinigameDataDTO;
 import com.poly.model.CharacterGame;
@@ -20,7 +22,6 @@ import com.poly.model.Enemy;
 import com.poly.model.User;
 import com.poly.model.Wallet;
 import com.poly.repository.CharacterGameRepository;
-import com.poly.repository.EnemyRepository;
 import com.poly.repository.UserRepository;
 import com.poly.repository.WalletRepository;
 
@@ -28,24 +29,22 @@ import com.poly.repository.WalletRepository;
 public class MinigameService {
 
     private static final Logger logger = LoggerFactory.getLogger(MinigameService.class);
-    private final Random random = new Random();
 
     // --- Configuration ---
     private static final int ADVENTURE_ENERGY_COST = 10;
-    private static final int REST_ENERGY_GAIN = 20;
-    private static final int REST_HP_GAIN = 10;
-    // Encounter Probabilities
-    private static final double ENEMY_CHANCE = 0.20; // 20%
-    private static final double RESOURCE_CHANCE = 0.40; // 40% (Total: 60%)
-    private static final double GOLD_CHANCE = 0.25; // 25% (Total: 85%)
-    // Remaining 15% is EXP_CHANCE
-
+    public static final int MAX_AUTO_EXPLORE_STEPS = 50; // Also bounds admin replays
+    static final int REST_ENERGY_GAIN = 20; // Package-private: also used by BalanceSimulator
+    static final int REST_HP_GAIN = 10;
+    // Encounter odds and gold/EXP ranges live in the "adventure" table of encounters.json
 
     @Autowired private UserRepository userRepository;
     @Autowired private CharacterGameRepository characterGameRepo;
     @Autowired private WalletRepository walletRepo;
-    @Autowired private EnemyRepository enemyRepo; // For enemy encounters
+    @Autowired private EnemyCatalog enemyCatalog; // For enemy encounters
     @Autowired private CharacterService characterService; // For level up checks
+    @Autowired private GameRandom gameRandom;
+    @Autowired private ResourceRegistry resourceRegistry; // For resource encounters
+    @Autowired private EncounterTables encounterTables; // Encounter odds
 
     private User getCurrentUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -69,66 +68,71 @@ public class MinigameService {
         CharacterGame character = getCharacter(user.getUserId());
         Wallet wallet = walletRepo.findByUser_UserId(user.getUserId())
                 .orElseThrow(() -> new RuntimeException("Wallet not found"));
+        // Gold is added with atomic increments; the loaded wallet is only read
+        BigDecimal balance = wallet.getBalance();
 
         // 1. Check Energy
-        if (character.getEnergy() < ADVENTURE_ENERGY_COST) {
+        LocalDateTime now = LocalDateTime.now();
+        if (character.currentEnergy(now) < ADVENTURE_ENERGY_COST) {
             logger.warn("User {} tried to adventure with insufficient energy.", user.getUsername());
             return ApiResponse.error("Không đủ năng lượng! Hãy nghỉ ngơi.");
         }
+        character.applyRegen(now);
         character.setEnergy(character.getEnergy() - ADVENTURE_ENERGY_COST);
         logger.debug("User {} starts adventure, energy reduced to {}", user.getUsername(), character.getEnergy());
 
-        double encounterRoll = random.nextDouble();
+        long seed = gameRandom.newSeed();
+        AdventureRoll roll = rollAdventure(character.getLevel(), gameRandom.forSeed(seed));
         MinigameAdventureResponse response = new MinigameAdventureResponse();
+        response.setSeed(GameRandom.format(seed));
         boolean stateChanged = true; // Assume state changed initially (energy deduction)
 
-        // 2. Determine Encounter Type
-        if (encounterRoll < ENEMY_CHANCE) { // Enemy Encounter
-            Enemy enemy = enemyRepo.findRandomEnemy()
-                    .orElseThrow(() -> new RuntimeException("Không có quái vật nào trong CSDL!"));
-            response.setMessage("Bạn gặp " + enemy.getName() + "!");
-            response.setEncounterIcon(enemy.getEmojiIcon());
-            response.setEncounterRedirect("/battle/" + enemy.getEnemyId()); // Redirect to battle page
-            logger.info("User {} encountered enemy {}", user.getUsername(), enemy.getName());
-            // State saved later before returning DTO
-
-        } else if (encounterRoll < ENEMY_CHANCE + RESOURCE_CHANCE) { // Resource Encounter
-            String[] resources = {"stone", "wood", "fish", "ore"}; // Available resources
-            String[] icons = {"🪨", "🌲", "🐟", "⛏️"};
-            int index = random.nextInt(resources.length);
-            String foundResource = resources[index];
-
-            response.setMessage("Bạn tìm thấy khu vực có " + getResourceName(foundResource) + "!");
-            response.setEncounterIcon(icons[index]);
-            response.setEncounterRedirect("/gathering/" + foundResource); // Redirect to gathering page
-            logger.info("User {} found resource node: {}", user.getUsername(), foundResource);
-            // State saved later before returning DTO
-
-        } else if (encounterRoll < ENEMY_CHANCE + RESOURCE_CHANCE + GOLD_CHANCE) { // Gold Found
-            int goldGained = random.nextInt(11) + 10; // 10-20 gold
-            wallet.setBalance(wallet.getBalance().add(new BigDecimal(goldGained)));
-            walletRepo.save(wallet); // Save wallet changes immediately
-            response.setMessage("Bạn nhặt được " + goldGained + " vàng!");
-            response.setEncounterIcon("🪙");
-            logger.info("User {} found {} gold", user.getUsername(), goldGained);
-
-        } else { // EXP Found
-            int expGained = random.nextInt(21) + 15; // 15-35 EXP
-            character.setExperience(character.getExperience() + expGained);
-            response.setMessage("Bạn nhận được " + expGained + " EXP!");
-            response.setEncounterIcon("✨");
-            logger.info("User {} gained {} EXP", user.getUsername(), expGained);
-
-            // Check for Level Up after gaining EXP
-            boolean leveledUp = characterService.checkAndProcessLevelUp(character.getCharacterId());
-            if (leveledUp) {
-                // Fetch updated level to include in message
-                CharacterGame updatedCharacter = characterGameRepo.findById(character.getCharacterId()).orElse(character);
-                 response.setMessage(response.getMessage() + String.format(" Chúc mừng lên cấp %d!", updatedCharacter.getLevel()));
-                 // Character state saved within checkAndProcessLevelUp
-                 stateChanged = false; // Prevent double saving if level up occurred
+        // 2. Apply Encounter
+        switch (roll.getType()) {
+            case ENEMY -> { // Enemy Encounter
+                Enemy enemy = roll.getEnemy();
+                response.setMessage("Bạn gặp " + enemy.getName() + "!");
+                response.setEncounterIcon(enemy.getEmojiIcon());
+                response.setEncounterRedirect("/battle/" + enemy.getEnemyId()); // Redirect to battle page
+                logger.info("User {} encountered enemy {}", user.getUsername(), enemy.getName());
+                // State saved later before returning DTO
+            }
+            case RESOURCE -> { // Resource Encounter
+                ResourceRegistry.Resource found = roll.getResource();
+                String foundResource = found.getType();
+                response.setMessage("Bạn tìm thấy khu vực có " + found.getName() + "!");
+                response.setEncounterIcon(found.getIcon());
+                response.setEncounterRedirect("/gathering/" + foundResource); // Redirect to gathering page
+                logger.info("User {} found resource node: {}", user.getUsername(), foundResource);
+                // State saved later before returning DTO
+            }
+            case GOLD -> { // Gold Found
+                int goldGained = roll.getAmount();
+                walletRepo.credit(user.getUserId(), new BigDecimal(goldGained));
+                balance = balance.add(new BigDecimal(goldGained));
+                response.setMessage("Bạn nhặt được " + goldGained + " vàng!");
+                response.setEncounterIcon("🪙");
+                logger.info("User {} found {} gold", user.getUsername(), goldGained);
+            }
+            case EXP -> { // EXP Found
+                int expGained = roll.getAmount();
+                character.setExperience(character.getExperience() + expGained);
+                response.setMessage("Bạn nhận được " + expGained + " EXP!");
+                response.setEncounterIcon("✨");
+                logger.info("User {} gained {} EXP", user.getUsername(), expGained);
+
+                // Check for Level Up after gaining EXP
+                boolean leveledUp = characterService.checkAndProcessLevelUp(character.getCharacterId());
+                if (leveledUp) {
+                    // Fetch updated level to include in message
+                    CharacterGame updatedCharacter = characterGameRepo.findById(character.getCharacterId()).orElse(character);
+                     response.setMessage(response.getMessage() + String.format(" Chúc mừng lên cấp %d!", updatedCharacter.getLevel()));
+                     // Character state saved within checkAndProcessLevelUp
+                     stateChanged = false; // Prevent double saving if level up occurred
+                }
             }
         }
+        gameRandom.record("adventure", user.getUserId(), seed, roll.describe());
 
         // 3. Save character state if it changed and wasn't saved by level up
         if (stateChanged) {
@@ -137,12 +141,98 @@ public class MinigameService {
 
         // 4. Create and return response DTO
         long expToNext = characterService.calculateExpForNextLevel(character.getLevel());
-        response.setUpdatedStats(MinigameDataDTO.from(character, wallet.getBalance(), expToNext));
+        response.setUpdatedStats(MinigameDataDTO.from(character, balance, expToNext));
+        return ApiResponse.success(response.getMessage(), response);
+    }
+
+    /**
+     * Runs up to {@code maxSteps} adventure steps while energy lasts, stopping at the
+     * first enemy or resource node. Gold and EXP of all steps are applied with one
+     * wallet and one character write, and level up is checked once at the end.
+     */
+    @Transactional
+    public ApiResponse<AutoExploreResponse> doAutoExplore(int maxSteps) {
+        if (maxSteps < 1 || maxSteps > MAX_AUTO_EXPLORE_STEPS) {
+            return ApiResponse.error("Số bước phải từ 1 đến " + MAX_AUTO_EXPLORE_STEPS + "!");
+        }
+        User user = getCurrentUser();
+        CharacterGame character = getCharacter(user.getUserId());
+        Wallet wallet = walletRepo.findByUser_UserId(user.getUserId())
+                .orElseThrow(() -> new RuntimeException("Wallet not found"));
+        // Gold is added with atomic increments; the loaded wallet is only read
+        BigDecimal balance = wallet.getBalance();
+
+        LocalDateTime now = LocalDateTime.now();
+        if (character.currentEnergy(now) < ADVENTURE_ENERGY_COST) {
+            return ApiResponse.error("Không đủ năng lượng! Hãy nghỉ ngơi.");
+        }
+        character.applyRegen(now);
+
+        long seed = gameRandom.newSeed();
+        RandomGenerator rng = gameRandom.forSeed(seed);
+        AutoExploreResponse response = new AutoExploreResponse();
+        response.setSeed(GameRandom.format(seed));
+
+        // Level only changes after the run, so every step rolls against the starting level
+        int level = character.getLevel();
+        AdventureRoll stop = null;
+        while (response.getStepsTaken() < maxSteps && character.getEnergy() >= ADVENTURE_ENERGY_COST) {
+            character.setEnergy(character.getEnergy() - ADVENTURE_ENERGY_COST);
+            AdventureRoll roll = rollAdventure(level, rng);
+            response.setStepsTaken(response.getStepsTaken() + 1);
+            response.getSteps().add(roll.describe());
+            if (roll.getType() == EncounterType.GOLD) {
+                response.setGoldGained(response.getGoldGained() + roll.getAmount());
+            } else if (roll.getType() == EncounterType.EXP) {
+                response.setExpGained(response.getExpGained() + roll.getAmount());
+            } else {
+                stop = roll;
+                break;
+            }
+        }
+        response.setEnergySpent(response.getStepsTaken() * ADVENTURE_ENERGY_COST);
+
+        if (response.getGoldGained() > 0) {
+            walletRepo.credit(user.getUserId(), new BigDecimal(response.getGoldGained()));
+            balance = balance.add(new BigDecimal(response.getGoldGained()));
+        }
+        if (response.getExpGained() > 0) {
+            character.setExperience(character.getExperience() + response.getExpGained());
+            // Same persistence context, so the level up sees the energy and EXP set above
+            response.setLevelUp(characterService.checkAndProcessLevelUp(character.getCharacterId()));
+        }
+        if (!response.isLevelUp()) {
+            characterGameRepo.save(character);
+        }
+        gameRandom.record("auto-explore", user.getUserId(), seed, String.join(",", response.getSteps()));
+
+        StringBuilder message = new StringBuilder(String.format("Phiêu lưu %d bước: +%d vàng, +%d EXP.",
+                response.getStepsTaken(), response.getGoldGained(), response.getExpGained()));
+        if (response.isLevelUp()) {
+            message.append(String.format(" Chúc mừng lên cấp %d!", character.getLevel()));
+        }
+        if (stop != null && stop.getType() == EncounterType.ENEMY) {
+            message.append(" Bạn gặp ").append(stop.getEnemy().getName()).append("!");
+            response.setEncounterIcon(stop.getEnemy().getEmojiIcon());
+            response.setEncounterRedirect("/battle/" + stop.getEnemy().getEnemyId());
+        } else if (stop != null) {
+            message.append(" Bạn tìm thấy khu vực có ").append(stop.getResource().getName()).append("!");
+            response.setEncounterIcon(stop.getResource().getIcon());
+            response.setEncounterRedirect("/gathering/" + stop.getResource().getType());
+        }
+        response.setMessage(message.toString());
+        logger.info("User {} auto-explored {} steps: +{} gold, +{} EXP, stop={}", user.getUsername(),
+                response.getStepsTaken(), response.getGoldGained(), response.getExpGained(),
+                stop != null ? stop.describe() : "none");
+
+        long expToNext = characterService.calculateExpForNextLevel(character.getLevel());
+        response.setUpdatedStats(MinigameDataDTO.from(character, balance, expToNext));
         return ApiResponse.success(response.getMessage(), response);
     }
 
     /**
-     * Handles the "Rest" action. Recovers HP and Energy.
+     * Handles the "Rest" action: an optional instant boost of HP and Energy.
+     * Both also regenerate over time on their own (see CharacterGame#applyRegen).
      */
     @Transactional
     public ApiResponse<MinigameDataDTO> doRest() {
@@ -150,8 +240,9 @@ public class MinigameService {
         CharacterGame character = getCharacter(user.getUserId());
         Wallet wallet = walletRepo.findByUser_UserId(user.getUserId()).orElseThrow();
 
-        boolean alreadyFull = character.getEnergy() >= character.getMaxEnergy() &&
-                              character.getHealth() >= character.getMaxHealth();
+        LocalDateTime now = LocalDateTime.now();
+        boolean alreadyFull = character.currentEnergy(now) >= character.getMaxEnergy() &&
+                              character.currentHealth(now) >= character.getMaxHealth();
 
         if (alreadyFull) {
             logger.debug("User {} attempted to rest while already full.", user.getUsername());
@@ -159,6 +250,7 @@ public class MinigameService {
             return ApiResponse.success("Năng lượng và Máu đã đầy!", MinigameDataDTO.from(character, wallet.getBalance(), expToNext)); // Return success but indicate no change
         }
 
+        character.applyRegen(now);
         int energyGained = Math.min(REST_ENERGY_GAIN, character.getMaxEnergy() - character.getEnergy());
         int hpGained = Math.min(REST_HP_GAIN, character.getMaxHealth() - character.getHealth());
 
@@ -173,14 +265,59 @@ public class MinigameService {
                                 MinigameDataDTO.from(character, wallet.getBalance(), expToNext));
     }
 
-    // Helper to get resource name for messages
-    private String getResourceName(String resourceType) {
-        return switch (resourceType) {
-            case "stone" -> "Đá";
-            case "wood" -> "Gỗ";
-            case "fish" -> "Cá";
-            case "ore" -> "Quặng";
-            default -> "Tài nguyên";
+    /**
+     * Decides the outcome of one adventure step. Reads nothing but the level, the
+     * enemy catalog and the stream, so an outcome can be replayed from its seed.
+     */
+    public AdventureRoll rollAdventure(int level, RandomGenerator rng) {
+        EncounterTables.Outcome outcome = encounterTables.roll(EncounterTables.ADVENTURE, level, rng);
+        EncounterType type = EncounterType.valueOf(outcome.getType());
+        return switch (type) {
+            case ENEMY -> {
+                Enemy enemy = enemyCatalog.randomEnemyForLevel(level, rng)
+                        .orElseThrow(() -> new RuntimeException("Không có quái vật nào trong CSDL!"));
+                yield new AdventureRoll(type, enemy, null, 0);
+            }
+            case RESOURCE -> {
+                if (resourceRegistry.size() == 0) {
+                    throw new RuntimeException("Không có tài nguyên nào trong CSDL!");
+                }
+                yield new AdventureRoll(type, null, resourceRegistry.get(rng.nextInt(resourceRegistry.size())), 0);
+            }
+            case GOLD, EXP -> new AdventureRoll(type, null, null, outcome.rollAmount(rng));
         };
     }
+
+    public enum EncounterType { ENEMY, RESOURCE, GOLD, EXP }
+
+    /**
+     * Outcome of one adventure step, before it is applied to the character.
+     */
+    public static final class AdventureRoll {
+        private final EncounterType type;
+        private final Enemy enemy;
+        private final ResourceRegistry.Resource resource;
+        private final int amount;
+
+        AdventureRoll(EncounterType type, Enemy enemy, ResourceRegistry.Resource resource, int amount) {
+            this.type = type;
+            this.enemy = enemy;
+            this.resource = resource;
+            this.amount = amount;
+        }
+
+        public EncounterType getType() { return type; }
+        public Enemy getEnemy() { return enemy; }
+        public ResourceRegistry.Resource getResource() { return resource; }
+        public int getAmount() { return amount; }
+
+        public String describe() {
+            return switch (type) {
+                case ENEMY -> "enemy=" + enemy.getEnemyId();
+                case RESOURCE -> "resource=" + resource.getType();
+                case GOLD -> "gold=" + amount;
+                case EXP -> "exp=" + amount;
+            };
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,332 @@
+package com.poly.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.poly.model.MarketListing;
+import com.poly.repository.MarketListingRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * In-memory order book of active sell listings, one book per item, ordered by
+ * unit price, then listing time, then listing id. Built from market_listing at
+ * startup and kept in step by {@link MarketListingEvent}s published after each
+ * listing change commits.
+ * <p>
+ * Buy orders take listings out of the book with {@link #reserve} before they are
+ * written, so two orders never match the same listing; the caller hands them to
+ * {@link #release} when its transaction completes, which puts back whatever is
+ * still active.
+ */
+@Service
+public class OrderBook {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderBook.class);
+
+    @Autowired private MarketListingRepository listingRepo;
+
+    private volatile Map<Integer, ItemBook> books = new ConcurrentHashMap<>();
+    private volatile Map<Integer, Integer> itemByListing = new ConcurrentHashMap<>();
+    // Listing id -> whether it was sold or cancelled while reserved; also guards reserve/release
+    private final Map<Integer, Boolean> reserved = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * Rebuilds every book from the active listings and swaps them in.
+     * Meant for startup and recovery after listings were changed outside the app.
+     * @return the number of listings loaded
+     */
+    @Transactional(readOnly = true)
+    public int rebuild() {
+        List<MarketListing> active = listingRepo.findByStatus("Active");
+        Map<Integer, ItemBook> newBooks = new ConcurrentHashMap<>();
+        Map<Integer, Integer> newIndex = new ConcurrentHashMap<>();
+        for (MarketListing listing : active) {
+            if (isReserved(listing.getListingId())) {
+                continue;
+            }
+            Entry entry = Entry.of(listing);
+            newBooks.computeIfAbsent(entry.itemId, id -> new ItemBook()).add(entry);
+            newIndex.put(entry.listingId, entry.itemId);
+        }
+        books = newBooks;
+        itemByListing = newIndex;
+        logger.info("Order book built: {} active listings, {} items", active.size(), newBooks.size());
+        return active.size();
+    }
+
+    private boolean isReserved(Integer listingId) {
+        synchronized (reserved) {
+            return reserved.containsKey(listingId);
+        }
+    }
+
+    /**
+     * Cheapest listing of an item by unit price, oldest first on ties.
+     */
+    public Optional<Entry> best(Integer itemId) {
+        ItemBook book = books.get(itemId);
+        return book == null ? Optional.empty() : Optional.ofNullable(book.best);
+    }
+
+    /**
+     * Up to {@code limit} listings of an item in match order.
+     */
+    public List<Entry> depth(Integer itemId, int limit) {
+        ItemBook book = books.get(itemId);
+        return book == null ? List.of() : book.top(limit);
+    }
+
+    public int totalQuantity(Integer itemId) {
+        ItemBook book = books.get(itemId);
+        return book == null ? 0 : book.totalQuantity;
+    }
+
+    /**
+     * Takes the listings that fill a buy order out of the book, in price-time order:
+     * listings priced above {@code maxUnitPrice} per unit end the match and the buyer's
+     * own listings are skipped. The last listing may be only partly filled; it is still
+     * taken out whole. Every reservation must be handed back to {@link #release} once
+     * the order's transaction completes, committed or not.
+     * @return the reserved fills, possibly less than the quantity asked for
+     */
+    public List<Fill> reserve(Integer itemId, int quantity, BigDecimal maxUnitPrice, Integer buyerId) {
+        ItemBook book = books.get(itemId);
+        if (book == null) {
+            return List.of();
+        }
+        List<Fill> taken = new ArrayList<>();
+        synchronized (reserved) {
+            synchronized (book) {
+                int remaining = quantity;
+                for (Entry entry : book.entries) {
+                    if (remaining == 0 || !entry.unitPriceAtMost(maxUnitPrice)) {
+                        break;
+                    }
+                    if (entry.sellerId.equals(buyerId)) {
+                        continue;
+                    }
+                    int fillQuantity = Math.min(entry.quantity, remaining);
+                    taken.add(new Fill(entry, fillQuantity));
+                    remaining -= fillQuantity;
+                }
+                taken.forEach(fill -> book.remove(fill.entry));
+            }
+            for (Fill fill : taken) {
+                itemByListing.remove(fill.entry.listingId);
+                reserved.put(fill.entry.listingId, Boolean.FALSE);
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Ends the reservations of a buy order. Listings that were sold or cancelled while
+     * reserved, by this order or anyone else, are dropped; the others are read again
+     * and go back into the book as they are now if they are still active.
+     */
+    public void release(List<Fill> fills) {
+        for (Fill fill : fills) {
+            Integer listingId = fill.entry.listingId;
+            // Read while still reserved, so a sale committing meanwhile is recorded as closed
+            Entry current = listingRepo.findById(listingId)
+                    .filter(listing -> "Active".equals(listing.getStatus()))
+                    .map(Entry::of)
+                    .orElse(null);
+            synchronized (reserved) {
+                Boolean closed = reserved.remove(listingId);
+                if (current != null && !Boolean.TRUE.equals(closed)) {
+                    add(current);
+                }
+            }
+        }
+    }
+
+    int reservedCount() {
+        synchronized (reserved) {
+            return reserved.size();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onListingEvent(MarketListingEvent event) {
+        synchronized (reserved) {
+            if (reserved.containsKey(event.getListingId())) {
+                // Reserved listings come back through release, which reads their current state
+                if (event.getOpened() == null) {
+                    reserved.put(event.getListingId(), Boolean.TRUE);
+                }
+                return;
+            }
+            if (event.getOpened() != null) {
+                add(event.getOpened());
+                return;
+            }
+            Integer itemId = itemByListing.remove(event.getListingId());
+            ItemBook book = itemId == null ? null : books.get(itemId);
+            if (book != null) {
+                book.removeById(event.getListingId());
+            }
+        }
+    }
+
+    private void add(Entry entry) {
+        itemByListing.put(entry.listingId, entry.itemId);
+        books.computeIfAbsent(entry.itemId, id -> new ItemBook()).add(entry);
+    }
+
+    /**
+     * Active listings of one item. All access holds the book's monitor; {@link #best}
+     * is also published through a volatile field for lock-free reads.
+     */
+    private static final class ItemBook {
+        private static final Comparator<Entry> PRICE_TIME = (a, b) -> {
+            int byPrice = a.compareUnitPrice(b);
+            if (byPrice != 0) {
+                return byPrice;
+            }
+            int byTime = a.createdAt.compareTo(b.createdAt);
+            return byTime != 0 ? byTime : a.listingId.compareTo(b.listingId);
+        };
+
+        final TreeSet<Entry> entries = new TreeSet<>(PRICE_TIME);
+        final Map<Integer, Entry> byId = new HashMap<>();
+        volatile Entry best;
+        volatile int totalQuantity;
+
+        synchronized void add(Entry entry) {
+            Entry previous = byId.put(entry.listingId, entry);
+            if (previous != null) {
+                entries.remove(previous);
+                totalQuantity -= previous.quantity;
+            }
+            entries.add(entry);
+            totalQuantity += entry.quantity;
+            best = entries.first();
+        }
+
+        synchronized void remove(Entry entry) {
+            removeById(entry.listingId);
+        }
+
+        synchronized void removeById(Integer listingId) {
+            Entry entry = byId.remove(listingId);
+            if (entry != null) {
+                entries.remove(entry);
+                totalQuantity -= entry.quantity;
+                best = entries.isEmpty() ? null : entries.first();
+            }
+        }
+
+        synchronized List<Entry> top(int limit) {
+            List<Entry> result = new ArrayList<>(Math.min(limit, entries.size()));
+            for (Entry entry : entries) {
+                if (result.size() == limit) {
+                    break;
+                }
+                result.add(entry);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Part or all of one listing matched by a buy order.
+     */
+    public static final class Fill {
+        private final Entry entry;
+        private final int quantity;
+
+        Fill(Entry entry, int quantity) {
+            this.entry = entry;
+            this.quantity = quantity;
+        }
+
+        public Entry getEntry() { return entry; }
+        public int getQuantity() { return quantity; }
+        public BigDecimal getCost() { return entry.costOf(quantity); }
+    }
+
+    /**
+     * Immutable copy of one active listing. {@code price} is the price of the whole
+     * listing; unit prices are compared exactly by cross-multiplying.
+     */
+    public static final class Entry {
+        private final Integer listingId;
+        private final Integer itemId;
+        private final Integer sellerId;
+        private final int quantity;
+        private final BigDecimal price;
+        private final LocalDateTime createdAt;
+
+        public Entry(Integer listingId, Integer itemId, Integer sellerId, int quantity, BigDecimal price,
+                     LocalDateTime createdAt) {
+            this.listingId = listingId;
+            this.itemId = itemId;
+            this.sellerId = sellerId;
+            this.quantity = quantity;
+            this.price = price;
+            this.createdAt = createdAt != null ? createdAt : LocalDateTime.MIN;
+        }
+
+        public static Entry of(MarketListing listing) {
+            return new Entry(listing.getListingId(), listing.getItem().getItemId(), listing.getSeller().getUserId(),
+                    listing.getQuantity(), listing.getPrice(), listing.getCreatedAt());
+        }
+
+        int compareUnitPrice(Entry other) {
+            return price.multiply(BigDecimal.valueOf(other.quantity))
+                    .compareTo(other.price.multiply(BigDecimal.valueOf(quantity)));
+        }
+
+        boolean unitPriceAtMost(BigDecimal maxUnitPrice) {
+            return price.compareTo(maxUnitPrice.multiply(BigDecimal.valueOf(quantity))) <= 0;
+        }
+
+        public Integer getListingId() { return listingId; }
+        public Integer getItemId() { return itemId; }
+        public Integer getSellerId() { return sellerId; }
+        public int getQuantity() { return quantity; }
+        public BigDecimal getPrice() { return price; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+
+        /**
+         * Price of {@code units} of this listing, pro rata and rounded to the cent.
+         */
+        public BigDecimal costOf(int units) {
+            return costOf(price, quantity, units);
+        }
+
+        public static BigDecimal costOf(BigDecimal price, int quantity, int units) {
+            if (units == quantity) {
+                return price;
+            }
+            return price.multiply(BigDecimal.valueOf(units)).divide(BigDecimal.valueOf(quantity), 2, RoundingMode.HALF_UP);
+        }
+
+        public BigDecimal getUnitPrice() {
+            return price.divide(BigDecimal.valueOf(quantity), 2, RoundingMode.HALF_UP);
+        }
+    }
+}
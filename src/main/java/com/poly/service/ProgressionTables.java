@@ -0,0 +1,260 @@
+package com.poly.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Character and gathering progression, precomputed into primitive arrays at startup:
+ * EXP needed per level, cumulative EXP and per-level stat gains.
+ * Arrays are indexed by level (index 0 unused). EXP curves are
+ * base * rate^(level - 1). Levels past {@code game.progression.max-level}
+ * cannot be reached.
+ * <p>
+ * Multi-level gains are resolved with one binary search over cumulative EXP
+ * instead of a pow-per-level loop.
+ */
+@Component
+public class ProgressionTables {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProgressionTables.class);
+
+    // Base stat increases per level
+    private static final int POINTS_PER_LEVEL = 3;
+    private static final int HP_GAIN_PER_LEVEL = 10;
+    private static final int ATK_GAIN_PER_LEVEL = 1;
+    private static final int DEF_GAIN_PER_LEVEL = 1;
+
+    @Value("${game.progression.max-level:100}")
+    private int maxLevel;
+    @Value("${game.progression.character.base-exp:100}")
+    private double characterBaseExp;
+    @Value("${game.progression.character.growth-rate:1.3}")
+    private double characterGrowthRate;
+    @Value("${game.progression.gathering.base-exp:50}")
+    private double gatheringBaseExp;
+    @Value("${game.progression.gathering.growth-rate:1.2}")
+    private double gatheringGrowthRate;
+
+    private Curve character;
+    private Curve gathering;
+    // Gain when reaching a level, and running totals from level 1 for O(1) range sums
+    private int[] hpGain, atkGain, defGain, pointsGain;
+    private long[] hpGainTotal, atkGainTotal, defGainTotal, pointsGainTotal;
+    private Map<String, Object> clientView;
+    private String etag;
+
+    @PostConstruct
+    public void init() {
+        character = new Curve(characterBaseExp, characterGrowthRate, maxLevel);
+        gathering = new Curve(gatheringBaseExp, gatheringGrowthRate, maxLevel);
+
+        hpGain = new int[maxLevel + 1];
+        atkGain = new int[maxLevel + 1];
+        defGain = new int[maxLevel + 1];
+        pointsGain = new int[maxLevel + 1];
+        for (int level = 2; level <= maxLevel; level++) {
+            hpGain[level] = HP_GAIN_PER_LEVEL;
+            atkGain[level] = ATK_GAIN_PER_LEVEL;
+            defGain[level] = DEF_GAIN_PER_LEVEL;
+            pointsGain[level] = POINTS_PER_LEVEL;
+        }
+        hpGainTotal = runningTotal(hpGain);
+        atkGainTotal = runningTotal(atkGain);
+        defGainTotal = runningTotal(defGain);
+        pointsGainTotal = runningTotal(pointsGain);
+
+        clientView = buildClientView();
+        etag = computeEtag(clientView);
+        logger.info("Progression tables built up to level {}", maxLevel);
+    }
+
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * EXP needed to go from the start of this level to the next.
+     */
+    public long expForNextLevel(int level) {
+        return character.expForNext(level);
+    }
+
+    public long gatheringExpForNextLevel(int level) {
+        return gathering.expForNext(level);
+    }
+
+    /**
+     * Total EXP from the start of level 1 to the start of this level.
+     */
+    public long cumulativeExp(int level) {
+        return character.cumulativeExp[Math.max(1, Math.min(level, maxLevel))];
+    }
+
+    public long gatheringCumulativeExp(int level) {
+        return gathering.cumulativeExp[Math.max(1, Math.min(level, maxLevel))];
+    }
+
+    /**
+     * Resolves EXP gained inside a level into the resulting level and leftover EXP,
+     * with the stats granted by every level passed on the way.
+     */
+    public LevelGain resolveCharacter(int level, long expIntoLevel) {
+        LevelGain gain = character.resolve(level, expIntoLevel);
+        if (gain.levelsGained > 0) {
+            gain.hp = (int) (hpGainTotal[gain.newLevel] - hpGainTotal[level]);
+            gain.atk = (int) (atkGainTotal[gain.newLevel] - atkGainTotal[level]);
+            gain.def = (int) (defGainTotal[gain.newLevel] - defGainTotal[level]);
+            gain.points = (int) (pointsGainTotal[gain.newLevel] - pointsGainTotal[level]);
+        }
+        return gain;
+    }
+
+    public LevelGain resolveGathering(int level, long expIntoLevel) {
+        return gathering.resolve(level, expIntoLevel);
+    }
+
+    /**
+     * Tables for the client, which computes progress bars from them.
+     */
+    public Map<String, Object> getClientView() {
+        return clientView;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    private Map<String, Object> buildClientView() {
+        Map<String, Object> characterView = new LinkedHashMap<>();
+        characterView.put("expToNext", character.expToNext);
+        characterView.put("cumulativeExp", character.cumulativeExp);
+        characterView.put("hpGain", hpGain);
+        characterView.put("atkGain", atkGain);
+        characterView.put("defGain", defGain);
+        characterView.put("pointsGain", pointsGain);
+
+        Map<String, Object> gatheringView = new LinkedHashMap<>();
+        gatheringView.put("expToNext", gathering.expToNext);
+        gatheringView.put("cumulativeExp", gathering.cumulativeExp);
+
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("maxLevel", maxLevel);
+        view.put("character", characterView);
+        view.put("gathering", gatheringView);
+        return view;
+    }
+
+    private String computeEtag(Map<String, Object> view) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(maxLevel).getBytes(StandardCharsets.UTF_8));
+            digest.update(Arrays.toString(character.expToNext).getBytes(StandardCharsets.UTF_8));
+            digest.update(Arrays.toString(gathering.expToNext).getBytes(StandardCharsets.UTF_8));
+            digest.update(Arrays.toString(hpGain).getBytes(StandardCharsets.UTF_8));
+            digest.update(Arrays.toString(atkGain).getBytes(StandardCharsets.UTF_8));
+            digest.update(Arrays.toString(defGain).getBytes(StandardCharsets.UTF_8));
+            digest.update(Arrays.toString(pointsGain).getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long[] runningTotal(int[] perLevel) {
+        long[] total = new long[perLevel.length];
+        for (int i = 1; i < perLevel.length; i++) {
+            total[i] = total[i - 1] + perLevel[i];
+        }
+        return total;
+    }
+
+    /**
+     * One EXP curve: expToNext[L] is the EXP from the start of level L to L + 1,
+     * cumulativeExp[L] the total EXP from the start of level 1 to the start of level L.
+     */
+    private static final class Curve {
+        final long[] expToNext;
+        final long[] cumulativeExp;
+        final double base;
+        final double rate;
+
+        Curve(double base, double rate, int maxLevel) {
+            this.base = base;
+            this.rate = rate;
+            expToNext = new long[maxLevel + 1];
+            cumulativeExp = new long[maxLevel + 1];
+            for (int level = 1; level <= maxLevel; level++) {
+                expToNext[level] = formula(level);
+                if (level > 1) {
+                    cumulativeExp[level] = saturatedAdd(cumulativeExp[level - 1], expToNext[level - 1]);
+                }
+            }
+        }
+
+        long formula(int level) {
+            // Formula: base * (rate ^ (level - 1)); (long) saturates at Long.MAX_VALUE
+            return (long) Math.floor(base * Math.pow(rate, level - 1));
+        }
+
+        long expForNext(int level) {
+            if (level < 1) return (long) base; // Should not happen, but safeguard
+            return level < expToNext.length ? expToNext[level] : formula(level);
+        }
+
+        LevelGain resolve(int level, long expIntoLevel) {
+            int maxLevel = expToNext.length - 1;
+            if (level < 1 || level >= maxLevel) {
+                return new LevelGain(level, 0, expIntoLevel);
+            }
+            long total = saturatedAdd(cumulativeExp[level], expIntoLevel);
+            // Highest level whose start is covered by the total EXP
+            int index = Arrays.binarySearch(cumulativeExp, level, maxLevel + 1, total);
+            int newLevel = index >= 0 ? index : -index - 2;
+            // Equal thresholds can only come from saturation; take the highest match
+            while (newLevel < maxLevel && cumulativeExp[newLevel + 1] <= total) newLevel++;
+            return new LevelGain(newLevel, newLevel - level, total - cumulativeExp[newLevel]);
+        }
+
+        private static long saturatedAdd(long a, long b) {
+            long sum = a + b;
+            return ((a ^ sum) & (b ^ sum)) < 0 ? Long.MAX_VALUE : sum;
+        }
+    }
+
+    /**
+     * Result of resolving an EXP gain: the new level, EXP left inside it and,
+     * for characters, the stats granted by the levels passed.
+     */
+    public static final class LevelGain {
+        final int newLevel;
+        final int levelsGained;
+        final long remainingExp;
+        int hp, atk, def, points;
+
+        LevelGain(int newLevel, int levelsGained, long remainingExp) {
+            this.newLevel = newLevel;
+            this.levelsGained = levelsGained;
+            this.remainingExp = remainingExp;
+        }
+
+        public int getNewLevel() { return newLevel; }
+        public int getLevelsGained() { return levelsGained; }
+        public long getRemainingExp() { return remainingExp; }
+        public int getHp() { return hp; }
+        public int getAtk() { return atk; }
+        public int getDef() { return def; }
+        public int getPoints() { return points; }
+    }
+}
@@ -0,0 +1,167 @@
+package com.poly.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.poly.model.GatheringResource;
+import com.poly.model.Item;
+import com.poly.repository.GatheringResourceRepository;
+import com.poly.repository.ItemRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * In-memory registry of gatherable resources, loaded from gathering_resource at
+ * startup and on {@link #reload()}. Each resource gets a dense index (its position
+ * in sort order), so callers can keep per-resource data in plain arrays.
+ * The table is seeded with the original four resources when it is empty.
+ */
+@Service
+public class ResourceRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResourceRegistry.class);
+
+    // Seed rows: type, item name, display name, skill name, icon
+    private static final String[][] DEFAULT_RESOURCES = {
+            {"stone", "Đá thô", "Đá", "Đào đá", "🪨"},
+            {"wood", "Gỗ mục", "Gỗ", "Chặt gỗ", "🌲"},
+            {"fish", "Cá nhỏ", "Cá", "Câu cá", "🐟"},
+            {"ore", "Quặng đồng", "Quặng", "Khai khoáng", "⛏️"},
+    };
+
+    @Autowired private GatheringResourceRepository resourceRepo;
+    @Autowired private ItemRepository itemRepo;
+
+    private volatile Snapshot snapshot = new Snapshot(new Resource[0]);
+
+    @PostConstruct
+    public void init() {
+        seedIfEmpty();
+        reload();
+    }
+
+    /**
+     * Reloads all resources and atomically replaces the current registry.
+     * @return the number of resources loaded
+     */
+    @Transactional(readOnly = true)
+    public int reload() {
+        List<GatheringResource> rows = resourceRepo.findAllByOrderBySortOrderAscResourceTypeAsc();
+        Resource[] resources = new Resource[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            resources[i] = new Resource(i, rows.get(i));
+        }
+        snapshot = new Snapshot(resources);
+        logger.info("Resource registry loaded: {} resources", resources.length);
+        return resources.length;
+    }
+
+    public Optional<Resource> find(String resourceType) {
+        return Optional.ofNullable(snapshot.byType.get(resourceType));
+    }
+
+    public Resource require(String resourceType) {
+        return find(resourceType)
+                .orElseThrow(() -> new RuntimeException("Tài nguyên không tồn tại: " + resourceType));
+    }
+
+    public Resource get(int index) {
+        return snapshot.resources[index];
+    }
+
+    public int size() {
+        return snapshot.resources.length;
+    }
+
+    public List<Resource> all() {
+        return snapshot.list;
+    }
+
+    private void seedIfEmpty() {
+        if (resourceRepo.count() > 0) {
+            return;
+        }
+        List<GatheringResource> seeds = new ArrayList<>();
+        for (int i = 0; i < DEFAULT_RESOURCES.length; i++) {
+            String[] row = DEFAULT_RESOURCES[i];
+            Optional<Item> item = itemRepo.findByNameIgnoreCase(row[1]);
+            if (item.isEmpty()) {
+                logger.warn("Not seeding resource '{}': item '{}' does not exist", row[0], row[1]);
+                continue;
+            }
+            GatheringResource resource = new GatheringResource();
+            resource.setResourceType(row[0]);
+            resource.setItem(item.get());
+            resource.setName(row[2]);
+            resource.setSkillName(row[3]);
+            resource.setEmojiIcon(row[4]);
+            resource.setEnergyCost(GatheringService.BASE_GATHERING_ENERGY_COST);
+            resource.setRequiredLevel(1);
+            resource.setSortOrder(i);
+            seeds.add(resource);
+        }
+        resourceRepo.saveAll(seeds);
+        logger.info("Seeded {} gathering resources", seeds.size());
+    }
+
+    private static final class Snapshot {
+        final Resource[] resources;
+        final List<Resource> list;
+        final Map<String, Resource> byType;
+
+        Snapshot(Resource[] resources) {
+            this.resources = resources;
+            this.list = List.of(resources);
+            this.byType = Arrays.stream(resources)
+                    .collect(Collectors.toUnmodifiableMap(Resource::getType, Function.identity()));
+        }
+    }
+
+    /**
+     * Immutable copy of one gathering_resource row.
+     */
+    public static final class Resource {
+        private final int index;
+        private final String type;
+        private final Integer itemId;
+        private final String itemName;
+        private final String name;
+        private final String skillName;
+        private final String icon;
+        private final int energyCost;
+        private final int requiredLevel;
+
+        Resource(int index, GatheringResource row) {
+            this.index = index;
+            this.type = row.getResourceType();
+            this.itemId = row.getItem().getItemId();
+            this.itemName = row.getItem().getName();
+            this.name = row.getName();
+            this.skillName = row.getSkillName();
+            this.icon = row.getEmojiIcon() != null ? row.getEmojiIcon() : "❓";
+            this.energyCost = row.getEnergyCost() != null ? row.getEnergyCost() : GatheringService.BASE_GATHERING_ENERGY_COST;
+            this.requiredLevel = row.getRequiredLevel() != null ? row.getRequiredLevel() : 1;
+        }
+
+        public int getIndex() { return index; }
+        public String getType() { return type; }
+        public Integer getItemId() { return itemId; }
+        public String getItemName() { return itemName; }
+        public String getName() { return name; }
+        public String getSkillName() { return skillName; }
+        public String getIcon() { return icon; }
+        public int getEnergyCost() { return energyCost; }
+        public int getRequiredLevel() { return requiredLevel; }
+    }
+}
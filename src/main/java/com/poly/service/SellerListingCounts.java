@@ -0,0 +1,123 @@
+package com.poly.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+
+import com.poly.repository.MarketListingRepository;
+
+/**
+ * Approximate number of active listings per seller, for the "my listings" pages.
+ * A seller's first page counts once; after that the cached count is served and,
+ * once older than {@code game.marketplace.seller-count-ttl-seconds}, recounted on
+ * the {@code listingCountExecutor} pool while the old value is still returned.
+ * The seller's own creates and cancels drop the entry, so they see their change.
+ * Bounded LRU, like {@link ListingQueryCache}.
+ */
+@Component
+public class SellerListingCounts {
+
+    private static final Logger logger = LoggerFactory.getLogger(SellerListingCounts.class);
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    @Value("${game.marketplace.seller-count-ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Autowired private MarketListingRepository listingRepo;
+
+    @Autowired
+    @Qualifier("listingCountExecutor")
+    private TaskExecutor refresher;
+
+    // All access holds the map's monitor
+    private final Map<Integer, Count> counts = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Count> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    public long activeListings(Integer sellerId) {
+        long now = System.currentTimeMillis();
+        Count count;
+        synchronized (counts) {
+            count = counts.get(sellerId);
+            if (count != null && !count.refreshing && now - count.countedAt > ttlSeconds * 1000) {
+                count.refreshing = true;
+                refresh(sellerId, count);
+            }
+        }
+        if (count != null) {
+            return count.value;
+        }
+        loads.increment();
+        long value = listingRepo.countBySeller_UserIdAndStatus(sellerId, "Active");
+        synchronized (counts) {
+            counts.put(sellerId, new Count(value, now));
+        }
+        return value;
+    }
+
+    public void invalidate(Integer sellerId) {
+        synchronized (counts) {
+            counts.remove(sellerId);
+        }
+    }
+
+    private void refresh(Integer sellerId, Count stale) {
+        try {
+            refresher.execute(() -> {
+                try {
+                    refreshes.increment();
+                    long value = listingRepo.countBySeller_UserIdAndStatus(sellerId, "Active");
+                    synchronized (counts) {
+                        counts.replace(sellerId, stale, new Count(value, System.currentTimeMillis()));
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("Could not recount listings of seller {}: {}", sellerId, e.getMessage());
+                    synchronized (counts) {
+                        stale.refreshing = false;
+                    }
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // Busy; a later page tries again
+            stale.refreshing = false;
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (counts) {
+            metrics.put("size", counts.size());
+        }
+        metrics.put("loads", loads.sum());
+        metrics.put("refreshes", refreshes.sum());
+        metrics.put("ttlSeconds", ttlSeconds);
+        return metrics;
+    }
+
+    private static final class Count {
+        final long value;
+        final long countedAt;
+        boolean refreshing;
+
+        Count(long value, long countedAt) {
+            this.value = value;
+            this.countedAt = countedAt;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.poly.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import com.poly.repository.MarketListingRepository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.ParameterMode;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.StoredProcedureQuery;
+
+/**
+ * {@link MarketplaceEngine} on the SQL Server stored procedures. The procedures
+ * report business failures as RAISERROR messages, which are mapped back to codes here.
+ */
+@Service
+@ConditionalOnProperty(name = "game.marketplace.engine", havingValue = "procedure", matchIfMissing = true)
+public class StoredProcedureMarketplaceEngine implements MarketplaceEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoredProcedureMarketplaceEngine.class);
+
+    @Autowired private EntityManager entityManager;
+    @Autowired private MarketListingRepository marketListingRepository;
+
+    @Override
+    @Transactional
+    public MarketOutcome<BigDecimal> sellToSystem(Integer userId, Integer itemId, int quantity) {
+        try {
+            StoredProcedureQuery query = entityManager
+                    .createStoredProcedureQuery("sp_sell_to_system")
+                    .registerStoredProcedureParameter("user_id", Integer.class, ParameterMode.IN)
+                    .registerStoredProcedureParameter("item_id", Integer.class, ParameterMode.IN)
+                    .registerStoredProcedureParameter("quantity", Integer.class, ParameterMode.IN)
+                    .setParameter("user_id", userId)
+                    .setParameter("item_id", itemId)
+                    .setParameter("quantity", quantity);
+
+            query.execute();
+
+            @SuppressWarnings("unchecked")
+            List<Object[]> resultList = query.getResultList();
+            if (resultList.isEmpty() || resultList.get(0) == null || !(resultList.get(0)[0] instanceof BigDecimal)) {
+                logger.error("Stored procedure sp_sell_to_system did not return expected BigDecimal for user {}", userId);
+                return failed(MarketOutcome.error("Không nhận được phản hồi giá trị từ hệ thống."));
+            }
+            return MarketOutcome.ok((BigDecimal) resultList.get(0)[0]);
+        } catch (PersistenceException | DataAccessException e) {
+            String message = rootMessage(e);
+            if (message != null && message.contains("Không đủ vật phẩm")) {
+                return failed(MarketOutcome.fail(MarketOutcome.Code.INSUFFICIENT_ITEMS));
+            } else if (message != null && message.contains("Vật phẩm không tồn tại")) {
+                return failed(MarketOutcome.fail(MarketOutcome.Code.ITEM_NOT_FOUND));
+            }
+            return failed(unexpected("sp_sell_to_system", message, e));
+        }
+    }
+
+    @Override
+    @Transactional
+    public MarketOutcome<Integer> createListing(Integer sellerId, Integer itemId, int quantity, BigDecimal price,
+                                                String priceType) {
+        try {
+            StoredProcedureQuery query = entityManager
+                    .createStoredProcedureQuery("sp_create_player_listing")
+                    .registerStoredProcedureParameter("seller_id", Integer.class, ParameterMode.IN)
+                    .registerStoredProcedureParameter("item_id", Integer.class, ParameterMode.IN)
+                    .registerStoredProcedureParameter("quantity", Integer.class, ParameterMode.IN)
+                    .registerStoredProcedureParameter("price", BigDecimal.class, ParameterMode.IN)
+                    .setParameter("seller_id", sellerId)
+                    .setParameter("item_id", itemId)
+                    .setParameter("quantity", quantity)
+                    .setParameter("price", price);
+
+            query.execute();
+
+            @SuppressWarnings("unchecked")
+            List<Object[]> resultList = query.getResultList();
+            if (resultList.isEmpty() || resultList.get(0) == null || !(resultList.get(0)[0] instanceof Integer)) {
+                logger.error("Stored procedure sp_create_player_listing did not return expected Integer listing ID for user {}",
+                             sellerId);
+                return failed(MarketOutcome.error("Không nhận được ID listing từ hệ thống."));
+            }
+            Integer listingId = (Integer) resultList.get(0)[0];
+
+            // The procedure only creates player listings
+            if ("Admin".equalsIgnoreCase(priceType)) {
+                marketListingRepository.findById(listingId).ifPresentOrElse(listing -> {
+                    listing.setPriceType("Admin");
+                    listing.setListingType("Fixed");
+                    marketListingRepository.save(listing);
+                }, () -> logger.error("Could not find newly created Admin listing {} to update price_type", listingId));
+            }
+            return MarketOutcome.ok(listingId);
+        } catch (PersistenceException | DataAccessException e) {
+            String message = rootMessage(e);
+            if (message != null && message.contains("Không đủ vật phẩm")) {
+                return failed(MarketOutcome.fail(MarketOutcome.Code.INSUFFICIENT_ITEMS));
+            }
+            return failed(unexpected("sp_create_player_listing", message, e));
+        }
+    }
+
+    @Override
+    @Transactional
+    public MarketOutcome<Void> cancelListing(Integer listingId, Integer userId) {
+        try {
+            entityManager.createStoredProcedureQuery("sp_cancel_listing")
+                    .registerStoredProcedureParameter("listing_id", Integer.class, ParameterMode.IN)
+                    .registerStoredProcedureParameter("user_id", Integer.class, ParameterMode.IN)
+                    .setParameter("listing_id", listingId)
+                    .setParameter("user_id", userId)
+                    .execute();
+            return MarketOutcome.ok(null);
+        } catch (PersistenceException | DataAccessException e) {
+            String message = rootMessage(e);
+            if (message != null && (message.contains("không tồn tại") || message.contains("đã xử lý"))) {
+                return failed(MarketOutcome.fail(MarketOutcome.Code.ALREADY_CLOSED));
+            } else if (message != null && message.contains("không có quyền hủy")) {
+                return failed(MarketOutcome.fail(MarketOutcome.Code.NOT_OWNER));
+            }
+            return failed(unexpected("sp_cancel_listing", message, e));
+        }
+    }
+
+    @Override
+    @Transactional
+    public MarketOutcome<Void> buy(Integer buyerId, Integer listingId) {
+        try {
+            entityManager.createStoredProcedureQuery("sp_buy_from_market")
+                    .registerStoredProcedureParameter("buyer_id", Integer.class, ParameterMode.IN)
+                    .registerStoredProcedureParameter("listing_id", Integer.class, ParameterMode.IN)
+                    .setParameter("buyer_id", buyerId)
+                    .setParameter("listing_id", listingId)
+                    .execute();
+            return MarketOutcome.ok(null);
+        } catch (PersistenceException | DataAccessException e) {
+            String message = rootMessage(e);
+            if (message != null && (message.contains("không tồn tại") || message.contains("đã bán"))) {
+                return failed(MarketOutcome.fail(MarketOutcome.Code.ALREADY_CLOSED));
+            } else if (message != null && message.contains("Không thể mua vật phẩm của chính mình")) {
+                return failed(MarketOutcome.fail(MarketOutcome.Code.OWN_LISTING));
+            } else if (message != null && message.contains("Số dư không đủ")) {
+                return failed(MarketOutcome.fail(MarketOutcome.Code.INSUFFICIENT_FUNDS));
+            }
+            return failed(unexpected("sp_buy_from_market", message, e));
+        }
+    }
+
+    // A failed procedure may leave its work half done; nothing of it may commit
+    private static <T> MarketOutcome<T> failed(MarketOutcome<T> outcome) {
+        TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        return outcome;
+    }
+
+    private static <T> MarketOutcome<T> unexpected(String procedure, String message, Exception e) {
+        logger.error("Database error in {}: {}", procedure, message, e);
+        return MarketOutcome.error(message);
+    }
+
+    private static String rootMessage(Exception e) {
+        return e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+    }
+}
@@ -0,0 +1,19 @@
+-- Packed gathering skills, one row per character (CharacterGatheringSkills), replacing
+-- the one-row-per-skill character_gathering table. Safe to run again: the table is
+-- only created when missing, and only characters without a packed row are folded.
+-- Run on startup by GatheringSkillStore (game.gathering.migrate-on-startup) and by
+-- POST /api/v1/admin/gathering-skills/migrate. Needs SQL Server 2017+ (STRING_AGG).
+IF OBJECT_ID(N'character_gathering_skills', N'U') IS NULL
+    CREATE TABLE character_gathering_skills (
+        character_id INT NOT NULL PRIMARY KEY,
+        skills VARCHAR(1000) NOT NULL
+    );
+
+IF OBJECT_ID(N'character_gathering', N'U') IS NOT NULL
+    INSERT INTO character_gathering_skills (character_id, skills)
+    SELECT cg.character_id,
+           STRING_AGG(CONCAT(cg.resource_type, '=', COALESCE(cg.level, 1), ':', COALESCE(cg.exp, 0)), ',')
+    FROM character_gathering cg WITH (HOLDLOCK)
+    WHERE NOT EXISTS (SELECT 1 FROM character_gathering_skills s WITH (UPDLOCK, HOLDLOCK)
+                      WHERE s.character_id = cg.character_id)
+    GROUP BY cg.character_id;
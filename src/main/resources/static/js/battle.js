@@ -23,6 +23,7 @@ document.addEventListener('DOMContentLoaded', () => {
     const attackBtn = document.getElementById('attackBtn');
     const useItemBtn = document.getElementById('useItemBtn');
     const fleeBtn = document.getElementById('fleeBtn');
+    const autoBtn = document.getElementById('autoBtn');
     const cancelPotionBtn = document.getElementById('cancelPotionBtn');
 
     // Result Screen
@@ -31,10 +32,13 @@ document.addEventListener('DOMContentLoaded', () => {
 
     // === Battle State ===
     const enemyId = container.dataset.enemyId;
-    let playerMaxHp = parseFloat(container.dataset.playerHp);
-    let playerHp = playerMaxHp;
-    let enemyMaxHp = parseFloat(container.dataset.enemyHp);
-    let enemyHp = enemyMaxHp;
+    let playerMaxHp = parseFloat(container.dataset.playerMaxHp);
+    let playerHp = parseFloat(container.dataset.playerHp);
+    let enemyMaxHp = parseFloat(container.dataset.enemyMaxHp);
+    let enemyHp = parseFloat(container.dataset.enemyHp);
+
+    // Auto battle drinks a potion below this percent of max HP
+    const AUTO_POTION_THRESHOLD = 30;
 
     let isActionLocked = false;
 
@@ -45,6 +49,7 @@ document.addEventListener('DOMContentLoaded', () => {
         attackBtn.disabled = locked;
         useItemBtn.disabled = locked;
         fleeBtn.disabled = locked;
+        autoBtn.disabled = locked;
     }
 
     function addLog(message) {
@@ -132,7 +137,6 @@ document.addEventListener('DOMContentLoaded', () => {
 
         const formData = new URLSearchParams();
         formData.append('enemyId', enemyId);
-        formData.append('enemyHp', enemyHp);
         
         const response = await fetch('/api/battle/attack', {
             method: 'POST',
@@ -142,6 +146,23 @@ document.addEventListener('DOMContentLoaded', () => {
         handleApiResponse(response);
     });
 
+    autoBtn.addEventListener('click', async () => {
+        if (isActionLocked) return;
+        lockActions(true);
+        addLog("Đang tự động chiến đấu...");
+
+        const formData = new URLSearchParams();
+        formData.append('enemyId', enemyId);
+        formData.append('potionThreshold', AUTO_POTION_THRESHOLD);
+
+        const response = await fetch('/api/battle/auto', {
+            method: 'POST',
+            body: formData
+        });
+
+        handleApiResponse(response);
+    });
+
     fleeBtn.addEventListener('click', async () => {
         if (isActionLocked) return;
         lockActions(true);
@@ -172,7 +193,6 @@ document.addEventListener('DOMContentLoaded', () => {
             const formData = new URLSearchParams();
             formData.append('userItemId', userItemId);
             formData.append('enemyId', enemyId);
-            formData.append('enemyHp', enemyHp);
 
             const response = await fetch('/api/battle/use-item', {
                 method: 'POST',
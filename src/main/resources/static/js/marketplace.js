@@ -1,8 +1,20 @@
 // static/js/marketplace.js
 // Cần nhúng common.js TRƯỚC file này
 
-async function buyItem(listingId) {
-    if (!confirm('Bạn có chắc muốn mua vật phẩm này?')) {
+async function buyItem(listingId, available) {
+    // Listing nhiều vật phẩm: cho phép mua một phần
+    let quantity = null;
+    if (available > 1) {
+        const input = prompt(`Số lượng muốn mua (1-${available}):`, available);
+        if (input === null) {
+            return;
+        }
+        quantity = parseInt(input, 10);
+        if (!(quantity >= 1 && quantity <= available)) {
+            showNotification('error', 'Số lượng không hợp lệ.');
+            return;
+        }
+    } else if (!confirm('Bạn có chắc muốn mua vật phẩm này?')) {
         return;
     }
 
@@ -12,7 +24,7 @@ async function buyItem(listingId) {
             headers: {
                 'Content-Type': 'application/json',
             },
-            body: JSON.stringify({ listingId: listingId })
+            body: JSON.stringify({ listingId: listingId, quantity: quantity })
         });
 
         showNotification('success', result.message || 'Mua vật phẩm thành công!');
@@ -20,12 +32,73 @@ async function buyItem(listingId) {
         // if(result.data && result.data.newBalance !== undefined) {
         //    updateHeaderGold(result.data.newBalance);
         // }
-        setTimeout(() => location.reload(), 1500); // Tải lại trang
+        if (quantity === null || quantity === available) {
+            removeListingCard(listingId); // Không tải lại trang, luồng sự kiện cập nhật phần còn lại
+        }
 
     } catch (error) {
         showNotification('error', error.message || 'Có lỗi xảy ra khi mua hàng.');
     }
 }
 
+// Gỡ thẻ vật phẩm khỏi lưới (đã bán hoặc đã hủy)
+function removeListingCard(listingId) {
+    const card = document.querySelector(`.listing-card[data-listing-id="${listingId}"]`);
+    if (!card) {
+        return;
+    }
+    card.classList.add('sold-out');
+    setTimeout(() => card.remove(), 300);
+}
+
+// Listing còn lại sau khi bị mua một phần: cập nhật số lượng, giá và nút mua
+function updateListingCard(listing) {
+    const card = document.querySelector(`.listing-card[data-listing-id="${listing.listingId}"]`);
+    if (!card) {
+        return;
+    }
+    card.querySelector('.quantity span').textContent = listing.quantity;
+    card.querySelector('.price span').textContent = Number(listing.price)
+        .toLocaleString('en-US', { minimumFractionDigits: 2, maximumFractionDigits: 2 });
+    const buyButton = card.querySelector('.btn-buy');
+    if (buyButton) {
+        buyButton.onclick = () => buyItem(listing.listingId, listing.quantity);
+    }
+}
+
+let newListingsCount = 0;
+
+function announceNewListing() {
+    const notice = document.getElementById('new-listings-notice');
+    if (!notice) {
+        return;
+    }
+    newListingsCount++;
+    document.getElementById('new-listings-count').textContent = newListingsCount;
+    notice.style.display = 'block';
+}
+
+// Nhận thay đổi của chợ qua Server-Sent Events thay vì tải lại trang
+function connectMarketplaceStream() {
+    if (!window.EventSource || !document.querySelector('.listings-grid')) {
+        return;
+    }
+    const source = new EventSource('/marketplace/stream');
+
+    source.addEventListener('listing-sold', e => removeListingCard(JSON.parse(e.data).listingId));
+    source.addEventListener('listing-cancelled', e => removeListingCard(JSON.parse(e.data).listingId));
+    source.addEventListener('listing-created', () => announceNewListing());
+    source.addEventListener('listing-updated', e => updateListingCard(JSON.parse(e.data).listing));
+
+    // Máy chủ đã bỏ bớt sự kiện vì kết nối chậm: trạng thái lưới không còn chắc chắn
+    source.addEventListener('resync', () => {
+        source.close();
+        location.reload();
+    });
+    // EventSource tự kết nối lại khi mất mạng
+}
+
+document.addEventListener('DOMContentLoaded', connectMarketplaceStream);
+
 // Hàm showNotification đã ở trong common.js
-// Animation CSS đã ở trong common.css
\ No newline at end of file
+// Animation CSS đã ở trong common.css
@@ -0,0 +1,144 @@
+package com.poly.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+class CharacterGameTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Test
+    void applyRegenFoldsWholeTicksAndKeepsThePartialOne() {
+        CharacterGame character = character(10, 50);
+
+        character.applyRegen(T0.plusSeconds(95));
+
+        assertEquals(13, character.getEnergy());
+        assertEquals(56, character.getHealth());
+        assertEquals(T0.plusSeconds(90), character.getLastRegenAt());
+
+        // The 5 seconds left over count towards the next tick
+        character.applyRegen(T0.plusSeconds(120));
+
+        assertEquals(14, character.getEnergy());
+        assertEquals(58, character.getHealth());
+        assertEquals(T0.plusSeconds(120), character.getLastRegenAt());
+    }
+
+    @Test
+    void applyRegenBeforeAFullTickChangesNothing() {
+        CharacterGame character = character(10, 50);
+
+        character.applyRegen(T0.plusSeconds(29));
+
+        assertEquals(10, character.getEnergy());
+        assertEquals(50, character.getHealth());
+        assertEquals(T0, character.getLastRegenAt());
+    }
+
+    @Test
+    void applyRegenCapsEachValueAtItsMaximum() {
+        CharacterGame character = character(48, 60);
+
+        character.applyRegen(T0.plusSeconds(5 * 30));
+
+        assertEquals(50, character.getEnergy());
+        assertEquals(70, character.getHealth());
+        // HP is still missing, so the clock only moves by the ticks applied
+        assertEquals(T0.plusSeconds(5 * 30), character.getLastRegenAt());
+
+        character.applyRegen(T0.plusSeconds(100 * 30 + 10));
+
+        assertEquals(50, character.getEnergy());
+        assertEquals(100, character.getHealth());
+        assertEquals(T0.plusSeconds(100 * 30 + 10), character.getLastRegenAt());
+    }
+
+    @Test
+    void timeSpentFullDoesNotBankRegen() {
+        CharacterGame character = character(50, 100);
+        LocalDateTime later = T0.plusHours(2);
+
+        character.applyRegen(later);
+        assertEquals(later, character.getLastRegenAt());
+
+        character.setEnergy(40);
+        assertEquals(40, character.currentEnergy(later.plusSeconds(29)));
+        assertEquals(41, character.currentEnergy(later.plusSeconds(30)));
+    }
+
+    @Test
+    void currentValuesMatchApplyRegenWithoutChangingTheCharacter() {
+        CharacterGame character = character(10, 50);
+        LocalDateTime now = T0.plusSeconds(7 * 30 + 12);
+
+        assertEquals(17, character.currentEnergy(now));
+        assertEquals(64, character.currentHealth(now));
+        assertEquals(10, character.getEnergy());
+        assertEquals(T0, character.getLastRegenAt());
+
+        character.applyRegen(now);
+        assertEquals(17, character.getEnergy());
+        assertEquals(64, character.getHealth());
+    }
+
+    @Test
+    void currentValuesAreCapped() {
+        CharacterGame character = character(45, 99);
+        LocalDateTime now = T0.plusSeconds(20 * 30);
+
+        assertEquals(50, character.currentEnergy(now));
+        assertEquals(100, character.currentHealth(now));
+    }
+
+    @Test
+    void clockBehindLastRegenGivesNoTicks() {
+        CharacterGame character = character(10, 50);
+
+        assertEquals(10, character.currentEnergy(T0.minusMinutes(5)));
+        assertEquals(50, character.currentHealth(T0.minusMinutes(5)));
+        assertEquals(10, character.energyWithUncappedRegen(T0.minusMinutes(5)));
+    }
+
+    @Test
+    void secondsToNextRegenCountsDownThePartialTick() {
+        CharacterGame character = character(10, 50);
+
+        assertEquals(30, character.secondsToNextRegen(T0));
+        assertEquals(25, character.secondsToNextRegen(T0.plusSeconds(95)));
+        assertEquals(1, character.secondsToNextRegen(T0.plusSeconds(29)));
+    }
+
+    @Test
+    void secondsToNextRegenIsZeroOnceNothingIsMissing() {
+        assertEquals(0, character(50, 100).secondsToNextRegen(T0.plusSeconds(10)));
+
+        CharacterGame character = character(49, 98);
+        assertEquals(20, character.secondsToNextRegen(T0.plusSeconds(10)));
+        assertEquals(0, character.secondsToNextRegen(T0.plusSeconds(30)));
+    }
+
+    @Test
+    void uncappedRegenCountsEveryTickEvenWhenFull() {
+        CharacterGame character = character(50, 100);
+
+        assertEquals(50, character.energyWithUncappedRegen(T0.plusSeconds(29)));
+        assertEquals(60, character.energyWithUncappedRegen(T0.plusSeconds(10 * 30 + 15)));
+        // The capped view stays at the maximum
+        assertEquals(50, character.currentEnergy(T0.plusSeconds(10 * 30 + 15)));
+
+        character.setLastRegenAt(null);
+        assertEquals(50, character.energyWithUncappedRegen(T0.plusHours(1)));
+    }
+
+    private static CharacterGame character(int energy, int health) {
+        CharacterGame character = new CharacterGame();
+        character.setEnergy(energy);
+        character.setHealth(health);
+        character.setLastRegenAt(T0);
+        return character;
+    }
+}
@@ -0,0 +1,149 @@
+package com.poly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class AliasTableTest {
+
+    private static final int SAMPLES = 1_000_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void adventureOddsMatchWeights() {
+        double[] weights = { 20, 40, 25, 15 };
+        AliasTable<Integer> table = AliasTable.of(List.of(0, 1, 2, 3), weights);
+
+        assertDistribution(weights, sample(table, new SplittableRandom(1)));
+    }
+
+    @Test
+    void unevenWeightsMatch() {
+        double[] weights = IntStream.range(0, 64).mapToDouble(i -> 1 + (i * 37 % 11)).toArray();
+        AliasTable<Integer> table = AliasTable.of(IntStream.range(0, 64).boxed().toList(), weights);
+
+        assertDistribution(weights, sample(table, new SplittableRandom(2)));
+    }
+
+    @Test
+    void zeroWeightIsNeverSampled() {
+        double[] weights = { 0, 3, 0, 1e-3, 7 };
+        AliasTable<Integer> table = AliasTable.of(List.of(0, 1, 2, 3, 4), weights);
+
+        long[] counts = sample(table, new SplittableRandom(3));
+
+        assertEquals(0, counts[0]);
+        assertEquals(0, counts[2]);
+        assertDistribution(weights, counts);
+    }
+
+    @Test
+    void singleOutcomeIsAlwaysSampled() {
+        AliasTable<String> table = AliasTable.of(List.of("only"), new double[] { 0.5 });
+        SplittableRandom rng = new SplittableRandom(4);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals("only", table.sample(rng));
+        }
+    }
+
+    @Test
+    void invalidWeightsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> AliasTable.of(List.of(1, 2), new double[] { 1 }));
+        assertThrows(IllegalArgumentException.class, () -> AliasTable.of(List.of(1, 2), new double[] { 1, -1 }));
+        assertThrows(IllegalArgumentException.class, () -> AliasTable.of(List.of(1, 2), new double[] { 0, 0 }));
+        assertThrows(IllegalArgumentException.class, () -> AliasTable.of(List.of(1), new double[] { Double.NaN }));
+    }
+
+    @Test
+    void encounterRollsFollowTheBandOfTheLevel() throws IOException {
+        Path file = dir.resolve("encounters.json");
+        Files.writeString(file, """
+                { "tables": { "adventure": [
+                    { "fromLevel": 1, "outcomes": [
+                        { "type": "ENEMY", "weight": 20 }, { "type": "RESOURCE", "weight": 40 },
+                        { "type": "GOLD", "weight": 25 }, { "type": "EXP", "weight": 15 } ] },
+                    { "fromLevel": 10, "outcomes": [
+                        { "type": "ENEMY", "weight": 50 }, { "type": "GOLD", "weight": 30 },
+                        { "type": "EXP", "weight": 20 } ] }
+                ] } }
+                """);
+        EncounterTables tables = encounterTables(file.toUri().toString());
+
+        assertDistribution(Map.of("ENEMY", 20.0, "RESOURCE", 40.0, "GOLD", 25.0, "EXP", 15.0),
+                roll(tables, new SplittableRandom(5), 9));
+        assertDistribution(Map.of("ENEMY", 50.0, "GOLD", 30.0, "EXP", 20.0),
+                roll(tables, new SplittableRandom(6), 10));
+        assertDistribution(Map.of("ENEMY", 50.0, "GOLD", 30.0, "EXP", 20.0),
+                roll(tables, new SplittableRandom(7), 99));
+    }
+
+    @Test
+    void shippedAdventureTableKeepsTheOriginalOdds() {
+        EncounterTables tables = encounterTables("classpath:encounters.json");
+
+        assertDistribution(Map.of("ENEMY", 20.0, "RESOURCE", 40.0, "GOLD", 25.0, "EXP", 15.0),
+                roll(tables, new SplittableRandom(8), 1));
+    }
+
+    private static EncounterTables encounterTables(String location) {
+        EncounterTables tables = new EncounterTables();
+        ReflectionTestUtils.setField(tables, "location", location);
+        ReflectionTestUtils.setField(tables, "resourceLoader", new DefaultResourceLoader());
+        ReflectionTestUtils.setField(tables, "objectMapper", new ObjectMapper());
+        tables.init();
+        return tables;
+    }
+
+    private static long[] sample(AliasTable<Integer> table, SplittableRandom rng) {
+        long[] counts = new long[table.size()];
+        for (int i = 0; i < SAMPLES; i++) {
+            counts[table.sample(rng)]++;
+        }
+        return counts;
+    }
+
+    private static Map<String, Long> roll(EncounterTables tables, SplittableRandom rng, int level) {
+        return IntStream.range(0, SAMPLES)
+                .mapToObj(i -> tables.roll(EncounterTables.ADVENTURE, level, rng).getType())
+                .collect(Collectors.groupingBy(type -> type, TreeMap::new, Collectors.counting()));
+    }
+
+    private static void assertDistribution(Map<String, Double> weights, Map<String, Long> counts) {
+        assertEquals(new TreeMap<>(weights).keySet(), counts.keySet());
+        List<String> types = List.copyOf(new TreeMap<>(weights).keySet());
+        assertDistribution(types.stream().mapToDouble(weights::get).toArray(),
+                types.stream().mapToLong(counts::get).toArray());
+    }
+
+    // Each frequency within five standard deviations of its weight's share
+    private static void assertDistribution(double[] weights, long[] counts) {
+        double total = 0;
+        for (double w : weights) total += w;
+        long samples = 0;
+        for (long c : counts) samples += c;
+        for (int i = 0; i < weights.length; i++) {
+            double expected = weights[i] / total;
+            double tolerance = 5 * Math.sqrt(expected * (1 - expected) / samples) + 1e-9;
+            assertEquals(expected, counts[i] / (double) samples, tolerance, "outcome " + i);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.poly.service;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the old hard-coded if/else chain of adventure odds with an
+ * {@link AliasTable} over the same outcomes, and an alias table with many
+ * outcomes (a loot table) with a linear cumulative-weight scan.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.poly.service.EncounterSamplingBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncounterSamplingBenchmark {
+
+    private static final double ENEMY_CHANCE = 0.20;
+    private static final double RESOURCE_CHANCE = 0.40;
+    private static final double GOLD_CHANCE = 0.25;
+
+    @Param({"4", "64"})
+    private int outcomes;
+
+    private SplittableRandom rng;
+    private AliasTable<Integer> aliasTable;
+    private double[] cumulative;
+
+    @Setup
+    public void setup() {
+        rng = new SplittableRandom(42);
+        double[] weights = outcomes == 4 ? new double[] {20, 40, 25, 15} : new double[outcomes];
+        if (outcomes != 4) {
+            for (int i = 0; i < outcomes; i++) {
+                weights[i] = 1 + (i * 37 % 11);
+            }
+        }
+        Integer[] values = new Integer[outcomes];
+        cumulative = new double[outcomes];
+        double total = 0;
+        for (int i = 0; i < outcomes; i++) {
+            values[i] = i;
+            total += weights[i];
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < outcomes; i++) {
+            cumulative[i] /= total;
+        }
+        aliasTable = AliasTable.of(List.of(values), weights);
+    }
+
+    @Benchmark
+    public int branchChain() {
+        if (outcomes == 4) {
+            double roll = rng.nextDouble();
+            if (roll < ENEMY_CHANCE) {
+                return 0;
+            } else if (roll < ENEMY_CHANCE + RESOURCE_CHANCE) {
+                return 1;
+            } else if (roll < ENEMY_CHANCE + RESOURCE_CHANCE + GOLD_CHANCE) {
+                return 2;
+            }
+            return 3;
+        }
+        double roll = rng.nextDouble();
+        for (int i = 0; i < cumulative.length; i++) {
+            if (roll < cumulative[i]) {
+                return i;
+            }
+        }
+        return cumulative.length - 1;
+    }
+
+    @Benchmark
+    public int aliasTable() {
+        return aliasTable.sample(rng);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EncounterSamplingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
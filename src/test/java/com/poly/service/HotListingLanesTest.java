@@ -0,0 +1,186 @@
+package com.poly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class HotListingLanesTest {
+
+    private static final Integer LISTING = 42;
+
+    private ThreadPoolTaskExecutor executor;
+    private ExecutorService callers;
+    private HotListingLanes lanes;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("lane-test-");
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.initialize();
+        callers = Executors.newCachedThreadPool();
+        lanes = lanes(3, 2_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        executor.shutdown();
+    }
+
+    @Test
+    void coldListingRunsOnCallerUntilThresholdThenOnLane() {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        Supplier<MarketOutcome<Void>> purchase = () -> {
+            threads.add(Thread.currentThread().getName());
+            return MarketOutcome.fail(MarketOutcome.Code.INSUFFICIENT_FUNDS);
+        };
+
+        for (int i = 0; i < 4; i++) {
+            lanes.buy(LISTING, purchase);
+        }
+
+        String caller = Thread.currentThread().getName();
+        assertEquals(List.of(caller, caller), threads.subList(0, 2));
+        assertTrue(threads.get(2).startsWith("lane-test-"));
+        assertTrue(threads.get(3).startsWith("lane-test-"));
+        assertEquals(1, lanes.metrics().get("hot"));
+    }
+
+    @Test
+    void idleHotLaneCoolsDown() throws Exception {
+        ReflectionTestUtils.setField(lanes, "coolDownMillis", 0L);
+        for (int i = 0; i < 3; i++) {
+            lanes.buy(LISTING, () -> MarketOutcome.fail(MarketOutcome.Code.INSUFFICIENT_FUNDS));
+        }
+        assertEquals(1, lanes.metrics().get("hot"));
+
+        Thread.sleep(5);
+        lanes.sweep();
+
+        assertEquals(0, lanes.metrics().get("tracked"));
+        List<String> threads = new CopyOnWriteArrayList<>();
+        lanes.buy(LISTING, () -> {
+            threads.add(Thread.currentThread().getName());
+            return MarketOutcome.ok(null);
+        });
+        assertEquals(List.of(Thread.currentThread().getName()), threads);
+    }
+
+    @Test
+    void queuedPurchaseIsWithdrawnWhenWaitTimesOut() throws Exception {
+        lanes = lanes(1, 50);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<MarketOutcome<Void>> first = callers.submit(() -> lanes.buy(LISTING, () -> {
+            running.countDown();
+            await(release);
+            return MarketOutcome.fail(MarketOutcome.Code.INSUFFICIENT_FUNDS);
+        }));
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+
+        AtomicInteger ran = new AtomicInteger();
+        MarketOutcome<Void> second = lanes.buy(LISTING, () -> {
+            ran.incrementAndGet();
+            return MarketOutcome.ok(null);
+        });
+
+        assertEquals(MarketOutcome.Code.CONFLICT, second.getCode());
+        release.countDown();
+        // The running purchase is waited for past the timeout
+        assertEquals(MarketOutcome.Code.INSUFFICIENT_FUNDS, first.get(2, TimeUnit.SECONDS).getCode());
+        assertEquals(0, ran.get());
+    }
+
+    @Test
+    void closedListingRejectsQueuedAndLaterPurchasesWithoutRunningThem() throws Exception {
+        lanes = lanes(1, 2_000);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<MarketOutcome<Void>> first = callers.submit(() -> lanes.buy(LISTING, () -> {
+            running.countDown();
+            await(release);
+            // A successful purchase publishes the sold event before returning
+            lanes.onListingEvent(MarketListingEvent.sold(LISTING));
+            return MarketOutcome.ok(null);
+        }));
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+
+        AtomicInteger ran = new AtomicInteger();
+        Future<MarketOutcome<Void>> queued = callers.submit(() -> lanes.buy(LISTING, () -> {
+            ran.incrementAndGet();
+            return MarketOutcome.ok(null);
+        }));
+        waitUntilQueued(1);
+        release.countDown();
+
+        assertEquals(MarketOutcome.Code.OK, first.get(2, TimeUnit.SECONDS).getCode());
+        assertEquals(MarketOutcome.Code.ALREADY_CLOSED, queued.get(2, TimeUnit.SECONDS).getCode());
+        assertTrue(lanes.isClosed(LISTING));
+        assertEquals(MarketOutcome.Code.ALREADY_CLOSED, lanes.buy(LISTING, () -> {
+            ran.incrementAndGet();
+            return MarketOutcome.ok(null);
+        }).getCode());
+        assertEquals(0, ran.get());
+    }
+
+    @Test
+    void alreadyClosedOutcomeClosesColdLane() {
+        lanes.buy(LISTING, () -> MarketOutcome.fail(MarketOutcome.Code.ALREADY_CLOSED));
+
+        assertTrue(lanes.isClosed(LISTING));
+        assertFalse(lanes.isClosed(LISTING + 1));
+    }
+
+    @Test
+    void cancelEventClosesLane() {
+        lanes.buy(LISTING, () -> MarketOutcome.fail(MarketOutcome.Code.INSUFFICIENT_FUNDS));
+        lanes.onListingEvent(MarketListingEvent.cancelled(LISTING));
+
+        assertTrue(lanes.isClosed(LISTING));
+    }
+
+    private HotListingLanes lanes(int threshold, long waitMillis) {
+        HotListingLanes lanes = new HotListingLanes();
+        ReflectionTestUtils.setField(lanes, "threshold", threshold);
+        ReflectionTestUtils.setField(lanes, "queueSize", 100);
+        ReflectionTestUtils.setField(lanes, "waitMillis", waitMillis);
+        ReflectionTestUtils.setField(lanes, "coolDownMillis", 30_000L);
+        ReflectionTestUtils.setField(lanes, "batchSize", 4);
+        ReflectionTestUtils.setField(lanes, "consumers", executor);
+        return lanes;
+    }
+
+    private void waitUntilQueued(int waiting) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (!Integer.valueOf(waiting).equals(lanes.metrics().get("waiting"))) {
+            assertTrue(System.currentTimeMillis() < deadline, "purchase was not queued");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.poly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.poly.dto.CursorPageDTO;
+import com.poly.dto.MarketListingDTO;
+
+class ListingQueryCacheTest {
+
+    private final ListingQueryCache cache = new ListingQueryCache(10);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void loadOverlappingUnrelatedChangeIsKept() {
+        ListingQueryCache.Key herbs = key("herb");
+
+        cache.get(herbs, () -> {
+            cache.invalidateMatching("Iron Ore", "Material", new BigDecimal("5"));
+            return page();
+        });
+        cache.get(herbs, this::page);
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void loadOverlappingMatchingChangeIsNotKept() {
+        ListingQueryCache.Key herbs = key("herb");
+
+        cache.get(herbs, () -> {
+            cache.invalidateMatching("Healing Herb", "Material", new BigDecimal("5"));
+            return page();
+        });
+        cache.get(herbs, this::page);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void changeAbovePriceLimitKeepsPage() {
+        ListingQueryCache.Key cheap = new ListingQueryCache.Key("", "", new BigDecimal("10"),
+                ListingCursor.Key.NEWEST, null, 12);
+        cache.get(cheap, this::page);
+
+        cache.invalidateMatching("Herb", "Material", new BigDecimal("50"));
+        cache.get(cheap, this::page);
+
+        assertEquals(1, loads.get());
+    }
+
+    private CursorPageDTO<MarketListingDTO> page() {
+        loads.incrementAndGet();
+        return new CursorPageDTO<>(List.of(), null, 0);
+    }
+
+    private static ListingQueryCache.Key key(String term) {
+        return new ListingQueryCache.Key(term, "", null, ListingCursor.Key.NEWEST, null, 12);
+    }
+}
@@ -0,0 +1,100 @@
+package com.poly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.poly.model.Item;
+import com.poly.model.MarketListing;
+import com.poly.model.User;
+
+class ListingSearchIndexTest {
+
+    private ListingSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ListingSearchIndex();
+        ReflectionTestUtils.setField(index, "queryCache", mock(ListingQueryCache.class));
+    }
+
+    @Test
+    void priceOrderIsByUnitPrice() {
+        open(listing(1, "Herb", 10, "50"));  // 5 per unit
+        open(listing(2, "Herb", 1, "8"));    // 8 per unit
+        open(listing(3, "Herb", 4, "12"));   // 3 per unit
+
+        ListingSearchIndex.KeysetPage page = index.searchAfter("", "", null, ListingCursor.Key.PRICE, null, 10);
+
+        assertEquals(List.of(3, 1, 2), page.getListingIds());
+        assertEquals(3, page.getTotal());
+    }
+
+    @Test
+    void keysetPagesWalkFilteredListingsInOrder() {
+        for (int id = 1; id <= 5; id++) {
+            open(listing(id, id % 2 == 0 ? "Iron Ore" : "Herb", 1, String.valueOf(id)));
+        }
+
+        ListingSearchIndex.KeysetPage first = index.searchAfter("her", "", null, ListingCursor.Key.PRICE, null, 2);
+        assertEquals(List.of(1, 3), first.getListingIds());
+        assertEquals(3, first.getTotal());
+
+        ListingCursor after = ListingCursor.decode(first.getNext().encode());
+        ListingSearchIndex.KeysetPage second = index.searchAfter("her", "", null, ListingCursor.Key.PRICE, after, 2);
+        assertEquals(List.of(5), second.getListingIds());
+        assertNull(second.getNext());
+        assertEquals(ListingSearchIndex.UNCOUNTED, second.getTotal());
+    }
+
+    @Test
+    void maxPriceAppliesToTheWholeListing() {
+        open(listing(1, "Herb", 10, "50"));
+        open(listing(2, "Herb", 1, "8"));
+
+        ListingSearchIndex.KeysetPage page = index.searchAfter("", "", new BigDecimal("10"),
+                ListingCursor.Key.NEWEST, null, 10);
+
+        assertEquals(List.of(2), page.getListingIds());
+        assertEquals(1, page.getTotal());
+    }
+
+    @Test
+    void unknownTrigramMatchesNothing() {
+        open(listing(1, "Herb", 1, "5"));
+
+        ListingSearchIndex.KeysetPage page = index.searchAfter("xyz", "", null, ListingCursor.Key.NEWEST, null, 10);
+
+        assertEquals(List.of(), page.getListingIds());
+        assertEquals(0, page.getTotal());
+    }
+
+    private void open(MarketListing listing) {
+        index.onListingEvent(MarketListingEvent.opened(listing));
+    }
+
+    private static MarketListing listing(Integer id, String name, int quantity, String price) {
+        User seller = new User();
+        seller.setUserId(1);
+        Item item = new Item();
+        item.setItemId(id);
+        item.setName(name);
+        item.setItemCategory("Material");
+        MarketListing listing = new MarketListing();
+        listing.setListingId(id);
+        listing.setSeller(seller);
+        listing.setItem(item);
+        listing.setQuantity(quantity);
+        listing.setPrice(new BigDecimal(price));
+        listing.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(id));
+        return listing;
+    }
+}
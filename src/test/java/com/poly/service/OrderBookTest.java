@@ -0,0 +1,139 @@
+package com.poly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.poly.model.Item;
+import com.poly.model.MarketListing;
+import com.poly.model.User;
+import com.poly.repository.MarketListingRepository;
+
+class OrderBookTest {
+
+    private static final Integer ITEM = 7;
+    private static final Integer SELLER = 1;
+    private static final Integer BUYER = 2;
+
+    private MarketListingRepository listingRepo;
+    private OrderBook book;
+
+    @BeforeEach
+    void setUp() {
+        listingRepo = mock(MarketListingRepository.class);
+        when(listingRepo.findById(any())).thenReturn(Optional.empty());
+        book = new OrderBook();
+        ReflectionTestUtils.setField(book, "listingRepo", listingRepo);
+    }
+
+    @Test
+    void reserveTakesCheapestListingsAndSkipsOwn() {
+        open(listing(10, SELLER, 5, "50"));   // 10 per unit
+        open(listing(11, BUYER, 5, "5"));     // buyer's own
+        open(listing(12, SELLER, 4, "20"));   // 5 per unit
+
+        List<OrderBook.Fill> fills = book.reserve(ITEM, 6, new BigDecimal("10"), BUYER);
+
+        assertEquals(2, fills.size());
+        assertEquals(12, fills.get(0).getEntry().getListingId());
+        assertEquals(4, fills.get(0).getQuantity());
+        assertEquals(10, fills.get(1).getEntry().getListingId());
+        assertEquals(2, fills.get(1).getQuantity());
+        assertEquals(new BigDecimal("20.00"), fills.get(1).getCost());
+        // Only the buyer's own listing is left to match
+        assertEquals(11, book.best(ITEM).orElseThrow().getListingId());
+        assertEquals(2, book.reservedCount());
+    }
+
+    @Test
+    void reservedListingsAreNotMatchedTwice() {
+        open(listing(10, SELLER, 5, "50"));
+
+        assertEquals(1, book.reserve(ITEM, 5, new BigDecimal("10"), BUYER).size());
+        assertTrue(book.reserve(ITEM, 5, new BigDecimal("10"), BUYER).isEmpty());
+    }
+
+    @Test
+    void listingSoldWhileReservedIsNotReleasedBack() {
+        MarketListing listing = listing(10, SELLER, 5, "50");
+        open(listing);
+        List<OrderBook.Fill> fills = book.reserve(ITEM, 5, new BigDecimal("10"), BUYER);
+
+        // A plain purchase sells it; the read in release may still see it active
+        book.onListingEvent(MarketListingEvent.sold(10));
+        when(listingRepo.findById(10)).thenReturn(Optional.of(listing));
+        book.release(fills);
+
+        assertTrue(book.best(ITEM).isEmpty());
+        assertEquals(0, book.totalQuantity(ITEM));
+        assertEquals(0, book.reservedCount());
+        // A late event for it finds nothing to remove
+        book.onListingEvent(MarketListingEvent.cancelled(10));
+        assertTrue(book.best(ITEM).isEmpty());
+    }
+
+    @Test
+    void releaseDropsListingsNoLongerActive() {
+        MarketListing listing = listing(10, SELLER, 5, "50");
+        open(listing);
+        List<OrderBook.Fill> fills = book.reserve(ITEM, 5, new BigDecimal("10"), BUYER);
+
+        listing.setStatus("Cancelled");
+        when(listingRepo.findById(10)).thenReturn(Optional.of(listing));
+        book.release(fills);
+
+        assertTrue(book.best(ITEM).isEmpty());
+        assertEquals(0, book.reservedCount());
+    }
+
+    @Test
+    void releasePutsBackCurrentStateOfActiveListings() {
+        open(listing(10, SELLER, 5, "50"));
+        List<OrderBook.Fill> fills = book.reserve(ITEM, 2, new BigDecimal("10"), BUYER);
+
+        // Part of it was bought; the update event waits for the release
+        MarketListing remainder = listing(10, SELLER, 3, "30");
+        book.onListingEvent(MarketListingEvent.updated(remainder));
+        assertTrue(book.best(ITEM).isEmpty());
+
+        when(listingRepo.findById(10)).thenReturn(Optional.of(remainder));
+        book.release(fills);
+
+        OrderBook.Entry best = book.best(ITEM).orElseThrow();
+        assertEquals(10, best.getListingId());
+        assertEquals(3, best.getQuantity());
+        assertEquals(3, book.totalQuantity(ITEM));
+        assertEquals(0, book.reservedCount());
+    }
+
+    private void open(MarketListing listing) {
+        book.onListingEvent(MarketListingEvent.opened(listing));
+    }
+
+    private static MarketListing listing(Integer id, Integer sellerId, int quantity, String price) {
+        User seller = new User();
+        seller.setUserId(sellerId);
+        Item item = new Item();
+        item.setItemId(ITEM);
+        item.setName("Herb");
+        MarketListing listing = new MarketListing();
+        listing.setListingId(id);
+        listing.setSeller(seller);
+        listing.setItem(item);
+        listing.setQuantity(quantity);
+        listing.setPrice(new BigDecimal(price));
+        listing.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(id));
+        return listing;
+    }
+}
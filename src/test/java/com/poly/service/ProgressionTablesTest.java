@@ -0,0 +1,145 @@
+package com.poly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ProgressionTablesTest {
+
+    private static final double CHARACTER_BASE = 100, CHARACTER_RATE = 1.3;
+    private static final double GATHERING_BASE = 50, GATHERING_RATE = 1.2;
+
+    private ProgressionTables tables;
+
+    @BeforeEach
+    void setUp() {
+        tables = tables(100);
+    }
+
+    @Test
+    void characterMatchesLoopAtEveryThreshold() {
+        for (int level = 1; level < 100; level++) {
+            for (int ahead = 1; ahead <= 5 && level + ahead <= 100; ahead++) {
+                long threshold = expBetween(CHARACTER_BASE, CHARACTER_RATE, level, level + ahead);
+                for (long exp : new long[] { threshold - 1, threshold, threshold + 1 }) {
+                    assertCharacter(level, exp, 100);
+                }
+            }
+        }
+    }
+
+    @Test
+    void gatheringMatchesLoopAtEveryThreshold() {
+        for (int level = 1; level < 100; level++) {
+            for (int ahead = 1; ahead <= 5 && level + ahead <= 100; ahead++) {
+                long threshold = expBetween(GATHERING_BASE, GATHERING_RATE, level, level + ahead);
+                for (long exp : new long[] { threshold - 1, threshold, threshold + 1 }) {
+                    assertGathering(level, exp, 100);
+                }
+            }
+        }
+    }
+
+    @Test
+    void randomMultiLevelGainsMatchLoop() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < 20_000; i++) {
+            int level = 1 + random.nextInt(40);
+            long exp = random.nextLong(1_000_000);
+            assertCharacter(level, exp, 100);
+            assertGathering(level, exp, 100);
+        }
+    }
+
+    @Test
+    void characterGainSumsStatsOfEveryLevelPassed() {
+        long exp = expBetween(CHARACTER_BASE, CHARACTER_RATE, 3, 7) + 5;
+
+        ProgressionTables.LevelGain gain = tables.resolveCharacter(3, exp);
+
+        assertEquals(7, gain.getNewLevel());
+        assertEquals(5, gain.getRemainingExp());
+        assertEquals(4 * 10, gain.getHp());
+        assertEquals(4, gain.getAtk());
+        assertEquals(4, gain.getDef());
+        assertEquals(4 * 3, gain.getPoints());
+    }
+
+    @Test
+    void gainsStopAtMaxLevel() {
+        ProgressionTables capped = tables(10);
+        long pastCap = expBetween(CHARACTER_BASE, CHARACTER_RATE, 1, 10) + 1_000_000;
+
+        for (int level = 1; level <= 10; level++) {
+            assertCharacter(level, pastCap, 10);
+            assertGathering(level, pastCap, 10);
+        }
+        ProgressionTables.LevelGain gain = capped.resolveCharacter(1, pastCap);
+        assertEquals(10, gain.getNewLevel());
+        assertEquals(9, gain.getLevelsGained());
+        assertEquals(9 * 3, gain.getPoints());
+        assertEquals(0, capped.resolveCharacter(10, pastCap).getLevelsGained());
+    }
+
+    @Test
+    void expForNextLevelMatchesFormula() {
+        for (int level = 1; level <= 100; level++) {
+            assertEquals(formula(CHARACTER_BASE, CHARACTER_RATE, level), tables.expForNextLevel(level));
+            assertEquals(formula(GATHERING_BASE, GATHERING_RATE, level), tables.gatheringExpForNextLevel(level));
+        }
+    }
+
+    private void assertCharacter(int level, long exp, int maxLevel) {
+        long[] expected = loop(CHARACTER_BASE, CHARACTER_RATE, level, exp, maxLevel);
+        ProgressionTables.LevelGain gain = tables(maxLevel).resolveCharacter(level, exp);
+        assertEquals(expected[0], gain.getNewLevel(), "level " + level + " + " + exp + " EXP");
+        assertEquals(expected[1], gain.getRemainingExp(), "level " + level + " + " + exp + " EXP");
+        assertEquals(expected[0] - level, gain.getLevelsGained());
+    }
+
+    private void assertGathering(int level, long exp, int maxLevel) {
+        long[] expected = loop(GATHERING_BASE, GATHERING_RATE, level, exp, maxLevel);
+        ProgressionTables.LevelGain gain = tables(maxLevel).resolveGathering(level, exp);
+        assertEquals(expected[0], gain.getNewLevel(), "level " + level + " + " + exp + " EXP");
+        assertEquals(expected[1], gain.getRemainingExp(), "level " + level + " + " + exp + " EXP");
+    }
+
+    private ProgressionTables tables(int maxLevel) {
+        if (tables != null && tables.getMaxLevel() == maxLevel) return tables;
+        ProgressionTables built = new ProgressionTables();
+        ReflectionTestUtils.setField(built, "maxLevel", maxLevel);
+        ReflectionTestUtils.setField(built, "characterBaseExp", CHARACTER_BASE);
+        ReflectionTestUtils.setField(built, "characterGrowthRate", CHARACTER_RATE);
+        ReflectionTestUtils.setField(built, "gatheringBaseExp", GATHERING_BASE);
+        ReflectionTestUtils.setField(built, "gatheringGrowthRate", GATHERING_RATE);
+        built.init();
+        return built;
+    }
+
+    // The per-level loop the tables replaced, stopping at the max level: {level, exp left}
+    private static long[] loop(double base, double rate, int level, long exp, int maxLevel) {
+        long expNeeded = formula(base, rate, level);
+        while (level < maxLevel && exp >= expNeeded) {
+            exp -= expNeeded;
+            level++;
+            expNeeded = formula(base, rate, level);
+        }
+        return new long[] { level, exp };
+    }
+
+    private static long expBetween(double base, double rate, int from, int to) {
+        long total = 0;
+        for (int level = from; level < to; level++) {
+            total += formula(base, rate, level);
+        }
+        return total;
+    }
+
+    private static long formula(double base, double rate, int level) {
+        return (long) Math.floor(base * Math.pow(rate, level - 1));
+    }
+}